@@ -0,0 +1,85 @@
+package com.example.libreria.dto;
+
+import com.example.libreria.model.Reservation;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exportación de 100k reservas en JSON, Smile y CBOR: tiempo de escritura y de lectura (lo que
+ * hacen los jobs de sincronización). El tamaño de cada formato se imprime al preparar la corrida.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BinaryFormatBenchmark {
+
+    private static final TypeReference<List<ReservationResponseDTO>> RESERVATIONS = new TypeReference<>() {
+    };
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    @Param({"100000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<ReservationResponseDTO> reservations;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        JsonFactory factory = switch (format) {
+            case "smile" -> new SmileFactory();
+            case "cbor" -> new CBORFactory();
+            default -> new JsonFactory();
+        };
+        objectMapper = Jackson2ObjectMapperBuilder.json().factory(factory).build();
+        reservations = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            ReservationResponseDTO reservation = new ReservationResponseDTO();
+            reservation.setId(i);
+            reservation.setUserId(i % 5_000 + 1);
+            reservation.setUserName("Juan Pérez");
+            reservation.setBookExternalId(258027L + i % 500);
+            reservation.setBookTitle("The Lord of the Rings " + i % 500);
+            reservation.setRentalDays(7);
+            reservation.setStartDate(LocalDate.of(2024, 1, 1).plusDays(i % 365));
+            reservation.setExpectedReturnDate(LocalDate.of(2024, 1, 8).plusDays(i % 365));
+            reservation.setActualReturnDate(i % 3 == 0 ? null : LocalDate.of(2024, 1, 10).plusDays(i % 365));
+            reservation.setDailyRate(new BigDecimal("15.99"));
+            reservation.setTotalFee(new BigDecimal("111.93"));
+            reservation.setLateFee(new BigDecimal("4.80"));
+            reservation.setStatus(i % 3 == 0 ? Reservation.ReservationStatus.ACTIVE : Reservation.ReservationStatus.RETURNED);
+            reservation.setCreatedAt(LocalDateTime.of(2024, 1, 1, 10, 0).plusMinutes(i));
+            reservations.add(reservation);
+        }
+        payload = objectMapper.writeValueAsBytes(reservations);
+        System.out.printf("%n%s: %d reservas = %,d bytes%n", format, size, payload.length);
+    }
+
+    @Benchmark
+    public byte[] serializeReservations() throws IOException {
+        return objectMapper.writeValueAsBytes(reservations);
+    }
+
+    @Benchmark
+    public List<ReservationResponseDTO> deserializeReservations() throws IOException {
+        return objectMapper.readValue(payload, RESERVATIONS);
+    }
+}
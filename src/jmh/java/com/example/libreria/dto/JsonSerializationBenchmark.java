@@ -0,0 +1,68 @@
+package com.example.libreria.dto;
+
+import com.example.libreria.model.Reservation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonSerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int size;
+
+    // Misma configuración base que el ObjectMapper de Spring Boot (JavaTimeModule, fechas ISO)
+    private ObjectMapper objectMapper;
+    private List<BookResponseDTO> books;
+    private List<ReservationResponseDTO> reservations;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        books = new ArrayList<>(size);
+        reservations = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            books.add(new BookResponseDTO(i, "The Lord of the Rings " + i, List.of("J. R. R. Tolkien"),
+                    1954, 120, true, new BigDecimal("15.99"), 10, 8));
+            ReservationResponseDTO reservation = new ReservationResponseDTO();
+            reservation.setId(i);
+            reservation.setUserId(i);
+            reservation.setUserName("Juan Pérez");
+            reservation.setBookExternalId(i);
+            reservation.setBookTitle("The Lord of the Rings " + i);
+            reservation.setRentalDays(7);
+            reservation.setStartDate(LocalDate.of(2024, 1, 1));
+            reservation.setExpectedReturnDate(LocalDate.of(2024, 1, 8));
+            reservation.setActualReturnDate(LocalDate.of(2024, 1, 10));
+            reservation.setDailyRate(new BigDecimal("15.99"));
+            reservation.setTotalFee(new BigDecimal("116.73"));
+            reservation.setLateFee(new BigDecimal("4.80"));
+            reservation.setStatus(Reservation.ReservationStatus.RETURNED);
+            reservation.setCreatedAt(LocalDateTime.of(2024, 1, 1, 10, 0));
+            reservations.add(reservation);
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeBooks() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public byte[] serializeReservations() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(reservations);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.libreria.exception;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de lanzar y atrapar el rechazo "libro no disponible" con una RuntimeException común
+ * (captura la traza) y con una excepción de dominio sin traza. La excepción se lanza a
+ * {@code depth} marcos del punto donde se atrapa: una petición HTTP pasa por Tomcat, los filtros,
+ * Spring MVC y los proxies de transacción antes de llegar al servicio.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RejectionPathBenchmark {
+
+    @Param({"20", "120"})
+    private int depth;
+
+    private int availableQuantity;
+
+    @Benchmark
+    public String runtimeException() {
+        try {
+            return descend(depth, true);
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Benchmark
+    public String stacklessDomainException() {
+        try {
+            return descend(depth, false);
+        } catch (DomainException e) {
+            return e.getMessage();
+        }
+    }
+
+    private String descend(int remaining, boolean withStackTrace) {
+        if (remaining == 0) {
+            String message = "Libro no disponible. Stock actual: " + availableQuantity;
+            throw withStackTrace ? new RuntimeException(message) : new ConflictException(message);
+        }
+        return descend(remaining - 1, withStackTrace);
+    }
+}
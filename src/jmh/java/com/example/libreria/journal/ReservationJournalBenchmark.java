@@ -0,0 +1,50 @@
+package com.example.libreria.journal;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Costo de un {@code append} al journal con segmentos de 64 MB y un fsync cada 256 entradas, el
+ * mismo lote que usa el listener. Cada iteración abre un directorio nuevo, así que incluye la
+ * rotación de segmentos cuando se llenan.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReservationJournalBenchmark {
+
+    private Path directory;
+    private ReservationJournal journal;
+    private long next;
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        journal = new ReservationJournal(directory, 64 * 1024 * 1024, 256);
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public long append() {
+        long i = next++;
+        return journal.append(JournalEntry.Type.RESERVATION_CREATED, i, i % 5000, i, i % 1000, 0, -1);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Entidades de ejemplo compartidas por los benchmarks
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    public static Book book(long externalId) {
+        Book book = new Book();
+        book.setExternalId(externalId);
+        book.setTitle("The Lord of the Rings " + externalId);
+        book.setAuthorName(new ArrayList<>(List.of("J. R. R. Tolkien")));
+        book.setFirstPublishYear(1954);
+        book.setEditionCount(120);
+        book.setHasFulltext(true);
+        book.setPrice(new BigDecimal("15.99"));
+        book.setStockQuantity(10);
+        book.setAvailableQuantity(8);
+        return book;
+    }
+
+    public static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setName("Juan Pérez");
+        user.setEmail("juan.perez" + id + "@example.com");
+        user.setPhoneNumber("123456789");
+        user.setCreatedAt(LocalDateTime.of(2024, 1, 1, 10, 0));
+        return user;
+    }
+
+    public static Reservation reservation(long id) {
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        reservation.setUser(user(id));
+        reservation.setBook(book(id));
+        reservation.setRentalDays(7);
+        reservation.setStartDate(LocalDate.of(2024, 1, 1));
+        reservation.setExpectedReturnDate(LocalDate.of(2024, 1, 8));
+        reservation.setActualReturnDate(LocalDate.of(2024, 1, 10));
+        reservation.setDailyRate(new BigDecimal("15.99"));
+        reservation.setTotalFee(new BigDecimal("111.93"));
+        reservation.setLateFee(new BigDecimal("4.80"));
+        reservation.setStatus(Reservation.ReservationStatus.RETURNED);
+        reservation.setCreatedAt(LocalDateTime.of(2024, 1, 1, 10, 0));
+        return reservation;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DtoMappingBenchmark {
+
+    private Reservation reservation;
+    private Book book;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        reservation = BenchmarkFixtures.reservation(1L);
+        book = BenchmarkFixtures.book(258027L);
+        user = BenchmarkFixtures.user(1L);
+    }
+
+    @Benchmark
+    public ReservationResponseDTO reservationToDTO() {
+        return ReservationService.convertToDTO(reservation);
+    }
+
+    @Benchmark
+    public BookResponseDTO bookToDTO() {
+        return BookService.convertToDTO(book);
+    }
+
+    @Benchmark
+    public UserResponseDTO userToDTO() {
+        return UserService.convertToDTO(user);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.libreria.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FeeCalculationBenchmark {
+
+    private BigDecimal price;
+    private int rentalDays;
+    private long daysLate;
+
+    @Setup
+    public void setUp() {
+        price = new BigDecimal("15.99");
+        rentalDays = 14;
+        daysLate = 3;
+    }
+
+    @Benchmark
+    public BigDecimal calculateTotalFee() {
+        return ReservationService.calculateTotalFee(price, rentalDays);
+    }
+
+    @Benchmark
+    public BigDecimal calculateLateFee() {
+        return ReservationService.calculateLateFee(price, daysLate);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.libreria.service;
+
+import com.example.libreria.LibreriaApplication;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * createReservation y returnBook contra el contexto completo de la aplicación sobre H2 en memoria.
+ * Cada reserva creada se devuelve fuera de la medición (y viceversa) para que el stock no se agote.
+ * {@code rejectUnavailableBook} mide el rechazo más frecuente: un libro sin ejemplares disponibles.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReservationFlowBenchmark {
+
+    private static final long BOOK_ID = 900001L;
+    private static final long SOLD_OUT_BOOK_ID = 900002L;
+
+    private ConfigurableApplicationContext context;
+    private ReservationService reservationService;
+    private Long userId;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = new SpringApplicationBuilder(LibreriaApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN",
+                        "logging.level.com.example.libreria=WARN",
+                        "journal.enabled=false")
+                .run();
+        reservationService = context.getBean(ReservationService.class);
+
+        Book book = BenchmarkFixtures.book(BOOK_ID);
+        book.setStockQuantity(1_000);
+        book.setAvailableQuantity(1_000);
+        context.getBean(BookRepository.class).save(book);
+        Book soldOut = BenchmarkFixtures.book(SOLD_OUT_BOOK_ID);
+        soldOut.setStockQuantity(0);
+        soldOut.setAvailableQuantity(0);
+        context.getBean(BookRepository.class).save(soldOut);
+        userId = context.getBean(UserService.class)
+                .createUser(new UserRequestDTO("Usuario Benchmark", "benchmark@example.com", null))
+                .getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    ReservationResponseDTO reserve() {
+        return reserve(BOOK_ID);
+    }
+
+    ReservationResponseDTO reserve(long bookExternalId) {
+        ReservationRequestDTO request = new ReservationRequestDTO();
+        request.setUserId(userId);
+        request.setBookExternalId(bookExternalId);
+        request.setRentalDays(7);
+        request.setStartDate(LocalDate.now());
+        return reservationService.createReservation(request);
+    }
+
+    ReservationResponseDTO giveBack(Long reservationId) {
+        ReturnBookRequestDTO request = new ReturnBookRequestDTO();
+        request.setReturnDate(LocalDate.now().plusDays(9));
+        return reservationService.returnBook(reservationId, request);
+    }
+
+    @State(Scope.Thread)
+    public static class Created {
+        Long reservationId;
+
+        @TearDown(Level.Invocation)
+        public void returnIt(ReservationFlowBenchmark flow) {
+            flow.giveBack(reservationId);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Pending {
+        Long reservationId;
+
+        @Setup(Level.Invocation)
+        public void reserveIt(ReservationFlowBenchmark flow) {
+            reservationId = flow.reserve().getId();
+        }
+    }
+
+    @Benchmark
+    public ReservationResponseDTO createReservation(Created created) {
+        ReservationResponseDTO reservation = reserve();
+        created.reservationId = reservation.getId();
+        return reservation;
+    }
+
+    @Benchmark
+    public ReservationResponseDTO returnBook(Pending pending) {
+        return giveBack(pending.reservationId);
+    }
+
+    @Benchmark
+    public String rejectUnavailableBook() {
+        try {
+            reserve(SOLD_OUT_BOOK_ID);
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+        throw new IllegalStateException("La reserva de un libro sin stock debía rechazarse");
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.libreria.service;
+
+import com.example.libreria.LibreriaApplication;
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.ArchivedReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Alta masiva de usuarios con emails nuevos contra el contexto completo sobre H2 en memoria, con
+ * {@code users} usuarios ya cargados. Con {@code filter=true} el chequeo de duplicados pasa por el
+ * filtro de Bloom de {@link EmailFilterService}; con {@code false} el filtro no está armado y cada
+ * alta consulta la base, como antes de tenerlo. El tiempo informado es por usuario.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserRegistrationBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"10000"})
+    private int users;
+
+    @Param({"true", "false"})
+    private boolean filter;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private TransactionTemplate transaction;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = new SpringApplicationBuilder(LibreriaApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:registration_benchmark;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN",
+                        "logging.level.com.example.libreria=WARN",
+                        "journal.enabled=false")
+                .run();
+        UserRepository userRepository = context.getBean(UserRepository.class);
+
+        List<User> existing = new ArrayList<>(users);
+        for (long id = 1; id <= users; id++) {
+            User user = BenchmarkFixtures.user(id);
+            user.setId(null);
+            existing.add(user);
+        }
+        userRepository.saveAll(existing);
+        nextId = users + 1;
+
+        EmailFilterService emailFilter = context.getBean(EmailFilterService.class);
+        if (filter) {
+            emailFilter.rebuild();
+        } else {
+            // Sin rebuild() el filtro no existe y cada chequeo va a la base
+            emailFilter = new EmailFilterService(userRepository, users * 2L, 0.01);
+        }
+        // Sin el proxy del bean: las dos variantes pagan la misma transacción y solo cambia el filtro
+        userService = new UserService(userRepository, emailFilter,
+                context.getBean(ArchivedReservationRepository.class), context);
+        transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void registerBatch(Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            User user = BenchmarkFixtures.user(nextId++);
+            UserRequestDTO request = new UserRequestDTO(user.getName(), user.getEmail(), user.getPhoneNumber());
+            UserResponseDTO created = transaction.execute(status -> userService.createUser(request));
+            blackhole.consume(created);
+        }
+    }
+}
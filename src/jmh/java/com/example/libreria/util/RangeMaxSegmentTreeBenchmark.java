@@ -0,0 +1,78 @@
+package com.example.libreria.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consulta "cuántos ejemplares están ocupados como máximo entre d1 y d2" con un millón de reservas
+ * cargadas: con el árbol de segmentos del calendario ({@code treeMaxOccupancy}, y
+ * {@code treeReserveAndRelease} para el alta y la devolución) y recorriendo todas las reservas
+ * ({@code scanMaxOccupancy}), que es lo que haría falta sin índice. Las reservas empiezan en los
+ * próximos dos años y duran de 1 a 30 días.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RangeMaxSegmentTreeBenchmark {
+
+    private static final int RESERVATIONS = 1_000_000;
+    private static final int HORIZON_DAYS = 730;
+    private static final int TODAY = (int) LocalDate.of(2025, 1, 1).toEpochDay();
+
+    private RangeMaxSegmentTree tree;
+    private int[] starts;
+    private int[] ends;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void load() {
+        tree = new RangeMaxSegmentTree(1 << 17);
+        starts = new int[RESERVATIONS];
+        ends = new int[RESERVATIONS];
+        SplittableRandom seed = new SplittableRandom(42);
+        for (int i = 0; i < RESERVATIONS; i++) {
+            starts[i] = TODAY + seed.nextInt(HORIZON_DAYS);
+            ends[i] = starts[i] + 1 + seed.nextInt(30);
+            tree.add(starts[i], ends[i], 1);
+        }
+        random = new SplittableRandom(7);
+    }
+
+    @Benchmark
+    public int treeMaxOccupancy() {
+        int from = TODAY + random.nextInt(HORIZON_DAYS);
+        return tree.max(from, from + 7);
+    }
+
+    @Benchmark
+    public int treeReserveAndRelease() {
+        int from = TODAY + random.nextInt(HORIZON_DAYS);
+        tree.add(from, from + 7, 1);
+        int max = tree.max(from, from + 7);
+        tree.add(from, from + 7, -1);
+        return max;
+    }
+
+    @Benchmark
+    public int scanMaxOccupancy() {
+        int from = TODAY + random.nextInt(HORIZON_DAYS);
+        int to = from + 7;
+        int[] occupied = new int[to - from];
+        for (int i = 0; i < RESERVATIONS; i++) {
+            for (int d = Math.max(starts[i], from); d < Math.min(ends[i], to); d++) {
+                occupied[d - from]++;
+            }
+        }
+        int max = 0;
+        for (int count : occupied) {
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.libreria.config;
+
+import com.example.libreria.journal.ReservationJournal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+@ConditionalOnProperty(name = "journal.enabled", havingValue = "true")
+public class JournalConfig {
+
+    @Bean(destroyMethod = "close")
+    public ReservationJournal reservationJournal(
+            @Value("${journal.path}") String path,
+            @Value("${journal.segment-size-mb:64}") int segmentSizeMb,
+            @Value("${journal.flush-batch-size:256}") int flushBatchSize) {
+        return new ReservationJournal(Path.of(path), segmentSizeMb * 1024 * 1024, flushBatchSize);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.libreria.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "partitioning.enabled", havingValue = "true")
+public class PartitioningConfig {
+
+    // La caché de segundo nivel es local a cada instancia y no se entera de lo que escriben las demás
+    // (stock, sincronización, inventario, conciliación): con varias instancias sobre la misma base
+    // se lee siempre de la base
+    @Bean
+    public HibernatePropertiesCustomizer disableSecondLevelCache() {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, false);
+        };
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.libreria.config;
+
+import com.example.libreria.instrumentation.QueryCountingDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class QueryStatsConfig {
+
+    // static para que el post-procesador se registre antes de crear el DataSource
+    @Bean
+    public static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource ? QueryCountingDataSource.wrap(dataSource) : bean;
+            }
+        };
+    }
+}
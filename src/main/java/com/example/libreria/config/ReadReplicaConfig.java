@@ -0,0 +1,67 @@
+package com.example.libreria.config;
+
+import com.example.libreria.datasource.ReadReplicaRoutingDataSource;
+import com.example.libreria.datasource.ReplicaRouter;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(name = "replicas.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    @Bean
+    public ReplicaRouter replicaRouter(DataSourceProperties properties,
+                                       @Value("${replicas.urls}") String[] urls,
+                                       @Value("${replicas.username:${spring.datasource.username:}}") String username,
+                                       @Value("${replicas.password:${spring.datasource.password:}}") String password,
+                                       @Value("${replicas.maximum-pool-size:10}") int maximumPoolSize,
+                                       @Value("${replicas.connection-timeout-ms:1000}") long connectionTimeoutMillis,
+                                       @Value("${replicas.lag-query:}") String lagQuery,
+                                       @Value("${replicas.max-lag-ms:5000}") long maxLagMillis) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < urls.length; i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (i + 1));
+            replica.setJdbcUrl(urls[i].trim());
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setMaximumPoolSize(maximumPoolSize);
+            replica.setConnectionTimeout(connectionTimeoutMillis);
+            // Una réplica caída al arrancar no impide levantar la aplicación: queda fuera hasta que responda
+            replica.setInitializationFailTimeout(-1);
+            replicas.put(replica.getPoolName(), replica);
+        }
+        ReplicaRouter router = new ReplicaRouter(primary, replicas, lagQuery, maxLagMillis);
+        router.checkHealth();
+        return router;
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaRouter replicaRouter) {
+        return new LazyConnectionDataSourceProxy(new ReadReplicaRoutingDataSource(replicaRouter));
+    }
+
+    // Con open-in-view la sesión retiene la conexión durante toda la petición; liberándola al
+    // terminar cada transacción, una lectura y una escritura de la misma petición eligen destino por separado
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+}
@@ -1,13 +1,33 @@
 package com.example.libreria.controller;
 
+import com.example.libreria.dto.BookAvailabilityDTO;
+import com.example.libreria.dto.BookRefreshResultDTO;
 import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.InventoryAdjustmentDTO;
+import com.example.libreria.dto.InventoryAdjustmentResultDTO;
+import com.example.libreria.dto.RelatedBookDTO;
+import com.example.libreria.dto.RelatedBooksRebuildResultDTO;
+import com.example.libreria.dto.StockReconciliationResultDTO;
+import com.example.libreria.dto.TrendingBookDTO;
+import com.example.libreria.service.AvailabilityCalendarService;
+import com.example.libreria.service.BookInventoryService;
+import com.example.libreria.service.BookRefreshService;
 import com.example.libreria.service.BookService;
 import com.example.libreria.service.ExternalBookService;
+import com.example.libreria.service.RelatedBookService;
+import com.example.libreria.service.ResourceVersionService;
+import com.example.libreria.service.StockReconciliationService;
+import com.example.libreria.service.TrendingBookService;
+import com.example.libreria.web.ETags;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -19,7 +39,15 @@ import java.util.Map;
 public class BookController {
     
     private final BookService bookService;
+    // Servicios de uso ocasional: se crean con el primer pedido y no demoran el arranque
+    private final ObjectProvider<BookRefreshService> bookRefreshService;
+    private final ObjectProvider<BookInventoryService> bookInventoryService;
     private final ExternalBookService externalBookService;
+    private final TrendingBookService trendingBookService;
+    private final ResourceVersionService resourceVersionService;
+    private final AvailabilityCalendarService availabilityCalendarService;
+    private final RelatedBookService relatedBookService;
+    private final StockReconciliationService stockReconciliationService;
     
     @PostMapping("/sync")
     public ResponseEntity<String> syncBooks() {
@@ -27,10 +55,34 @@ public class BookController {
         return ResponseEntity.ok("Libros sincronizados exitosamente desde la API externa");
     }
     
+    @PostMapping("/refresh")
+    public ResponseEntity<BookRefreshResultDTO> refreshBooks(@RequestBody List<Long> externalIds) {
+        return ResponseEntity.ok(bookRefreshService.getObject().refresh(externalIds));
+    }
+    
     @GetMapping
-    public ResponseEntity<List<BookResponseDTO>> getAllBooks() {
-        List<BookResponseDTO> books = bookService.getAllBooks();
-        return ResponseEntity.ok(books);
+    public ResponseEntity<List<BookResponseDTO>> getAllBooks(WebRequest request) {
+        // La versión se lee antes de consultar: si cambia en el medio, el cliente solo vuelve a descargar
+        return ETags.conditional(resourceVersionService.booksETag(), request, bookService::getAllBooks);
+    }
+    
+    // ?fields=externalId,title,availableQuantity: solo esas columnas en el SQL y en la respuesta
+    @GetMapping(params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getAllBooks(@RequestParam List<String> fields, WebRequest request) {
+        List<String> resolved = bookService.resolveFields(fields);
+        return ETags.conditional(ETags.forFields(resourceVersionService.booksETag(), resolved), request,
+                () -> bookService.getAllBooks(resolved));
+    }
+    
+    @GetMapping("/trending")
+    public ResponseEntity<List<TrendingBookDTO>> getTrendingBooks(
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(trendingBookService.getTrendingBooks(limit));
+    }
+    
+    @PostMapping("/related/rebuild")
+    public ResponseEntity<RelatedBooksRebuildResultDTO> rebuildRelatedBooks() {
+        return ResponseEntity.ok(relatedBookService.rebuild());
     }
     
     @GetMapping("/{externalId}")
@@ -39,6 +91,28 @@ public class BookController {
         return ResponseEntity.ok(book);
     }
     
+    @GetMapping(value = "/{externalId}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getBookByExternalId(@PathVariable Long externalId,
+                                                                   @RequestParam List<String> fields) {
+        return ResponseEntity.ok(bookService.getBookByExternalId(externalId, fields));
+    }
+    
+    @GetMapping("/{externalId}/related")
+    public ResponseEntity<List<RelatedBookDTO>> getRelatedBooks(
+            @PathVariable Long externalId,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(relatedBookService.getRelatedBooks(externalId, limit));
+    }
+    
+    // Ejemplares libres por día; sin from/to, los próximos 30 días
+    @GetMapping("/{externalId}/availability")
+    public ResponseEntity<BookAvailabilityDTO> getAvailability(
+            @PathVariable Long externalId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(availabilityCalendarService.getAvailability(externalId, from, to));
+    }
+    
     @PutMapping("/{externalId}/stock")
     public ResponseEntity<BookResponseDTO> updateStock(
             @PathVariable Long externalId,
@@ -47,6 +121,18 @@ public class BookController {
         return ResponseEntity.ok(book);
     }
 
+    // Ajuste de stock (absoluto o variación) y precio de muchos libros en una transacción
+    @PostMapping("/inventory")
+    public ResponseEntity<InventoryAdjustmentResultDTO> adjustInventory(@RequestBody List<InventoryAdjustmentDTO> adjustments) {
+        return ResponseEntity.ok(bookInventoryService.getObject().adjust(adjustments));
+    }
+
+    // Compara availableQuantity con las reservas activas; con apply=true corrige las diferencias
+    @PostMapping("/reconcile")
+    public ResponseEntity<StockReconciliationResultDTO> reconcileStock(@RequestParam(defaultValue = "false") boolean apply) {
+        return ResponseEntity.ok(stockReconciliationService.reconcile(apply));
+    }
+
     @GetMapping("/external/availability")
     public ResponseEntity<Map<String, Object>> checkExternalApiAvailability() {
         try {
@@ -0,0 +1,23 @@
+package com.example.libreria.controller;
+
+import com.example.libreria.dto.CacheRegionStatsDTO;
+import com.example.libreria.service.CacheStatsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/cache")
+@RequiredArgsConstructor
+public class CacheController {
+
+    private final ObjectProvider<CacheStatsService> cacheStatsService;
+
+    @GetMapping("/stats")
+    public ResponseEntity<List<CacheRegionStatsDTO>> getStats() {
+        return ResponseEntity.ok(cacheStatsService.getObject().getRegionStats());
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.libreria.controller;
+
+import com.example.libreria.dto.ClusterMemberDTO;
+import com.example.libreria.dto.ClusterViewDTO;
+import com.example.libreria.partition.ClusterMembership;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/cluster")
+@ConditionalOnProperty(name = "partitioning.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ClusterController {
+
+    private final ClusterMembership clusterMembership;
+
+    @GetMapping("/members")
+    public ResponseEntity<ClusterViewDTO> getMembers() {
+        return ResponseEntity.ok(clusterMembership.view());
+    }
+
+    @GetMapping("/owner/{bookExternalId}")
+    public ResponseEntity<ClusterMemberDTO> getOwner(@PathVariable Long bookExternalId) {
+        return ResponseEntity.ok(clusterMembership.owner(bookExternalId));
+    }
+
+    @PostMapping("/heartbeat")
+    public ResponseEntity<ClusterViewDTO> heartbeat(@RequestBody ClusterViewDTO remote) {
+        return ResponseEntity.ok(clusterMembership.onHeartbeat(remote));
+    }
+}
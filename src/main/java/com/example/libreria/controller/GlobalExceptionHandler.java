@@ -1,7 +1,15 @@
 package com.example.libreria.controller;
 
+import com.example.libreria.exception.BadRequestException;
+import com.example.libreria.exception.BusinessRuleException;
+import com.example.libreria.exception.ConflictException;
+import com.example.libreria.exception.NotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.TypeMismatchException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -11,13 +19,48 @@ import java.util.HashMap;
 import java.util.Map;
 
 @RestControllerAdvice
+@Slf4j
 public class GlobalExceptionHandler {
     
+    @ExceptionHandler(NotFoundException.class)
+    public ResponseEntity<Map<String, String>> handleNotFound(NotFoundException e) {
+        return error(HttpStatus.NOT_FOUND, e);
+    }
+    
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<Map<String, String>> handleConflict(ConflictException e) {
+        return error(HttpStatus.CONFLICT, e);
+    }
+    
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, String>> handleOptimisticLock(OptimisticLockingFailureException e) {
+        return error(HttpStatus.CONFLICT,
+                new ConflictException("El recurso fue modificado por otra operación, vuelva a intentarlo"));
+    }
+    
+    @ExceptionHandler(BusinessRuleException.class)
+    public ResponseEntity<Map<String, String>> handleBusinessRule(BusinessRuleException e) {
+        return error(HttpStatus.UNPROCESSABLE_ENTITY, e);
+    }
+    
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequest(BadRequestException e) {
+        return error(HttpStatus.BAD_REQUEST, e);
+    }
+    
+    // Cuerpo o parámetros que no se pueden convertir
+    @ExceptionHandler({HttpMessageNotReadableException.class, TypeMismatchException.class})
+    public ResponseEntity<Map<String, String>> handleUnreadableRequest(RuntimeException e) {
+        return error(HttpStatus.BAD_REQUEST, e);
+    }
+    
+    // Un error no previsto no es culpa del cliente, y su mensaje puede traer SQL o detalles internos
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<Map<String, String>> handleRuntimeException(RuntimeException e) {
+        log.error("Error no controlado", e);
         Map<String, String> error = new HashMap<>();
-        error.put("message", e.getMessage());
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+        error.put("message", "Error interno del servidor");
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
     }
     
     @ExceptionHandler(MethodArgumentNotValidException.class)
@@ -31,5 +74,10 @@ public class GlobalExceptionHandler {
         });
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errors);
     }
+    
+    private static ResponseEntity<Map<String, String>> error(HttpStatus status, RuntimeException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("message", e.getMessage());
+        return ResponseEntity.status(status).body(error);
+    }
 }
-
@@ -0,0 +1,23 @@
+package com.example.libreria.controller;
+
+import com.example.libreria.dto.JournalReplayResultDTO;
+import com.example.libreria.journal.JournalReplayService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/journal")
+@ConditionalOnProperty(name = "journal.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class JournalController {
+
+    private final ObjectProvider<JournalReplayService> journalReplayService;
+
+    @PostMapping("/replay")
+    public ResponseEntity<JournalReplayResultDTO> replay(@RequestParam(defaultValue = "false") boolean apply) {
+        return ResponseEntity.ok(journalReplayService.getObject().replay(apply));
+    }
+}
@@ -3,14 +3,19 @@ package com.example.libreria.controller;
 import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.service.ReservationArchiveService;
 import com.example.libreria.service.ReservationService;
+import com.example.libreria.service.ResourceVersionService;
+import com.example.libreria.web.ETags;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/reservations")
@@ -18,6 +23,8 @@ import java.util.List;
 public class ReservationController {
     
     private final ReservationService reservationService;
+    private final ReservationArchiveService reservationArchiveService;
+    private final ResourceVersionService resourceVersionService;
     
     @PostMapping
     public ResponseEntity<ReservationResponseDTO> createReservation(
@@ -32,16 +39,37 @@ public class ReservationController {
         return ResponseEntity.ok(reservation);
     }
     
+    @GetMapping(value = "/{id}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getReservationById(@PathVariable Long id,
+                                                                  @RequestParam List<String> fields) {
+        return ResponseEntity.ok(reservationService.getReservationById(id, fields));
+    }
+    
     @GetMapping
     public ResponseEntity<List<ReservationResponseDTO>> getAllReservations() {
         List<ReservationResponseDTO> reservations = reservationService.getAllReservations();
         return ResponseEntity.ok(reservations);
     }
     
+    @GetMapping(params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getAllReservations(@RequestParam List<String> fields) {
+        return ResponseEntity.ok(reservationService.getAllReservations(fields));
+    }
+    
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<ReservationResponseDTO>> getReservationsByUserId(@PathVariable Long userId) {
-        List<ReservationResponseDTO> reservations = reservationService.getReservationsByUserId(userId);
-        return ResponseEntity.ok(reservations);
+    public ResponseEntity<List<ReservationResponseDTO>> getReservationsByUserId(@PathVariable Long userId,
+                                                                                WebRequest request) {
+        return ETags.conditional(resourceVersionService.userReservationsETag(userId), request,
+                () -> reservationService.getReservationsByUserId(userId));
+    }
+    
+    @GetMapping(value = "/user/{userId}", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getReservationsByUserId(@PathVariable Long userId,
+                                                                             @RequestParam List<String> fields,
+                                                                             WebRequest request) {
+        List<String> resolved = reservationService.resolveFields(fields);
+        return ETags.conditional(ETags.forFields(resourceVersionService.userReservationsETag(userId), resolved),
+                request, () -> reservationService.getReservationsByUserId(userId, resolved));
     }
     
     @GetMapping("/active")
@@ -50,12 +78,22 @@ public class ReservationController {
         return ResponseEntity.ok(reservations);
     }
     
+    @GetMapping(value = "/active", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getActiveReservations(@RequestParam List<String> fields) {
+        return ResponseEntity.ok(reservationService.getActiveReservations(fields));
+    }
+    
     @GetMapping("/overdue")
     public ResponseEntity<List<ReservationResponseDTO>> getOverdueReservations() {
         List<ReservationResponseDTO> reservations = reservationService.getOverdueReservations();
         return ResponseEntity.ok(reservations);
     }
     
+    @GetMapping(value = "/overdue", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getOverdueReservations(@RequestParam List<String> fields) {
+        return ResponseEntity.ok(reservationService.getOverdueReservations(fields));
+    }
+    
     @PostMapping("/{id}/return")
     public ResponseEntity<ReservationResponseDTO> returnBook(
             @PathVariable Long id,
@@ -63,5 +101,10 @@ public class ReservationController {
         ReservationResponseDTO reservation = reservationService.returnBook(id, returnRequest);
         return ResponseEntity.ok(reservation);
     }
+    
+    @PostMapping("/archive")
+    public ResponseEntity<Map<String, Integer>> archiveReturnedReservations() {
+        int archived = reservationArchiveService.archiveReturnedReservations();
+        return ResponseEntity.ok(Map.of("archived", archived));
+    }
 }
-
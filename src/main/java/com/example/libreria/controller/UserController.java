@@ -1,14 +1,22 @@
 package com.example.libreria.controller;
 
+import com.example.libreria.dto.EmailFilterStatsDTO;
+import com.example.libreria.dto.UserImportResultDTO;
 import com.example.libreria.dto.UserRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.service.EmailFilterService;
+import com.example.libreria.service.UserImportService;
 import com.example.libreria.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -17,6 +25,8 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final EmailFilterService emailFilterService;
+    private final ObjectProvider<UserImportService> userImportService;
 
     @PostMapping
     public ResponseEntity<UserResponseDTO> createUser(@Valid @RequestBody UserRequestDTO requestDTO) {
@@ -24,6 +34,21 @@ public class UserController {
         return new ResponseEntity<>(createdUser, HttpStatus.CREATED);
     }
 
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<UserImportResultDTO> importUsers(HttpServletRequest request) throws IOException {
+        UserImportService.Format format = MediaType.parseMediaType(request.getContentType())
+                .isCompatibleWith(MediaType.valueOf("text/csv"))
+                ? UserImportService.Format.CSV
+                : UserImportService.Format.NDJSON;
+        UserImportResultDTO result = userImportService.getObject().importUsers(request.getInputStream(), format);
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping("/email-filter/stats")
+    public ResponseEntity<EmailFilterStatsDTO> getEmailFilterStats() {
+        return ResponseEntity.ok(emailFilterService.getStats());
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<UserResponseDTO> getUserById(@PathVariable Long id) {
         UserResponseDTO user = userService.getUserById(id);
@@ -0,0 +1,80 @@
+package com.example.libreria.datasource;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Envía las transacciones de solo lectura a una réplica y todo lo demás a la primaria.
+ * Debe usarse detrás de un {@code LazyConnectionDataSourceProxy}: la conexión física tiene
+ * que pedirse después de que la transacción haya marcado si es de solo lectura.
+ * <p>
+ * Lo que se lee de una réplica puede estar atrasado, así que esa transacción usa la caché de
+ * segundo nivel solo para leer: si no, una fila vieja volvería a la caché después de que una
+ * escritura la desalojó y la siguiente escritura partiría de ella.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractDataSource {
+
+    private final ReplicaRouter router;
+
+    public ReadReplicaRoutingDataSource(ReplicaRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        ReplicaRouter.Replica replica = TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                ? router.select()
+                : null;
+        if (replica != null) {
+            try {
+                Connection connection = connect(replica.dataSource(), username, password);
+                readOnlyCache();
+                return connection;
+            } catch (SQLException e) {
+                // La lectura no falla por una réplica caída: se marca y se atiende en la primaria
+                router.markDown(replica, e.getMessage());
+            }
+        }
+        return connect(router.primary(), username, password);
+    }
+
+    // La sesión puede seguir abierta después de la transacción (open-in-view): se restaura al terminar
+    private static void readOnlyCache() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        for (Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+            if (resource instanceof EntityManagerHolder holder) {
+                Session session = holder.getEntityManager().unwrap(Session.class);
+                CacheMode previous = session.getCacheMode();
+                session.setCacheMode(CacheMode.GET);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (session.isOpen()) {
+                            session.setCacheMode(previous);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private static Connection connect(DataSource dataSource, String username, String password)
+            throws SQLException {
+        return username == null ? dataSource.getConnection() : dataSource.getConnection(username, password);
+    }
+}
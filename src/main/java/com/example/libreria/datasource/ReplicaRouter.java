@@ -0,0 +1,158 @@
+package com.example.libreria.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base de datos primaria y réplicas de lectura con su estado de salud. Las réplicas se eligen
+ * en ronda entre las que responden y no superan el retraso máximo; si no queda ninguna,
+ * {@link #select()} devuelve {@code null} y la lectura va a la primaria.
+ */
+@Slf4j
+public class ReplicaRouter implements Closeable {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final String lagQuery;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRouter(DataSource primary, Map<String, DataSource> replicas, String lagQuery, long maxLagMillis) {
+        this.primary = primary;
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.lagQuery = lagQuery == null || lagQuery.isBlank() ? null : lagQuery;
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    public DataSource primary() {
+        return primary;
+    }
+
+    public Replica select() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.available) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    // Una réplica que falla al entregar una conexión queda fuera hasta el próximo chequeo exitoso
+    public void markDown(Replica replica, String reason) {
+        if (replica.available) {
+            log.warn("Réplica {} fuera de servicio: {}", replica.name, reason);
+        }
+        replica.available = false;
+        replica.reason = reason;
+    }
+
+    @Scheduled(fixedDelayString = "${replicas.health-check-interval-ms:5000}",
+            initialDelayString = "${replicas.health-check-interval-ms:5000}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    markDown(replica, "la conexión no es válida");
+                    continue;
+                }
+                if (lagQuery != null) {
+                    long lag = queryLag(connection);
+                    replica.lagMillis = lag;
+                    if (lag > maxLagMillis) {
+                        markDown(replica, "retraso de " + lag + " ms");
+                        continue;
+                    }
+                }
+                if (!replica.available) {
+                    log.info("Réplica {} disponible nuevamente", replica.name);
+                }
+                replica.available = true;
+                replica.reason = null;
+            } catch (SQLException e) {
+                markDown(replica, e.getMessage());
+            }
+        }
+    }
+
+    public List<Replica> replicas() {
+        return List.copyOf(replicas);
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(primary);
+        replicas.forEach(replica -> closeQuietly(replica.dataSource));
+    }
+
+    private long queryLag(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            if (!resultSet.next()) {
+                throw new SQLException("La consulta de retraso no devolvió filas");
+            }
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("Error al cerrar el DataSource: {}", e.getMessage());
+            }
+        }
+    }
+
+    public static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean available = true;
+        private volatile String reason;
+        private volatile long lagMillis;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public DataSource dataSource() {
+            return dataSource;
+        }
+
+        public boolean available() {
+            return available;
+        }
+
+        public String reason() {
+            return reason;
+        }
+
+        public long lagMillis() {
+            return lagMillis;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityDiscrepancyDTO {
+    
+    private Long externalId;
+    private Integer expectedStockQuantity;
+    private Integer expectedAvailableQuantity;
+    private Integer storedStockQuantity;
+    private Integer storedAvailableQuantity;
+}
@@ -0,0 +1,22 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookAvailabilityDTO {
+    
+    private Long externalId;
+    private LocalDate from;
+    private LocalDate to;
+    private Integer stockQuantity;
+    // Ejemplares libres durante todo el rango: los que se pueden reservar de from a to
+    private Integer availableCopies;
+    private List<DayAvailabilityDTO> days;
+}
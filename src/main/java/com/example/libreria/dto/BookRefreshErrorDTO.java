@@ -0,0 +1,14 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookRefreshErrorDTO {
+    
+    private Long externalId;
+    private String message;
+}
@@ -0,0 +1,21 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookRefreshResultDTO {
+    
+    private int requested;
+    private int refreshed;
+    private int created;
+    private int failed;
+    private int timedOut;
+    private List<BookRefreshErrorDTO> errors;
+    private long elapsedMillis;
+}
@@ -0,0 +1,17 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheRegionStatsDTO {
+    
+    private String region;
+    private long hits;
+    private long misses;
+    private long puts;
+    private double hitRatio;
+}
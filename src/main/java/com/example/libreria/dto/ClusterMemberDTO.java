@@ -0,0 +1,15 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterMemberDTO {
+    
+    private String nodeId;
+    private String url;
+    private long lastSeenEpochMillis;
+}
@@ -0,0 +1,18 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterViewDTO {
+    
+    private String nodeId;
+    private List<ClusterMemberDTO> members;
+    private Map<String, Double> ownershipShares;
+}
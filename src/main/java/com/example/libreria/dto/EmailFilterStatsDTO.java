@@ -0,0 +1,23 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailFilterStatsDTO {
+    
+    private boolean ready;
+    private long insertions;
+    private long bitSize;
+    private int hashFunctions;
+    private double configuredFalsePositiveRate;
+    private double estimatedFalsePositiveRate;
+    private long lookups;
+    private long definiteMisses;
+    private long databaseChecks;
+    private long falsePositives;
+    private double observedFalsePositiveRate;
+}
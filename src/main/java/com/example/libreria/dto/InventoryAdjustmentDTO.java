@@ -0,0 +1,29 @@
+package com.example.libreria.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryAdjustmentDTO {
+    
+    @NotNull(message = "El ID externo del libro es obligatorio")
+    private Long externalId;
+    
+    // Stock absoluto; excluyente con stockDelta
+    @PositiveOrZero(message = "El stock no puede ser negativo")
+    private Integer stockQuantity;
+    
+    // Variación del stock (positiva al recibir un envío, negativa al dar de baja ejemplares)
+    private Integer stockDelta;
+    
+    @Positive(message = "El precio debe ser positivo")
+    private BigDecimal price;
+}
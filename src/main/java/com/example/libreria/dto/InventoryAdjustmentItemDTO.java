@@ -0,0 +1,25 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryAdjustmentItemDTO {
+    
+    private Long externalId;
+    private Status status;
+    private String message;
+    // Valores del libro después del ajuste (o los vigentes si se rechazó)
+    private Integer stockQuantity;
+    private Integer availableQuantity;
+    private BigDecimal price;
+    
+    public enum Status {
+        UPDATED, INVALID, NOT_FOUND, REJECTED
+    }
+}
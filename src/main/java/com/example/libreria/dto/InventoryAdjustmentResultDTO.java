@@ -0,0 +1,18 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryAdjustmentResultDTO {
+    
+    private int totalItems;
+    private int updated;
+    private int rejected;
+    private List<InventoryAdjustmentItemDTO> results;
+}
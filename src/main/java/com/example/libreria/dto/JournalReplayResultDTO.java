@@ -0,0 +1,19 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JournalReplayResultDTO {
+    
+    private long eventsReplayed;
+    private int booksRebuilt;
+    private List<Long> booksWithoutBaseline;
+    private List<AvailabilityDiscrepancyDTO> discrepancies;
+    private boolean applied;
+}
@@ -0,0 +1,16 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RelatedBookDTO {
+    
+    private Long externalId;
+    private String title;
+    // Usuarios que reservaron los dos libros (estimado)
+    private Long sharedUsers;
+}
@@ -0,0 +1,15 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RelatedBooksRebuildResultDTO {
+    
+    private int users;
+    private int books;
+    private long durationMillis;
+}
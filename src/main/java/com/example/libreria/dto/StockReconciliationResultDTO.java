@@ -0,0 +1,22 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReconciliationResultDTO {
+    
+    private long booksChecked;
+    private int partitions;
+    private int discrepancyCount;
+    private int fixed;
+    private List<AvailabilityDiscrepancyDTO> discrepancies;
+    private boolean discrepanciesTruncated;
+    private boolean applied;
+    private long durationMillis;
+}
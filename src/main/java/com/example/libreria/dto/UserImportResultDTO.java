@@ -0,0 +1,19 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportResultDTO {
+    
+    private long totalRows;
+    private long imported;
+    private long rejected;
+    private List<UserImportErrorDTO> errors;
+    private boolean errorsTruncated;
+}
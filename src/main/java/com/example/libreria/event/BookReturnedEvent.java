@@ -0,0 +1,14 @@
+package com.example.libreria.event;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// availableDelta: cuánto cambió Book.availableQuantity; 0 si la devolución no baja el pico de ocupación
+public record BookReturnedEvent(
+        Long reservationId,
+        Long userId,
+        Long bookExternalId,
+        LocalDate returnDate,
+        BigDecimal lateFee,
+        int availableDelta) {
+}
@@ -0,0 +1,8 @@
+package com.example.libreria.event;
+
+public record BookSyncedEvent(
+        Long bookExternalId,
+        Integer stockQuantity,
+        Integer availableQuantity,
+        boolean created) {
+}
@@ -0,0 +1,13 @@
+package com.example.libreria.event;
+
+import java.time.LocalDate;
+
+// availableDelta: cuánto cambió Book.availableQuantity; 0 si la reserva no sube el pico de ocupación
+public record ReservationCreatedEvent(
+        Long reservationId,
+        Long userId,
+        Long bookExternalId,
+        LocalDate startDate,
+        LocalDate expectedReturnDate,
+        int availableDelta) {
+}
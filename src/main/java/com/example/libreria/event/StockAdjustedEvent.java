@@ -0,0 +1,7 @@
+package com.example.libreria.event;
+
+public record StockAdjustedEvent(
+        Long bookExternalId,
+        Integer stockQuantity,
+        Integer availableQuantity) {
+}
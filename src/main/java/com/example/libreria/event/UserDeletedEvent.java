@@ -0,0 +1,9 @@
+package com.example.libreria.event;
+
+import java.util.Set;
+
+// activeBookExternalIds: libros de las reservas activas que se borraron con el usuario
+public record UserDeletedEvent(
+        Long userId,
+        Set<Long> activeBookExternalIds) {
+}
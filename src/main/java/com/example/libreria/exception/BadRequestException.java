@@ -0,0 +1,12 @@
+package com.example.libreria.exception;
+
+/**
+ * La petición no se puede atender tal como vino: campos de {@code ?fields=} desconocidos, un lote
+ * más grande que el permitido o una API externa que no respondió (400).
+ */
+public class BadRequestException extends DomainException {
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
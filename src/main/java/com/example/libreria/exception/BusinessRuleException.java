@@ -0,0 +1,12 @@
+package com.example.libreria.exception;
+
+/**
+ * La petición es válida en forma pero incumple una regla de negocio, como dejar el stock por
+ * debajo de lo reservado (422).
+ */
+public class BusinessRuleException extends DomainException {
+
+    public BusinessRuleException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.libreria.exception;
+
+/**
+ * La operación choca con el estado actual del recurso: sin stock, reserva ya devuelta,
+ * email repetido (409).
+ */
+public class ConflictException extends DomainException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
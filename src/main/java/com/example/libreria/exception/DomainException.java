@@ -0,0 +1,13 @@
+package com.example.libreria.exception;
+
+/**
+ * Resultado de negocio esperado (recurso inexistente, conflicto con el estado actual o regla
+ * incumplida). No captura la traza: se crea en cada rechazo, que es de lo más frecuente en hora
+ * pico, y el mensaje alcanza para el cliente y el log.
+ */
+public abstract class DomainException extends RuntimeException {
+
+    protected DomainException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.libreria.exception;
+
+/**
+ * El recurso pedido no existe (404).
+ */
+public class NotFoundException extends DomainException {
+
+    public NotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.libreria.instrumentation;
+
+import com.example.libreria.event.BookReturnedEvent;
+import com.example.libreria.event.ReservationCreatedEvent;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Métricas de negocio. Los contadores de reservas y multas se alimentan de los eventos
+ * confirmados; los gauges se recalculan periódicamente para no consultar la base en cada scrape.
+ */
+@Component
+@Slf4j
+public class LibreriaMetrics {
+
+    private final MeterRegistry registry;
+    private final BookRepository bookRepository;
+    private final ReservationRepository reservationRepository;
+
+    private final Counter reservationsCreated;
+    private final Counter lateReturns;
+    private final Counter lateFeesCharged;
+    private final Timer syncDuration;
+    private final DistributionSummary syncSize;
+
+    private final AtomicLong availableStock = new AtomicLong();
+    private final AtomicLong activeLoans = new AtomicLong();
+
+    public LibreriaMetrics(MeterRegistry registry, BookRepository bookRepository,
+                           ReservationRepository reservationRepository) {
+        this.registry = registry;
+        this.bookRepository = bookRepository;
+        this.reservationRepository = reservationRepository;
+
+        // Prometheus reserva el sufijo "_created", por eso no se llama libreria.reservations.created
+        this.reservationsCreated = Counter.builder("libreria.reservations.placed")
+                .description("Reservas creadas")
+                .register(registry);
+        this.lateReturns = Counter.builder("libreria.reservations.late.returns")
+                .description("Devoluciones con multa por demora")
+                .register(registry);
+        this.lateFeesCharged = Counter.builder("libreria.late.fees.charged")
+                .description("Monto total cobrado en multas por demora")
+                .register(registry);
+        this.syncDuration = Timer.builder("libreria.books.sync.duration")
+                .description("Duración de la sincronización con la API externa")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        this.syncSize = DistributionSummary.builder("libreria.books.sync.size")
+                .description("Libros recibidos por sincronización")
+                .baseUnit("books")
+                .register(registry);
+
+        Gauge.builder("libreria.books.available.stock", availableStock, AtomicLong::get)
+                .description("Ejemplares disponibles sumando todos los libros")
+                .register(registry);
+        Gauge.builder("libreria.reservations.active", activeLoans, AtomicLong::get)
+                .description("Préstamos activos")
+                .register(registry);
+    }
+
+    public void reservationRejected(String reason) {
+        registry.counter("libreria.reservations.rejected", "reason", reason).increment();
+    }
+
+    public void recordSync(Duration duration, int books) {
+        syncDuration.record(duration);
+        syncSize.record(books);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationCreated(ReservationCreatedEvent event) {
+        reservationsCreated.increment();
+        activeLoans.incrementAndGet();
+        // Una reserva que no sube el pico de ocupación no descuenta ejemplares
+        availableStock.addAndGet(event.availableDelta());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookReturned(BookReturnedEvent event) {
+        activeLoans.decrementAndGet();
+        availableStock.addAndGet(event.availableDelta());
+        BigDecimal lateFee = event.lateFee();
+        if (lateFee != null && lateFee.signum() > 0) {
+            lateReturns.increment();
+            lateFeesCharged.increment(lateFee.doubleValue());
+        }
+    }
+
+    // Los eventos mantienen los gauges al día entre recálculos; el recálculo corrige cualquier deriva
+    // (sincronizaciones, ajustes de stock, reservas archivadas o escritas por otra instancia)
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${metrics.gauges.refresh-interval-ms:30000}",
+            initialDelayString = "${metrics.gauges.refresh-interval-ms:30000}")
+    public void refreshGauges() {
+        try {
+            availableStock.set(bookRepository.sumAvailableQuantity());
+            activeLoans.set(reservationRepository.countByStatus(Reservation.ReservationStatus.ACTIVE));
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron recalcular los gauges de métricas: {}", e.getMessage());
+        }
+    }
+}
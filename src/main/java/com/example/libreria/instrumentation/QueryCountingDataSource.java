@@ -0,0 +1,123 @@
+package com.example.libreria.instrumentation;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Envuelve un {@link DataSource} con proxies dinámicos que cuentan sentencias ejecutadas,
+ * filas leídas y tiempo de JDBC en el {@link QueryStats} del hilo actual.
+ */
+public final class QueryCountingDataSource {
+
+    private QueryCountingDataSource() {
+    }
+
+    public static DataSource wrap(DataSource target) {
+        if (isWrapped(target)) {
+            return target;
+        }
+        return proxy(DataSource.class, target, (proxy, method, args) -> {
+            Object result = invoke(target, method, args);
+            return result instanceof Connection connection ? wrapConnection(connection) : result;
+        });
+    }
+
+    public static boolean isWrapped(Object object) {
+        return Proxy.isProxyClass(object.getClass()) && Proxy.getInvocationHandler(object) instanceof Handler;
+    }
+
+    private static Connection wrapConnection(Connection target) {
+        return proxy(Connection.class, target, (proxy, method, args) -> {
+            Object result = invoke(target, method, args);
+            if (result instanceof CallableStatement statement) {
+                return wrapStatement(CallableStatement.class, statement);
+            }
+            if (result instanceof PreparedStatement statement) {
+                return wrapStatement(PreparedStatement.class, statement);
+            }
+            if (result instanceof Statement statement) {
+                return wrapStatement(Statement.class, statement);
+            }
+            return result;
+        });
+    }
+
+    private static <S extends Statement> S wrapStatement(Class<S> type, S target) {
+        return proxy(type, target, (proxy, method, args) -> {
+            QueryStats stats = QueryStats.current();
+            if (stats == null) {
+                return invoke(target, method, args);
+            }
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                long start = System.nanoTime();
+                Object result = invoke(target, method, args);
+                stats.recordStatement(System.nanoTime() - start);
+                return result instanceof ResultSet resultSet ? wrapResultSet(resultSet) : result;
+            }
+            Object result = invoke(target, method, args);
+            return name.equals("getResultSet") && result instanceof ResultSet resultSet ? wrapResultSet(resultSet) : result;
+        });
+    }
+
+    private static ResultSet wrapResultSet(ResultSet target) {
+        return proxy(ResultSet.class, target, (proxy, method, args) -> {
+            QueryStats stats = QueryStats.current();
+            if (stats == null || !method.getName().equals("next")) {
+                return invoke(target, method, args);
+            }
+            long start = System.nanoTime();
+            Object result = invoke(target, method, args);
+            if (Boolean.TRUE.equals(result)) {
+                stats.recordRow(System.nanoTime() - start);
+            } else {
+                stats.recordTime(System.nanoTime() - start);
+            }
+            return result;
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, InvocationHandler delegate) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new Handler(target, delegate));
+    }
+
+    private record Handler(Object target, InvocationHandler delegate) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            // unwrap/isWrapperFor deben ver el objeto real, no el proxy
+            if (method.getName().equals("unwrap") || method.getName().equals("isWrapperFor")) {
+                Class<?> iface = (Class<?>) args[0];
+                if (iface.isInstance(target)) {
+                    return method.getName().equals("unwrap") ? target : true;
+                }
+                return QueryCountingDataSource.invoke(target, method, args);
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> QueryCountingDataSource.invoke(target, method, args);
+                };
+            }
+            return delegate.invoke(proxy, method, args);
+        }
+    }
+}
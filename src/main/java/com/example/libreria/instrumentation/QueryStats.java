@@ -0,0 +1,86 @@
+package com.example.libreria.instrumentation;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores de JDBC del hilo actual. Solo se acumulan entre {@link #begin()} y {@link #end()},
+ * así que fuera de una petición instrumentada el proxy no registra nada. Las tareas que una
+ * petición reparte en un pool propio se envuelven con {@link #propagate} para que sus sentencias
+ * cuenten en esa petición; por eso los contadores admiten varios hilos.
+ */
+public final class QueryStats {
+
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder jdbcNanos = new LongAdder();
+
+    public static QueryStats begin() {
+        QueryStats stats = new QueryStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    public static QueryStats end() {
+        QueryStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    /** {@code task} acumula en los contadores del hilo que la crea, si hay alguno activo. */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        QueryStats stats = CURRENT.get();
+        if (stats == null) {
+            return task;
+        }
+        return () -> {
+            QueryStats previous = CURRENT.get();
+            CURRENT.set(stats);
+            try {
+                return task.call();
+            } finally {
+                if (previous != null) {
+                    CURRENT.set(previous);
+                } else {
+                    CURRENT.remove();
+                }
+            }
+        };
+    }
+
+    void recordStatement(long nanos) {
+        statements.increment();
+        jdbcNanos.add(nanos);
+    }
+
+    void recordRow(long nanos) {
+        rows.increment();
+        jdbcNanos.add(nanos);
+    }
+
+    void recordTime(long nanos) {
+        jdbcNanos.add(nanos);
+    }
+
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getJdbcNanos() {
+        return jdbcNanos.sum();
+    }
+
+    public double getJdbcMillis() {
+        return jdbcNanos.sum() / 1_000_000.0;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.libreria.instrumentation;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Agrega a cada respuesta la cantidad de sentencias, filas y tiempo de JDBC de la petición.
+ * La respuesta se guarda en memoria para poder escribir los encabezados al final, por eso
+ * solo se activa con {@code query-stats.headers-enabled} (perfil {@code debug}).
+ */
+@Component
+@ConditionalOnProperty(name = "query-stats.headers-enabled", havingValue = "true")
+@Slf4j
+public class QueryStatsFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_HEADER = "X-Query-Count";
+    public static final String ROWS_HEADER = "X-Query-Rows";
+    public static final String TIME_HEADER = "X-Query-Time-Ms";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        QueryStats.begin();
+        try {
+            filterChain.doFilter(request, wrapper);
+        } finally {
+            QueryStats stats = QueryStats.end();
+            wrapper.setHeader(STATEMENTS_HEADER, String.valueOf(stats.getStatements()));
+            wrapper.setHeader(ROWS_HEADER, String.valueOf(stats.getRows()));
+            wrapper.setHeader(TIME_HEADER, String.format(Locale.ROOT, "%.3f", stats.getJdbcMillis()));
+            log.debug("{} {}: {} sentencias, {} filas, {} ms de JDBC", request.getMethod(), request.getRequestURI(),
+                    stats.getStatements(), stats.getRows(), stats.getJdbcMillis());
+            wrapper.copyBodyToResponse();
+        }
+    }
+}
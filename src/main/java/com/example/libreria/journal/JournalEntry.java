@@ -0,0 +1,44 @@
+package com.example.libreria.journal;
+
+/**
+ * Entrada del journal. En STOCK_ADJUSTED y BOOK_SYNCED las cantidades son absolutas;
+ * en RESERVATION_CREATED y BOOK_RETURNED {@code availableQuantity} es la variación aplicada.
+ */
+public record JournalEntry(
+        long sequence,
+        long timestamp,
+        Type type,
+        long bookExternalId,
+        long reservationId,
+        long userId,
+        int stockQuantity,
+        int availableQuantity) {
+
+    public static final long NONE = -1L;
+
+    public enum Type {
+        RESERVATION_CREATED(1),
+        BOOK_RETURNED(2),
+        STOCK_ADJUSTED(3),
+        BOOK_SYNCED(4);
+
+        private final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        public byte code() {
+            return code;
+        }
+
+        public static Type fromCode(byte code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+}
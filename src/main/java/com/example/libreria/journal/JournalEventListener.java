@@ -0,0 +1,54 @@
+package com.example.libreria.journal;
+
+import com.example.libreria.event.BookReturnedEvent;
+import com.example.libreria.event.BookSyncedEvent;
+import com.example.libreria.event.ReservationCreatedEvent;
+import com.example.libreria.event.StockAdjustedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+
+import static com.example.libreria.journal.JournalEntry.NONE;
+
+@Component
+@ConditionalOnProperty(name = "journal.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class JournalEventListener {
+
+    private final ReservationJournal journal;
+    private final Clock clock = Clock.systemUTC();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationCreated(ReservationCreatedEvent event) {
+        journal.append(JournalEntry.Type.RESERVATION_CREATED, clock.millis(), event.bookExternalId(),
+                event.reservationId(), event.userId(), 0, event.availableDelta());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookReturned(BookReturnedEvent event) {
+        journal.append(JournalEntry.Type.BOOK_RETURNED, clock.millis(), event.bookExternalId(),
+                event.reservationId(), event.userId(), 0, event.availableDelta());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockAdjusted(StockAdjustedEvent event) {
+        journal.append(JournalEntry.Type.STOCK_ADJUSTED, clock.millis(), event.bookExternalId(),
+                NONE, NONE, event.stockQuantity(), event.availableQuantity());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookSynced(BookSyncedEvent event) {
+        journal.append(JournalEntry.Type.BOOK_SYNCED, clock.millis(), event.bookExternalId(),
+                NONE, NONE, event.stockQuantity(), event.availableQuantity());
+    }
+
+    // Cota de tiempo para las entradas que no llegan a completar un lote de fsync
+    @Scheduled(fixedDelayString = "${journal.flush-interval-ms:200}")
+    public void flush() {
+        journal.flush();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.libreria.journal;
+
+import com.example.libreria.dto.AvailabilityDiscrepancyDTO;
+import com.example.libreria.dto.JournalReplayResultDTO;
+import com.example.libreria.event.StockAdjustedEvent;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+@Service
+@ConditionalOnProperty(name = "journal.enabled", havingValue = "true")
+@Lazy
+@RequiredArgsConstructor
+@Slf4j
+public class JournalReplayService {
+
+    private final ReservationJournal journal;
+    private final BookRepository bookRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Transactional
+    public JournalReplayResultDTO replay(boolean apply) {
+        log.info("Reconstruyendo disponibilidad desde el journal ({} entradas)", journal.size());
+        Map<Long, int[]> rebuilt = new HashMap<>();
+        TreeSet<Long> withoutBaseline = new TreeSet<>();
+        long[] replayed = {0};
+
+        journal.forEach(entry -> {
+            replayed[0]++;
+            switch (entry.type()) {
+                case BOOK_SYNCED, STOCK_ADJUSTED -> {
+                    rebuilt.put(entry.bookExternalId(), new int[]{entry.stockQuantity(), entry.availableQuantity()});
+                    withoutBaseline.remove(entry.bookExternalId());
+                }
+                case RESERVATION_CREATED, BOOK_RETURNED -> {
+                    int[] state = rebuilt.get(entry.bookExternalId());
+                    if (state == null) {
+                        // El journal empezó después de cargar el libro: no hay base para aplicar la variación
+                        withoutBaseline.add(entry.bookExternalId());
+                    } else {
+                        state[1] += entry.availableQuantity();
+                    }
+                }
+            }
+        });
+        rebuilt.keySet().removeAll(withoutBaseline);
+
+        List<AvailabilityDiscrepancyDTO> discrepancies = new ArrayList<>();
+        List<Book> books = bookRepository.findAllById(rebuilt.keySet());
+        for (Book book : books) {
+            int[] state = rebuilt.get(book.getExternalId());
+            if (state[0] == book.getStockQuantity() && state[1] == book.getAvailableQuantity()) {
+                continue;
+            }
+            discrepancies.add(new AvailabilityDiscrepancyDTO(book.getExternalId(), state[0], state[1],
+                    book.getStockQuantity(), book.getAvailableQuantity()));
+            if (apply) {
+                book.setStockQuantity(state[0]);
+                book.setAvailableQuantity(state[1]);
+                bookRepository.save(book);
+                eventPublisher.publishEvent(new StockAdjustedEvent(book.getExternalId(), state[0], state[1]));
+            }
+        }
+
+        log.info("Replay completado: {} entradas, {} libros, {} discrepancias",
+                replayed[0], rebuilt.size(), discrepancies.size());
+        return new JournalReplayResultDTO(replayed[0], rebuilt.size(), new ArrayList<>(withoutBaseline),
+                discrepancies, apply);
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.libreria.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal append-only sobre segmentos de tamaño fijo mapeados en memoria.
+ * Cada entrada ocupa {@link #RECORD_SIZE} bytes y lleva un CRC para descartar
+ * escrituras incompletas al reabrir. El fsync se agrupa: se fuerza a disco cada
+ * {@code flushBatchSize} entradas o cuando se llama a {@link #flush()}.
+ * Se sincroniza con un {@link ReentrantLock} y no con {@code synchronized}: el fsync
+ * bloquea, y dentro de un monitor fijaría el hilo virtual a su portador.
+ */
+@Slf4j
+public class ReservationJournal implements Closeable {
+
+    static final int RECORD_SIZE = 64;
+    private static final int CRC_OFFSET = 56;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int flushBatchSize;
+    private final CRC32 crc = new CRC32();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private int segmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int flushedPosition;
+    private int pendingEntries;
+    private long nextSequence;
+    private long forceCount;
+
+    public ReservationJournal(Path directory, int segmentSize, int flushBatchSize) {
+        if (segmentSize < RECORD_SIZE) {
+            throw new IllegalArgumentException("El segmento debe alojar al menos una entrada");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+        this.flushBatchSize = Math.max(1, flushBatchSize);
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = listSegments();
+            segmentIndex = segments.isEmpty() ? 0 : segments.size() - 1;
+            for (int i = 0; i < segmentIndex; i++) {
+                nextSequence += countEntries(segments.get(i));
+            }
+            openSegment(segmentIndex);
+            recoverPosition();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el journal en " + directory, e);
+        }
+        log.info("Journal abierto en {} (segmento {}, próxima secuencia {})", directory, segmentIndex, nextSequence);
+    }
+
+    public long append(JournalEntry.Type type, long timestamp, long bookExternalId,
+                       long reservationId, long userId, int stockQuantity, int availableQuantity) {
+        lock.lock();
+        try {
+            if (buffer.remaining() < RECORD_SIZE) {
+                rollSegment();
+            }
+            long sequence = nextSequence++;
+            int start = buffer.position();
+            buffer.put(type.code());
+            buffer.put(new byte[7]);
+            buffer.putLong(timestamp);
+            buffer.putLong(bookExternalId);
+            buffer.putLong(reservationId);
+            buffer.putLong(userId);
+            buffer.putInt(stockQuantity);
+            buffer.putInt(availableQuantity);
+            buffer.putLong(sequence);
+            buffer.putInt(checksum(start));
+            buffer.putInt(0);
+
+            if (++pendingEntries >= flushBatchSize) {
+                flush();
+            }
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void flush() {
+        lock.lock();
+        try {
+            int position = buffer.position();
+            if (position > flushedPosition) {
+                buffer.force(flushedPosition, position - flushedPosition);
+                flushedPosition = position;
+                forceCount++;
+            }
+            pendingEntries = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void forEach(Consumer<JournalEntry> consumer) {
+        lock.lock();
+        try {
+            flush();
+            for (Path segment : listSegments()) {
+                readSegment(segment, consumer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long size() {
+        lock.lock();
+        try {
+            return nextSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long forceCount() {
+        lock.lock();
+        try {
+            return forceCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            flush();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Error al cerrar el journal: {}", e.getMessage());
+            }
+            channel = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rollSegment() {
+        flush();
+        try {
+            channel.close();
+            openSegment(++segmentIndex);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear un nuevo segmento del journal", e);
+        }
+    }
+
+    private void openSegment(int index) throws IOException {
+        channel = FileChannel.open(segmentPath(index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        flushedPosition = 0;
+    }
+
+    private void recoverPosition() {
+        int position = 0;
+        while (position + RECORD_SIZE <= segmentSize && isValid(buffer, position)) {
+            position += RECORD_SIZE;
+            nextSequence++;
+        }
+        buffer.position(position);
+        flushedPosition = position;
+    }
+
+    private long countEntries(Path segment) throws IOException {
+        long[] count = {0};
+        readSegment(segment, entry -> count[0]++);
+        return count[0];
+    }
+
+    private void readSegment(Path segment, Consumer<JournalEntry> consumer) throws IOException {
+        try (FileChannel readChannel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer view = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+            view.order(ByteOrder.LITTLE_ENDIAN);
+            for (int position = 0; position + RECORD_SIZE <= view.limit(); position += RECORD_SIZE) {
+                if (!isValid(view, position)) {
+                    break;
+                }
+                consumer.accept(new JournalEntry(
+                        view.getLong(position + 48),
+                        view.getLong(position + 8),
+                        JournalEntry.Type.fromCode(view.get(position)),
+                        view.getLong(position + 16),
+                        view.getLong(position + 24),
+                        view.getLong(position + 32),
+                        view.getInt(position + 40),
+                        view.getInt(position + 44)));
+            }
+        }
+    }
+
+    private boolean isValid(MappedByteBuffer view, int position) {
+        if (JournalEntry.Type.fromCode(view.get(position)) == null) {
+            return false;
+        }
+        return checksum(view, position) == view.getInt(position + CRC_OFFSET);
+    }
+
+    private int checksum(int start) {
+        return checksum(buffer, start);
+    }
+
+    private int checksum(MappedByteBuffer view, int start) {
+        crc.reset();
+        crc.update(view.slice(start, CRC_OFFSET));
+        return (int) crc.getValue();
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+}
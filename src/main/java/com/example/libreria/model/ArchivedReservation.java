@@ -0,0 +1,61 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Reservas devueltas que el job de archivo saca de la tabla caliente; conservan el ID original
+@Entity
+@Table(name = "reservations_archive", indexes = @Index(name = "idx_reservations_archive_user", columnList = "user_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedReservation {
+    
+    @Id
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_external_id", nullable = false)
+    private Book book;
+    
+    @Column(name = "rental_days", nullable = false)
+    private Integer rentalDays;
+    
+    @Column(name = "start_date", nullable = false)
+    private LocalDate startDate;
+    
+    @Column(name = "expected_return_date", nullable = false)
+    private LocalDate expectedReturnDate;
+    
+    @Column(name = "actual_return_date")
+    private LocalDate actualReturnDate;
+    
+    @Column(name = "daily_rate", nullable = false, precision = 10, scale = 2)
+    private BigDecimal dailyRate;
+    
+    @Column(name = "total_fee", precision = 10, scale = 2)
+    private BigDecimal totalFee;
+    
+    @Column(name = "late_fee", precision = 10, scale = 2)
+    private BigDecimal lateFee;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Reservation.ReservationStatus status;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -4,11 +4,15 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.util.List;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "books")
 @Table(name = "books")
 @Data
 @NoArgsConstructor
@@ -23,6 +27,7 @@ public class Book {
     private String title;
     
     @ElementCollection
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book-authors")
     @CollectionTable(name = "book_authors", joinColumns = @JoinColumn(name = "book_id"))
     @Column(name = "author_name")
     private List<String> authorName;
@@ -45,5 +50,12 @@ public class Book {
     
     @Column(name = "available_quantity", nullable = false)
     private Integer availableQuantity = 0;
+    
+    // Bloqueo optimista: una escritura hecha sobre una lectura vieja falla en vez de pisar la otra.
+    // Las actualizaciones por JDBC también lo incrementan
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
 }
 
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -56,6 +57,12 @@ public class Reservation {
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
+    // Cambia con cada modificación: entra en el ETag del historial del usuario
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
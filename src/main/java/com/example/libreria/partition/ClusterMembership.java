@@ -0,0 +1,214 @@
+package com.example.libreria.partition;
+
+import com.example.libreria.dto.ClusterMemberDTO;
+import com.example.libreria.dto.ClusterViewDTO;
+import com.example.libreria.util.ConsistentHashRing;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Miembros del clúster y anillo de hash consistente que asigna cada libro a una instancia.
+ * Cada instancia envía periódicamente su vista a las semillas y a los miembros conocidos;
+ * la vista lleva la última vez que se vio a cada miembro, de modo que un nodo caído no
+ * revive por rumores y desaparece de todas las vistas pasado {@code failure-timeout-ms}.
+ * Los miembros y el anillo cambian juntos bajo {@code ringLock}, así una vista nunca muestra
+ * miembros que el anillo todavía no reparte.
+ */
+@Component
+@ConditionalOnProperty(name = "partitioning.enabled", havingValue = "true")
+@Slf4j
+public class ClusterMembership {
+
+    static final String HEARTBEAT_PATH = "/api/cluster/heartbeat";
+
+    private final RestTemplate restTemplate;
+    private final String nodeId;
+    private final List<String> seeds;
+    private final int virtualNodes;
+    private final long failureTimeoutMillis;
+
+    private final Map<String, ClusterMemberDTO> peers = new ConcurrentHashMap<>();
+    private final ReentrantLock ringLock = new ReentrantLock();
+    private volatile ConsistentHashRing ring;
+    private volatile String selfUrl;
+
+    public ClusterMembership(RestTemplate restTemplate,
+                             @Value("${partitioning.node-id:}") String nodeId,
+                             @Value("${partitioning.self-url:}") String selfUrl,
+                             @Value("${partitioning.seeds:}") String[] seeds,
+                             @Value("${partitioning.virtual-nodes:128}") int virtualNodes,
+                             @Value("${partitioning.failure-timeout-ms:6000}") long failureTimeoutMillis) {
+        this.restTemplate = restTemplate;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? UUID.randomUUID().toString().substring(0, 8) : nodeId;
+        this.selfUrl = selfUrl == null || selfUrl.isBlank() ? null : stripSlash(selfUrl);
+        this.seeds = Arrays.stream(seeds).map(String::trim).filter(seed -> !seed.isEmpty()).map(ClusterMembership::stripSlash).toList();
+        this.virtualNodes = virtualNodes;
+        this.failureTimeoutMillis = failureTimeoutMillis;
+        this.ring = new ConsistentHashRing(List.of(this.nodeId), virtualNodes);
+    }
+
+    // Sin self-url configurada se anuncia el puerto local real (útil con server.port=0)
+    @EventListener
+    public void onWebServerInitialized(WebServerInitializedEvent event) {
+        if (selfUrl == null) {
+            selfUrl = "http://localhost:" + event.getWebServer().getPort();
+        }
+        log.info("Nodo {} en {} con semillas {}", nodeId, selfUrl, seeds);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    public boolean isLocal(long bookExternalId) {
+        return nodeId.equals(ring.owner(bookExternalId));
+    }
+
+    public ClusterMemberDTO owner(long bookExternalId) {
+        String owner = ring.owner(bookExternalId);
+        ClusterMemberDTO peer = owner.equals(nodeId) ? null : peers.get(owner);
+        return peer != null ? peer : self();
+    }
+
+    /**
+     * Si {@code remoteAddress} es una de las direcciones de la instancia {@code memberNodeId}, según
+     * la URL con la que se anuncia.
+     */
+    public boolean isMemberAddress(String memberNodeId, String remoteAddress) {
+        ClusterMemberDTO peer = peers.get(memberNodeId);
+        if (peer == null || remoteAddress == null) {
+            return false;
+        }
+        try {
+            String host = URI.create(peer.getUrl()).getHost();
+            if (host == null) {
+                return false;
+            }
+            // remoteAddress es una IP literal: getByName no consulta el DNS
+            InetAddress remote = InetAddress.getByName(remoteAddress);
+            for (InetAddress address : InetAddress.getAllByName(host)) {
+                if (address.equals(remote)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (UnknownHostException | IllegalArgumentException e) {
+            log.debug("No se pudo resolver la dirección de {}: {}", memberNodeId, e.getMessage());
+            return false;
+        }
+    }
+
+    public ClusterViewDTO view() {
+        ringLock.lock();
+        try {
+            List<ClusterMemberDTO> members = new ArrayList<>(peers.values());
+            members.add(self());
+            members.sort(Comparator.comparing(ClusterMemberDTO::getNodeId));
+            return new ClusterViewDTO(nodeId, members, ring.ownershipShares());
+        } finally {
+            ringLock.unlock();
+        }
+    }
+
+    public ClusterViewDTO onHeartbeat(ClusterViewDTO remote) {
+        merge(remote);
+        return view();
+    }
+
+    @Scheduled(fixedDelayString = "${partitioning.heartbeat-interval-ms:2000}")
+    public void heartbeat() {
+        if (selfUrl == null) {
+            return;
+        }
+        Set<String> targets = new LinkedHashSet<>(seeds);
+        peers.values().forEach(peer -> targets.add(peer.getUrl()));
+        targets.remove(selfUrl);
+
+        ClusterViewDTO local = view();
+        for (String target : targets) {
+            try {
+                ClusterViewDTO remote = restTemplate.postForObject(target + HEARTBEAT_PATH, local, ClusterViewDTO.class);
+                if (remote != null) {
+                    merge(remote);
+                }
+            } catch (RestClientException e) {
+                log.debug("Sin respuesta de {}: {}", target, e.getMessage());
+            }
+        }
+        expire();
+    }
+
+    private void merge(ClusterViewDTO remote) {
+        long now = System.currentTimeMillis();
+        ringLock.lock();
+        try {
+            for (ClusterMemberDTO member : remote.getMembers()) {
+                if (nodeId.equals(member.getNodeId())) {
+                    continue;
+                }
+                // Al emisor se lo vio recién; del resto solo se sabe lo que el emisor informa
+                long lastSeen = member.getNodeId().equals(remote.getNodeId()) ? now : member.getLastSeenEpochMillis();
+                if (now - lastSeen > failureTimeoutMillis) {
+                    continue;
+                }
+                peers.merge(member.getNodeId(), new ClusterMemberDTO(member.getNodeId(), stripSlash(member.getUrl()), lastSeen),
+                        (current, candidate) -> candidate.getLastSeenEpochMillis() > current.getLastSeenEpochMillis()
+                                ? candidate : current);
+            }
+            rebuildRing();
+        } finally {
+            ringLock.unlock();
+        }
+    }
+
+    private void expire() {
+        long now = System.currentTimeMillis();
+        ringLock.lock();
+        try {
+            peers.values().removeIf(peer -> now - peer.getLastSeenEpochMillis() > failureTimeoutMillis);
+            rebuildRing();
+        } finally {
+            ringLock.unlock();
+        }
+    }
+
+    // Se llama con ringLock tomado
+    private void rebuildRing() {
+        Set<String> members = new TreeSet<>(peers.keySet());
+        members.add(nodeId);
+        if (!members.equals(ring.nodes())) {
+            ring = new ConsistentHashRing(members, virtualNodes);
+            log.info("Rebalanceo del anillo: miembros {}", members);
+        }
+    }
+
+    private ClusterMemberDTO self() {
+        return new ClusterMemberDTO(nodeId, selfUrl, System.currentTimeMillis());
+    }
+
+    private static String stripSlash(String url) {
+        return url != null && url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
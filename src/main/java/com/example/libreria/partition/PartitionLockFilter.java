@@ -0,0 +1,53 @@
+package com.example.libreria.partition;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializa en la dueña las reservas y devoluciones de un mismo libro. Corre después del control
+ * de admisión, así que solo esperan el lock los pedidos que ya consiguieron un lugar entre las
+ * escrituras simultáneas.
+ */
+@Component
+@ConditionalOnProperty(name = "partitioning.enabled", havingValue = "true")
+@Order(Ordered.HIGHEST_PRECEDENCE + 110)
+public class PartitionLockFilter extends OncePerRequestFilter {
+
+    private static final int LOCK_STRIPES = 256;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public PartitionLockFilter() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getAttribute(PartitionRoutingFilter.BOOK_ATTRIBUTE) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long bookExternalId = (Long) request.getAttribute(PartitionRoutingFilter.BOOK_ATTRIBUTE);
+        ReentrantLock lock = locks[Math.floorMod(Long.hashCode(bookExternalId * 0x9E3779B97F4A7C15L), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.libreria.partition;
+
+import com.example.libreria.dto.ClusterMemberDTO;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.web.CachedBodyRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Envía las reservas, devoluciones y consultas de disponibilidad a la instancia dueña del libro
+ * según el anillo de {@link ClusterMembership}, que es la que tiene su calendario al día. En la dueña,
+ * {@link PartitionLockFilter} serializa las escrituras de un mismo libro, así que las instancias no
+ * compiten por las mismas filas de {@code books}. Corre antes del control de admisión: un pedido
+ * reenviado se admite solo en la dueña, que es donde se atiende.
+ * Un pedido ya reenviado se atiende donde llega, aunque las vistas todavía no coincidan,
+ * para no rebotar entre nodos. Si la dueña no responde se contesta 503 con {@code Retry-After}
+ * hasta que el anillo la excluya.
+ * <p>
+ * La marca de reenvío solo vale si viene de otra instancia: con {@code partitioning.secret}, si el
+ * pedido trae el secreto compartido; sin él, si la dirección de origen es la de la instancia que
+ * figura como emisora. Si no, se descarta antes de seguir y el pedido se enruta como cualquier otro.
+ */
+@Component
+@ConditionalOnProperty(name = "partitioning.enabled", havingValue = "true")
+@Order(Ordered.HIGHEST_PRECEDENCE + 95)
+@Slf4j
+public class PartitionRoutingFilter extends OncePerRequestFilter {
+
+    public static final String FORWARDED_BY_HEADER = "X-Partition-Forwarded-By";
+    public static final String OWNER_HEADER = "X-Partition-Owner";
+    public static final String SECRET_HEADER = "X-Partition-Secret";
+    // Libro de una escritura que se atiende localmente, para PartitionLockFilter
+    static final String BOOK_ATTRIBUTE = PartitionRoutingFilter.class.getName() + ".book";
+
+    private static final String RESERVATIONS_PATH = "/api/reservations";
+    private static final Pattern RETURN_PATH = Pattern.compile("^/api/reservations/(\\d+)/return$");
+    private static final Pattern AVAILABILITY_PATH = Pattern.compile("^/api/books/(\\d+)/availability$");
+    // De salto a salto (RFC 9110): no se copian entre la conexión del cliente y la de la dueña
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of("connection", "keep-alive", "proxy-authenticate",
+            "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade", "content-length");
+    // Sin Accept-Encoding la dueña responde sin comprimir y esta instancia comprime para su cliente
+    private static final Set<String> SKIPPED_REQUEST_HEADERS = Set.of("host", "accept-encoding",
+            FORWARDED_BY_HEADER.toLowerCase(), SECRET_HEADER.toLowerCase());
+
+    private final ClusterMembership membership;
+    private final ReservationRepository reservationRepository;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean redirect;
+    private final long retryAfterSeconds;
+    private final byte[] secret;
+
+    public PartitionRoutingFilter(ClusterMembership membership,
+                                  ReservationRepository reservationRepository,
+                                  RestTemplate restTemplate,
+                                  ObjectMapper objectMapper,
+                                  @Value("${partitioning.routing:forward}") String routing,
+                                  @Value("${partitioning.failure-timeout-ms:6000}") long failureTimeoutMillis,
+                                  @Value("${partitioning.secret:}") String secret) {
+        this.membership = membership;
+        this.reservationRepository = reservationRepository;
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.redirect = "redirect".equalsIgnoreCase(routing);
+        this.retryAfterSeconds = Math.max(1, (failureTimeoutMillis + 999) / 1000);
+        this.secret = secret == null || secret.isBlank() ? null : secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = path(request);
+        if ("GET".equals(request.getMethod())) {
+            return !AVAILABILITY_PATH.matcher(path).matches();
+        }
+        return !"POST".equals(request.getMethod())
+                || !(RESERVATIONS_PATH.equals(path) || RETURN_PATH.matcher(path).matches());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        byte[] body = request.getInputStream().readAllBytes();
+        Long bookExternalId = bookExternalId(path(request), body);
+        boolean forwarded = isForwardedByMember(request);
+        if (!forwarded && request.getHeader(FORWARDED_BY_HEADER) != null) {
+            log.warn("Marca de reenvío descartada: {} no es una instancia del clúster", request.getRemoteAddr());
+        }
+
+        if (bookExternalId != null && !forwarded && !membership.isLocal(bookExternalId)) {
+            ClusterMemberDTO owner = membership.owner(bookExternalId);
+            if (!membership.nodeId().equals(owner.getNodeId())) {
+                URI target = URI.create(owner.getUrl() + request.getRequestURI()
+                        + (request.getQueryString() != null ? "?" + request.getQueryString() : ""));
+                if (redirect) {
+                    // 307 conserva el método y el cuerpo del POST
+                    response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+                    response.setHeader(HttpHeaders.LOCATION, target.toString());
+                    response.setHeader(OWNER_HEADER, owner.getNodeId());
+                    return;
+                }
+                try {
+                    forward(request, response, target, body);
+                    return;
+                } catch (ResourceAccessException e) {
+                    // Atenderlo acá dejaría dos instancias escribiendo el mismo libro: se rechaza hasta
+                    // que el anillo excluya a la dueña y el libro pase a otra
+                    log.warn("No se pudo reenviar a {} ({})", owner.getNodeId(), e.getMessage());
+                    response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                    response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+                    response.setHeader(OWNER_HEADER, owner.getNodeId());
+                    return;
+                }
+            }
+        }
+
+        response.setHeader(OWNER_HEADER, membership.nodeId());
+        if (bookExternalId != null && !"GET".equals(request.getMethod())) {
+            request.setAttribute(BOOK_ATTRIBUTE, bookExternalId);
+        }
+        // Detrás del filtro no llegan ni el secreto ni una marca que no se aceptó
+        filterChain.doFilter(new CachedBodyRequest(forwarded ? withoutHeaders(request, SECRET_HEADER)
+                : withoutHeaders(request, SECRET_HEADER, FORWARDED_BY_HEADER), body), response);
+    }
+
+    private boolean isForwardedByMember(HttpServletRequest request) {
+        String forwardedBy = request.getHeader(FORWARDED_BY_HEADER);
+        if (forwardedBy == null) {
+            return false;
+        }
+        if (secret != null) {
+            String presented = request.getHeader(SECRET_HEADER);
+            return presented != null && MessageDigest.isEqual(secret, presented.getBytes(StandardCharsets.UTF_8));
+        }
+        return membership.isMemberAddress(forwardedBy, request.getRemoteAddr());
+    }
+
+    private void forward(HttpServletRequest request, HttpServletResponse response, URI target, byte[] body)
+            throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        for (String name : Collections.list(request.getHeaderNames())) {
+            String lowerCase = name.toLowerCase();
+            if (!HOP_BY_HOP_HEADERS.contains(lowerCase) && !SKIPPED_REQUEST_HEADERS.contains(lowerCase)) {
+                headers.put(name, Collections.list(request.getHeaders(name)));
+            }
+        }
+        headers.set(FORWARDED_BY_HEADER, membership.nodeId());
+        if (secret != null) {
+            headers.set(SECRET_HEADER, new String(secret, StandardCharsets.UTF_8));
+        }
+
+        ResponseEntity<byte[]> forwarded;
+        try {
+            forwarded = restTemplate.exchange(target, HttpMethod.valueOf(request.getMethod()),
+                    new HttpEntity<>(body, headers), byte[].class);
+        } catch (HttpStatusCodeException e) {
+            forwarded = ResponseEntity.status(e.getStatusCode())
+                    .headers(e.getResponseHeaders())
+                    .body(e.getResponseBodyAsByteArray());
+        }
+
+        response.setStatus(forwarded.getStatusCode().value());
+        // Content-Type, Content-Encoding, Retry-After, ETag, Idempotent-Replayed, X-Partition-Owner...
+        forwarded.getHeaders().forEach((name, values) -> {
+            if (HOP_BY_HOP_HEADERS.contains(name.toLowerCase()) || values.isEmpty()) {
+                return;
+            }
+            response.setHeader(name, values.get(0));
+            values.subList(1, values.size()).forEach(value -> response.addHeader(name, value));
+        });
+        if (forwarded.getBody() != null) {
+            response.getOutputStream().write(forwarded.getBody());
+        }
+    }
+
+    private Long bookExternalId(String path, byte[] body) {
+        Matcher availability = AVAILABILITY_PATH.matcher(path);
+        if (availability.matches()) {
+            return Long.valueOf(availability.group(1));
+        }
+        Matcher matcher = RETURN_PATH.matcher(path);
+        if (matcher.matches()) {
+            return reservationRepository.findBookExternalIdById(Long.valueOf(matcher.group(1))).orElse(null);
+        }
+        try {
+            JsonNode id = objectMapper.readTree(body).path("bookExternalId");
+            return id.canConvertToLong() ? id.asLong() : null;
+        } catch (IOException e) {
+            // El cuerpo inválido lo rechaza el controlador con su mensaje habitual
+            return null;
+        }
+    }
+
+    private static HttpServletRequest withoutHeaders(HttpServletRequest request, String... hidden) {
+        Set<String> names = Set.of(hidden);
+        return new HttpServletRequestWrapper(request) {
+            @Override
+            public String getHeader(String name) {
+                return isHidden(name) ? null : super.getHeader(name);
+            }
+
+            @Override
+            public Enumeration<String> getHeaders(String name) {
+                return isHidden(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+            }
+
+            @Override
+            public Enumeration<String> getHeaderNames() {
+                return Collections.enumeration(Collections.list(super.getHeaderNames()).stream()
+                        .filter(name -> !isHidden(name))
+                        .toList());
+            }
+
+            private boolean isHidden(String name) {
+                return names.stream().anyMatch(name::equalsIgnoreCase);
+            }
+        };
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
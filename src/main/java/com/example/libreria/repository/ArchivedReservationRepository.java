@@ -0,0 +1,47 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.model.ArchivedReservation;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ArchivedReservationRepository extends JpaRepository<ArchivedReservation, Long> {
+
+    // Usuario y libro en la misma consulta: el historial los muestra en cada fila
+    @Query("select a from ArchivedReservation a join fetch a.user join fetch a.book where a.user.id = :userId")
+    List<ArchivedReservation> findByUserId(@Param("userId") Long userId);
+
+    @Query("select coalesce(sum(a.lateFee), 0) from ArchivedReservation a where a.user.id = :userId")
+    BigDecimal sumLateFeesByUserId(@Param("userId") Long userId);
+
+    @Query("select distinct a.user.id, a.book.externalId from ArchivedReservation a")
+    List<Object[]> findUserBookPairs();
+
+    // Copia las reservas a la tabla de archivo en una sola sentencia INSERT ... SELECT. Se declara la
+    // tabla afectada para que Hibernate no invalide toda la caché de segundo nivel. Las ya archivadas
+    // se saltean, así repetir un lote no choca con la clave primaria
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "reservations_archive"))
+    @Query(value = "INSERT INTO reservations_archive (id, user_id, book_external_id, rental_days, start_date, " +
+            "expected_return_date, actual_return_date, daily_rate, total_fee, late_fee, status, created_at, archived_at) " +
+            "SELECT id, user_id, book_external_id, rental_days, start_date, expected_return_date, actual_return_date, " +
+            "daily_rate, total_fee, late_fee, status, created_at, :archivedAt FROM reservations r WHERE r.id IN (:ids) " +
+            "AND NOT EXISTS (SELECT 1 FROM reservations_archive a WHERE a.id = r.id)",
+            nativeQuery = true)
+    int copyFromReservations(@Param("ids") Collection<Long> ids, @Param("archivedAt") LocalDateTime archivedAt);
+
+    @Modifying
+    @Query("delete from ArchivedReservation a where a.user.id = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
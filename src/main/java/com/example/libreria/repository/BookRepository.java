@@ -1,16 +1,43 @@
 package com.example.libreria.repository;
 
 import com.example.libreria.model.Book;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
     
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Book> findByExternalId(Long externalId);
     
+    // Bloquea la fila hasta el fin de la transacción: serializa las escrituras que miran la
+    // ocupación del libro aunque lleguen por instancias distintas
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Book b where b.externalId = :externalId")
+    Optional<Book> findForUpdateByExternalId(@Param("externalId") Long externalId);
+    
     boolean existsByExternalId(Long externalId);
+    
+    @Query("select coalesce(sum(b.availableQuantity), 0) from Book b")
+    long sumAvailableQuantity();
+    
+    // Sello de versión del catálogo: toda escritura de un libro, JPA o JDBC, incrementa su versión
+    @Query("select concat(str(count(b)), '-', str(coalesce(sum(b.version), 0))) from Book b")
+    String findVersionStamp();
+    
+    // Pares (externalId, autor) para completar authorName en las respuestas con ?fields=
+    @Query("select b.externalId, a from Book b join b.authorName a where b.externalId in :externalIds")
+    List<Object[]> findAuthorNames(@Param("externalIds") Collection<Long> externalIds);
 }
 
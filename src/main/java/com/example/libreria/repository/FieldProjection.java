@@ -0,0 +1,81 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.exception.BadRequestException;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Campos que se pueden pedir con {@code ?fields=} y la expresión JPA que lee cada uno. El orden
+ * de declaración es el de la respuesta, igual al del DTO completo. Un campo con una ruta a otra
+ * entidad ({@code user.name}) agrega el JOIN solo cuando se lo pide; las colecciones no entran en
+ * el SELECT y las completa quien llama.
+ */
+public final class FieldProjection {
+
+    private final Map<String, BiFunction<CriteriaBuilder, Root<?>, Expression<?>>> fields = new LinkedHashMap<>();
+
+    public FieldProjection path(String name, String path) {
+        String[] parts = path.split("\\.");
+        return field(name, (cb, root) -> {
+            Path<?> current = root;
+            for (String part : parts) {
+                current = current.get(part);
+            }
+            return current;
+        });
+    }
+
+    public FieldProjection field(String name, BiFunction<CriteriaBuilder, Root<?>, Expression<?>> expression) {
+        fields.put(name, expression);
+        return this;
+    }
+
+    public FieldProjection collection(String name) {
+        fields.put(name, null);
+        return this;
+    }
+
+    // Valida los campos pedidos y los devuelve sin repetir, en el orden de declaración
+    public List<String> resolve(Collection<String> requested) {
+        Set<String> wanted = new HashSet<>();
+        for (String field : requested) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!fields.containsKey(name)) {
+                throw new BadRequestException("Campo desconocido: " + name + ". Campos válidos: " + String.join(", ", fields.keySet()));
+            }
+            wanted.add(name);
+        }
+        if (wanted.isEmpty()) {
+            throw new BadRequestException("Debe indicar al menos un campo en fields");
+        }
+        return fields.keySet().stream().filter(wanted::contains).toList();
+    }
+
+    // Campos resueltos más los que hacen falta internamente (p. ej. el ID para ordenar o completar colecciones)
+    public List<String> including(List<String> resolved, String... required) {
+        Set<String> wanted = new HashSet<>(resolved);
+        wanted.addAll(List.of(required));
+        return fields.keySet().stream().filter(wanted::contains).toList();
+    }
+
+    boolean isCollection(String name) {
+        return fields.get(name) == null;
+    }
+
+    Expression<?> expression(String name, CriteriaBuilder cb, Root<?> root) {
+        return fields.get(name).apply(cb, root);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.libreria.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lee solo las columnas de los campos pedidos con una consulta Criteria de {@link Tuple}: no se
+ * instancian entidades ni se cargan asociaciones. Cada fila vuelve como mapa campo → valor en el
+ * orden de {@code fields}; las colecciones quedan en {@code null} para que las complete el servicio.
+ */
+@Repository
+@RequiredArgsConstructor
+public class FieldProjectionRepository {
+
+    private final EntityManager entityManager;
+
+    public <T> List<Map<String, Object>> find(Class<T> entityType, FieldProjection projection, List<String> fields,
+                                              Specification<T> specification) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<T> root = query.from(entityType);
+
+        List<Selection<?>> selections = new ArrayList<>();
+        for (String field : fields) {
+            if (!projection.isCollection(field)) {
+                selections.add(projection.expression(field, cb, root).alias(field));
+            }
+        }
+        query.multiselect(selections);
+        if (specification != null) {
+            query.where(specification.toPredicate(root, query, cb));
+        }
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Tuple tuple : entityManager.createQuery(query).getResultList()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (String field : fields) {
+                row.put(field, projection.isCollection(field) ? null : tuple.get(field));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -2,16 +2,22 @@ package com.example.libreria.repository;
 
 import com.example.libreria.model.Reservation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
 
-    // Encontrar todas las reservas de un usuario específico
-    List<Reservation> findByUserId(Long userId);
+    // Encontrar todas las reservas de un usuario específico, con usuario y libro en la misma consulta
+    @Query("select r from Reservation r join fetch r.user join fetch r.book where r.user.id = :userId")
+    List<Reservation> findByUserId(@Param("userId") Long userId);
 
     // Encontrar reservas activas (aquellas que no han sido devueltas)
     List<Reservation> findByActualReturnDateIsNull();
@@ -24,5 +30,44 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
 
     // Contar reservas activas por libro
     long countByBookExternalIdAndActualReturnDateIsNull(Long bookExternalId);
+
+    // Períodos (inicio, devolución prevista) de las reservas activas de un libro, para armar su calendario
+    @Query("select r.startDate, r.expectedReturnDate from Reservation r " +
+            "where r.book.externalId = :bookExternalId and r.actualReturnDate is null")
+    List<Object[]> findActivePeriodsByBookExternalId(@Param("bookExternalId") Long bookExternalId);
+
+    // Pares (usuario, libro) de todo el historial, para reconstruir las recomendaciones
+    @Query("select distinct r.user.id, r.book.externalId from Reservation r")
+    List<Object[]> findUserBookPairs();
+
+    long countByStatus(Reservation.ReservationStatus status);
+
+    // Sello de versión del historial de un usuario: cambia al crear, devolver o archivar una reserva, y
+    // al modificarse el usuario o un libro del historial, porque cada fila muestra su nombre y título
+    @Query("select concat(str(count(r)), '-', str(coalesce(sum(r.version), 0)), '-', " +
+            "str(coalesce(sum(r.book.version), 0)), '-', " +
+            "str((select count(a) from ArchivedReservation a where a.user.id = :userId)), '-', " +
+            "str((select coalesce(sum(a.book.version), 0) from ArchivedReservation a where a.user.id = :userId)), '-', " +
+            "str(coalesce((select u.version from User u where u.id = :userId), -1))) " +
+            "from Reservation r where r.user.id = :userId")
+    String findVersionStampByUserId(@Param("userId") Long userId);
+
+    // Libro de una reserva, sin cargar la entidad: lo usa el enrutamiento por partición en cada devolución
+    @Query("select r.book.externalId from Reservation r where r.id = :id")
+    Optional<Long> findBookExternalIdById(@Param("id") Long id);
+
+    // Usuario de una reserva, para el control de admisión de las devoluciones
+    @Query("select r.user.id from Reservation r where r.id = :id")
+    Optional<Long> findUserIdById(@Param("id") Long id);
+
+    // IDs de reservas devueltas antes de la fecha de corte, candidatas a archivarse. Quedan bloqueadas
+    // hasta el fin de la transacción: otra instancia que archiva a la vez espera y toma las siguientes
+    @Query(value = "SELECT id FROM reservations WHERE status = 'RETURNED' AND actual_return_date < :cutoff " +
+            "ORDER BY id LIMIT :limit FOR UPDATE", nativeQuery = true)
+    List<Long> lockReturnedIdsBefore(@Param("cutoff") LocalDate cutoff, @Param("limit") int limit);
+
+    @Modifying
+    @Query("delete from Reservation r where r.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
 
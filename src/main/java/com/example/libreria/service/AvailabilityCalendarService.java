@@ -0,0 +1,286 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookAvailabilityDTO;
+import com.example.libreria.dto.DayAvailabilityDTO;
+import com.example.libreria.event.UserDeletedEvent;
+import com.example.libreria.exception.BusinessRuleException;
+import com.example.libreria.exception.NotFoundException;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.util.RangeMaxSegmentTree;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Calendario de ocupación por libro: cada reserva activa ocupa un ejemplar desde
+ * {@code startDate} hasta el día anterior a {@code expectedReturnDate}, y un árbol de segmentos
+ * sobre los días responde en O(log n) cuántos ejemplares quedan libres en un rango. Así una
+ * reserva para el mes que viene no bloquea el libro hoy.
+ * <p>
+ * Las reservas vencidas sin devolver se cuentan como ocupadas en todo el rango consultado, porque
+ * no se sabe cuándo vuelven. Las escrituras ({@link #reserve}, {@link #release},
+ * {@link #reserved}) arman el calendario desde la base con la fila del libro bloqueada por el
+ * llamador, así ven las reservas confirmadas por cualquier instancia. Las consultas de
+ * disponibilidad reusan el último calendario armado mientras no supere
+ * {@code availability.calendar-ttl-ms}.
+ * <p>
+ * {@code Book.availableQuantity} es el stock menos {@link #reserved}: el pico de ocupación desde
+ * hoy. Dos reservas en fechas que no se superponen comparten un ejemplar, así que el contador no
+ * baja de cero aunque haya más reservas activas que stock.
+ */
+@Service
+@Slf4j
+public class AvailabilityCalendarService {
+
+    // Días desde 1970-01-01: alcanza hasta el año 2328
+    static final int CALENDAR_DAYS = 1 << 17;
+
+    private final ReservationRepository reservationRepository;
+    private final BookRepository bookRepository;
+    private final Clock clock;
+    private final int maxRangeDays;
+    private final long ttlMillis;
+    private final Map<Long, BookCalendar> calendars = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AvailabilityCalendarService(ReservationRepository reservationRepository,
+                                       BookRepository bookRepository,
+                                       @Value("${availability.max-range-days:366}") int maxRangeDays,
+                                       @Value("${availability.calendar-ttl-ms:30000}") long ttlMillis) {
+        this(reservationRepository, bookRepository, Clock.systemDefaultZone(), maxRangeDays, ttlMillis);
+    }
+
+    AvailabilityCalendarService(ReservationRepository reservationRepository, BookRepository bookRepository,
+                                Clock clock, int maxRangeDays, long ttlMillis) {
+        this.reservationRepository = reservationRepository;
+        this.bookRepository = bookRepository;
+        this.clock = clock;
+        this.maxRangeDays = maxRangeDays;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Ocupa un ejemplar entre {@code startDate} y {@code expectedReturnDate} si queda alguno libre
+     * todos esos días y devuelve los ejemplares comprometidos desde hoy contando la nueva reserva;
+     * vacío si no queda ninguno. Se llama con la fila del libro bloqueada. Dentro de una
+     * transacción, la ocupación se deshace si la transacción se revierte.
+     */
+    public OptionalInt reserve(Long bookExternalId, int stockQuantity, LocalDate startDate, LocalDate expectedReturnDate) {
+        int start = day(startDate);
+        int end = day(expectedReturnDate);
+        int today = day(LocalDate.now(clock));
+        BookCalendar calendar = reload(bookExternalId);
+        int reserved;
+        calendar.lock.lock();
+        try {
+            // Lo ya transcurrido no se valida; una reserva que termina antes de hoy ocupa el ejemplar hoy
+            int free = stockQuantity - calendar.overdue(today)
+                    - calendar.occupied.max(Math.max(start, today), Math.max(end, today + 1));
+            if (free <= 0) {
+                return OptionalInt.empty();
+            }
+            calendar.add(start, end, 1);
+            reserved = calendar.reserved(today);
+        } finally {
+            calendar.lock.unlock();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        change(calendar, start, end, -1);
+                    }
+                }
+            });
+        }
+        return OptionalInt.of(reserved);
+    }
+
+    /**
+     * Ejemplares comprometidos desde hoy: las reservas vencidas más el pico de ocupación de los
+     * días que vienen. Se arma desde la base; se llama con la fila del libro bloqueada.
+     */
+    public int reserved(Long bookExternalId) {
+        int today = day(LocalDate.now(clock));
+        BookCalendar calendar = reload(bookExternalId);
+        calendar.lock.lock();
+        try {
+            return calendar.reserved(today);
+        } finally {
+            calendar.lock.unlock();
+        }
+    }
+
+    /**
+     * Libera el ejemplar de una reserva devuelta, al confirmarse la transacción, y devuelve los
+     * ejemplares que quedan comprometidos sin ella. Se llama con la fila del libro bloqueada y
+     * antes de modificar la reserva, así el calendario que se arma acá todavía la incluye.
+     */
+    public int release(Long bookExternalId, LocalDate startDate, LocalDate expectedReturnDate) {
+        int start = day(startDate);
+        int end = day(expectedReturnDate);
+        int today = day(LocalDate.now(clock));
+        BookCalendar calendar = reload(bookExternalId);
+        int reserved;
+        calendar.lock.lock();
+        try {
+            // Hasta el commit otras reservas siguen viendo el ejemplar ocupado
+            calendar.add(start, end, -1);
+            reserved = calendar.reserved(today);
+            calendar.add(start, end, 1);
+        } finally {
+            calendar.lock.unlock();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change(calendar, start, end, -1);
+                }
+            });
+        } else {
+            change(calendar, start, end, -1);
+        }
+        return reserved;
+    }
+
+    /**
+     * Ejemplares libres por día entre {@code from} y {@code to}, ambos incluidos, según un calendario
+     * de hasta {@code availability.calendar-ttl-ms} de antigüedad. Sin readOnly: el calendario que
+     * se arma acá queda en memoria, y una réplica atrasada lo dejaría incompleto.
+     */
+    @Transactional
+    public BookAvailabilityDTO getAvailability(Long bookExternalId, LocalDate from, LocalDate to) {
+        Book book = bookRepository.findByExternalId(bookExternalId)
+                .orElseThrow(() -> new NotFoundException("Libro no encontrado con ID externo: " + bookExternalId));
+        LocalDate today = LocalDate.now(clock);
+        LocalDate first = from != null ? from : today;
+        LocalDate last = to != null ? to : first.plusDays(29);
+        if (first.isBefore(today)) {
+            throw new BusinessRuleException("La disponibilidad se consulta desde hoy en adelante");
+        }
+        if (last.isBefore(first)) {
+            throw new BusinessRuleException("La fecha final no puede ser anterior a la inicial");
+        }
+        if (ChronoUnit.DAYS.between(first, last) >= maxRangeDays) {
+            throw new BusinessRuleException("El rango no puede superar " + maxRangeDays + " días");
+        }
+
+        int start = day(first);
+        int end = day(last) + 1;
+        int stock = book.getStockQuantity();
+        List<DayAvailabilityDTO> days = new ArrayList<>(end - start);
+        int available;
+        BookCalendar calendar = calendar(bookExternalId);
+        calendar.lock.lock();
+        try {
+            int free = stock - calendar.overdue(day(today));
+            for (int d = start; d < end; d++) {
+                days.add(new DayAvailabilityDTO(LocalDate.ofEpochDay(d),
+                        Math.max(0, free - calendar.occupied.max(d, d + 1))));
+            }
+            available = Math.max(0, free - calendar.occupied.max(start, end));
+        } finally {
+            calendar.lock.unlock();
+        }
+        return new BookAvailabilityDTO(bookExternalId, first, last, stock, available, days);
+    }
+
+    // La cascada borró sus reservas activas: esos calendarios se vuelven a armar desde la base
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserDeleted(UserDeletedEvent event) {
+        calendars.keySet().removeAll(event.activeBookExternalIds());
+    }
+
+    // Sobre el calendario donde se registró el cambio: si otra escritura ya lo reemplazó por uno
+    // armado desde la base, el reemplazo no se toca
+    private static void change(BookCalendar calendar, int start, int end, int delta) {
+        calendar.lock.lock();
+        try {
+            calendar.add(start, end, delta);
+        } finally {
+            calendar.lock.unlock();
+        }
+    }
+
+    private BookCalendar calendar(Long bookExternalId) {
+        long now = clock.millis();
+        return calendars.compute(bookExternalId,
+                (id, cached) -> cached != null && now - cached.loadedAt < ttlMillis ? cached : load(id));
+    }
+
+    private BookCalendar reload(Long bookExternalId) {
+        BookCalendar calendar = load(bookExternalId);
+        calendars.put(bookExternalId, calendar);
+        return calendar;
+    }
+
+    private BookCalendar load(Long bookExternalId) {
+        BookCalendar calendar = new BookCalendar(clock.millis());
+        List<Object[]> periods = reservationRepository.findActivePeriodsByBookExternalId(bookExternalId);
+        for (Object[] period : periods) {
+            calendar.add(day((LocalDate) period[0]), day((LocalDate) period[1]), 1);
+        }
+        log.debug("Calendario del libro {} armado con {} reservas activas", bookExternalId, periods.size());
+        return calendar;
+    }
+
+    private static int day(LocalDate date) {
+        long day = date.toEpochDay();
+        if (day < 0 || day >= CALENDAR_DAYS - 1) {
+            throw new BusinessRuleException("Fecha fuera del calendario de reservas: " + date);
+        }
+        return (int) day;
+    }
+
+    private static final class BookCalendar {
+
+        private final RangeMaxSegmentTree occupied = new RangeMaxSegmentTree(CALENDAR_DAYS);
+        // Reservas activas por día de devolución prevista, para contar las vencidas
+        private final TreeMap<Integer, Integer> returns = new TreeMap<>();
+        // Lock explícito: un monitor en disputa bloquea también al hilo portador de un hilo virtual
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long loadedAt;
+
+        BookCalendar(long loadedAt) {
+            this.loadedAt = loadedAt;
+        }
+
+        void add(int start, int end, int delta) {
+            occupied.add(start, end, delta);
+            returns.merge(end, delta, (a, b) -> a + b == 0 ? null : a + b);
+        }
+
+        /** Reservas activas que debían volver hasta hoy: ocupan un ejemplar en cualquier rango futuro. */
+        int overdue(int today) {
+            int overdue = 0;
+            for (int count : returns.headMap(today, true).values()) {
+                overdue += count;
+            }
+            return overdue;
+        }
+
+        int reserved(int today) {
+            return overdue(today) + occupied.max(today, CALENDAR_DAYS);
+        }
+    }
+}
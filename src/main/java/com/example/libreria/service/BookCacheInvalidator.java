@@ -0,0 +1,48 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.Book;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Cache;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Para los servicios que modifican {@code books} con JDBC, sin pasar por Hibernate: al confirmar
+ * la transacción quita esos libros de la caché de segundo nivel y descarta los resultados de
+ * consultas cacheadas, que guardan el estado completo de las entidades.
+ */
+@Component
+@RequiredArgsConstructor
+public class BookCacheInvalidator {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public void evictAfterCommit(Collection<Long> externalIds) {
+        if (externalIds.isEmpty()) {
+            return;
+        }
+        List<Long> evicted = List.copyOf(externalIds);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(evicted);
+            return;
+        }
+        // Al confirmar y no antes: una lectura concurrente podría volver a cachear el valor viejo
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(evicted);
+            }
+        });
+    }
+
+    private void evict(List<Long> externalIds) {
+        Cache cache = entityManagerFactory.getCache().unwrap(Cache.class);
+        externalIds.forEach(id -> cache.evictEntityData(Book.class, id));
+        cache.evictDefaultQueryRegion();
+    }
+}
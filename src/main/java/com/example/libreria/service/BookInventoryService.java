@@ -0,0 +1,185 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.InventoryAdjustmentDTO;
+import com.example.libreria.dto.InventoryAdjustmentItemDTO;
+import com.example.libreria.dto.InventoryAdjustmentResultDTO;
+import com.example.libreria.event.StockAdjustedEvent;
+import com.example.libreria.exception.BusinessRuleException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Ajuste de stock y precio de muchos libros en una transacción. Cada ajuste es un UPDATE
+ * parametrizado que se envía en un solo lote JDBC; la condición {@code stock >= reservados}
+ * está en el WHERE, así que un ajuste que la rompe no actualiza la fila y se informa como
+ * rechazado sin afectar a los demás. Los reservados son {@code stock - disponibles}, el pico de
+ * ocupación desde hoy que dejan las reservas; un ajuste que no baja el stock nunca se rechaza.
+ * Como la base se modifica sin pasar por Hibernate, los libros actualizados se quitan de la
+ * caché de segundo nivel al confirmar.
+ */
+@Service
+@Lazy
+@Slf4j
+public class BookInventoryService {
+
+    // Las columnas de la derecha son los valores previos a la actualización. CAST para que la base
+    // conozca el tipo de los parámetros nulos
+    private static final String ADJUST_BOOK =
+            "UPDATE books SET " +
+            "stock_quantity = COALESCE(CAST(:stockQuantity AS INTEGER), stock_quantity + :stockDelta), " +
+            "available_quantity = available_quantity + COALESCE(CAST(:stockQuantity AS INTEGER), stock_quantity + :stockDelta) - stock_quantity, " +
+            "price = COALESCE(CAST(:price AS DECIMAL(10, 2)), price), " +
+            "version = version + 1 " +
+            "WHERE external_id = :externalId " +
+            "AND COALESCE(CAST(:stockQuantity AS INTEGER), stock_quantity + :stockDelta) >= LEAST(stock_quantity, stock_quantity - available_quantity)";
+    private static final String SELECT_BOOKS =
+            "SELECT external_id, stock_quantity, available_quantity, price FROM books WHERE external_id IN (:externalIds)";
+    private static final int LOOKUP_CHUNK = 1000;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final Validator validator;
+    private final BookCacheInvalidator bookCacheInvalidator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxItems;
+
+    public BookInventoryService(NamedParameterJdbcTemplate jdbcTemplate,
+                                Validator validator,
+                                BookCacheInvalidator bookCacheInvalidator,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${inventory.max-items:10000}") int maxItems) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.validator = validator;
+        this.bookCacheInvalidator = bookCacheInvalidator;
+        this.eventPublisher = eventPublisher;
+        this.maxItems = maxItems;
+    }
+
+    @Transactional
+    public InventoryAdjustmentResultDTO adjust(List<InventoryAdjustmentDTO> adjustments) {
+        if (adjustments.size() > maxItems) {
+            throw new BusinessRuleException("Se pueden ajustar como máximo " + maxItems + " libros por pedido");
+        }
+        log.info("Ajustando inventario de {} libros", adjustments.size());
+
+        InventoryAdjustmentItemDTO[] results = new InventoryAdjustmentItemDTO[adjustments.size()];
+        List<Integer> valid = new ArrayList<>(adjustments.size());
+        for (int i = 0; i < adjustments.size(); i++) {
+            InventoryAdjustmentDTO adjustment = adjustments.get(i);
+            String error = validate(adjustment);
+            if (error != null) {
+                results[i] = item(adjustment != null ? adjustment.getExternalId() : null,
+                        InventoryAdjustmentItemDTO.Status.INVALID, error, null);
+            } else {
+                valid.add(i);
+            }
+        }
+
+        int[] counts = valid.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(ADJUST_BOOK, valid.stream()
+                .map(i -> parameters(adjustments.get(i)))
+                .toArray(MapSqlParameterSource[]::new));
+
+        Set<Long> externalIds = valid.stream()
+                .map(i -> adjustments.get(i).getExternalId())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<Long, BookRow> books = findBooks(new ArrayList<>(externalIds));
+        Set<Long> updated = new LinkedHashSet<>();
+        for (int v = 0; v < valid.size(); v++) {
+            int i = valid.get(v);
+            Long externalId = adjustments.get(i).getExternalId();
+            BookRow book = books.get(externalId);
+            if (book == null) {
+                results[i] = item(externalId, InventoryAdjustmentItemDTO.Status.NOT_FOUND,
+                        "Libro no encontrado con ID externo: " + externalId, null);
+            } else if (counts[v] == 0) {
+                results[i] = item(externalId, InventoryAdjustmentItemDTO.Status.REJECTED,
+                        "No se puede reducir el stock por debajo de los libros reservados: " + book.reserved(), book);
+            } else {
+                results[i] = item(externalId, InventoryAdjustmentItemDTO.Status.UPDATED, null, book);
+                updated.add(externalId);
+            }
+        }
+
+        for (Long externalId : updated) {
+            BookRow book = books.get(externalId);
+            eventPublisher.publishEvent(new StockAdjustedEvent(externalId, book.stockQuantity(), book.availableQuantity()));
+        }
+        bookCacheInvalidator.evictAfterCommit(updated);
+
+        List<InventoryAdjustmentItemDTO> items = List.of(results);
+        int updatedItems = (int) items.stream().filter(r -> r.getStatus() == InventoryAdjustmentItemDTO.Status.UPDATED).count();
+        log.info("Inventario ajustado: {} actualizados, {} rechazados", updatedItems, items.size() - updatedItems);
+        return new InventoryAdjustmentResultDTO(items.size(), updatedItems, items.size() - updatedItems, items);
+    }
+
+    private String validate(InventoryAdjustmentDTO adjustment) {
+        if (adjustment == null) {
+            return "Ajuste vacío";
+        }
+        Set<ConstraintViolation<InventoryAdjustmentDTO>> violations = validator.validate(adjustment);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        if (adjustment.getStockQuantity() != null && adjustment.getStockDelta() != null) {
+            return "Indicar stockQuantity o stockDelta, no ambos";
+        }
+        if (adjustment.getStockQuantity() == null && adjustment.getStockDelta() == null && adjustment.getPrice() == null) {
+            return "El ajuste no modifica stock ni precio";
+        }
+        return null;
+    }
+
+    private MapSqlParameterSource parameters(InventoryAdjustmentDTO adjustment) {
+        return new MapSqlParameterSource()
+                .addValue("externalId", adjustment.getExternalId())
+                .addValue("stockQuantity", adjustment.getStockQuantity(), Types.INTEGER)
+                .addValue("stockDelta", adjustment.getStockDelta() != null ? adjustment.getStockDelta() : 0)
+                .addValue("price", adjustment.getPrice(), Types.DECIMAL);
+    }
+
+    private Map<Long, BookRow> findBooks(List<Long> externalIds) {
+        Map<Long, BookRow> books = new HashMap<>();
+        for (int from = 0; from < externalIds.size(); from += LOOKUP_CHUNK) {
+            List<Long> chunk = externalIds.subList(from, Math.min(from + LOOKUP_CHUNK, externalIds.size()));
+            jdbcTemplate.query(SELECT_BOOKS, new MapSqlParameterSource("externalIds", chunk), rs -> {
+                books.put(rs.getLong("external_id"), new BookRow(rs.getInt("stock_quantity"),
+                        rs.getInt("available_quantity"), rs.getBigDecimal("price")));
+            });
+        }
+        return books;
+    }
+
+    private static InventoryAdjustmentItemDTO item(Long externalId, InventoryAdjustmentItemDTO.Status status,
+                                                   String message, BookRow book) {
+        return new InventoryAdjustmentItemDTO(externalId, status, message,
+                book != null ? book.stockQuantity() : null,
+                book != null ? book.availableQuantity() : null,
+                book != null ? book.price() : null);
+    }
+
+    private record BookRow(int stockQuantity, int availableQuantity, BigDecimal price) {
+        int reserved() {
+            return stockQuantity - availableQuantity;
+        }
+    }
+}
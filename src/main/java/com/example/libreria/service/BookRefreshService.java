@@ -0,0 +1,151 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookRefreshErrorDTO;
+import com.example.libreria.dto.BookRefreshResultDTO;
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.exception.BadRequestException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.SimpleAsyncTaskExecutorBuilder;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Actualiza un conjunto de libros desde la API externa consultando hasta {@code parallelism}
+ * ids a la vez. El pedido completo tiene un plazo: lo que no respondió a tiempo se informa
+ * como vencido y el error de un libro no afecta a los demás.
+ * <p>
+ * Entre todos los pedidos simultáneos no hay más de {@code max-threads} consultas en curso; un
+ * pedido que no consigue hilo antes del plazo informa sus libros como vencidos.
+ */
+@Service
+@Lazy
+@Slf4j
+public class BookRefreshService {
+
+    private static final long THREAD_WAIT_MILLIS = 10;
+
+    private static final Outcome TIMED_OUT = new Outcome(null, "Sin respuesta de la API externa dentro del plazo");
+
+    private final ExternalBookService externalBookService;
+    private final BookService bookService;
+    private final TaskExecutor executor;
+    private final Semaphore threads;
+    private final int parallelism;
+    private final long deadlineMillis;
+    private final int maxBatchSize;
+
+    public BookRefreshService(ExternalBookService externalBookService,
+                              BookService bookService,
+                              SimpleAsyncTaskExecutorBuilder executorBuilder,
+                              @Value("${book-refresh.parallelism:0}") int parallelism,
+                              @Value("${book-refresh.max-threads:0}") int maxThreads,
+                              @Value("${book-refresh.deadline-ms:8000}") long deadlineMillis,
+                              @Value("${book-refresh.max-batch-size:1000}") int maxBatchSize,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.externalBookService = externalBookService;
+        this.bookService = bookService;
+        // Un hilo por consulta; con el perfil virtual-threads el builder ya los crea virtuales
+        this.executor = executorBuilder.threadNamePrefix("book-refresh-").build();
+        // 0: valores por defecto según el tipo de hilo; cientos de hilos de plataforma por pedido no escalan
+        this.parallelism = parallelism > 0 ? parallelism : virtualThreads ? 500 : 32;
+        this.threads = new Semaphore(maxThreads > 0 ? maxThreads : virtualThreads ? 2000 : 64);
+        this.deadlineMillis = deadlineMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public BookRefreshResultDTO refresh(Collection<Long> externalIds) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(externalIds));
+        if (ids.size() > maxBatchSize) {
+            throw new BadRequestException("Se pueden actualizar hasta " + maxBatchSize + " libros por pedido");
+        }
+        log.info("Actualizando {} libros desde la API externa", ids.size());
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+
+        Queue<Long> pending = new ConcurrentLinkedQueue<>(ids);
+        Map<Long, Outcome> outcomes = new ConcurrentHashMap<>();
+        int workers = Math.min(parallelism, ids.size());
+        CountDownLatch finished = new CountDownLatch(workers);
+        int started = 0;
+        try {
+            // Se espera de a poco: si los hilos ya lanzados vacían la cola, no hace falta esperar otro
+            while (started < workers && !pending.isEmpty() && System.nanoTime() < deadline) {
+                if (!threads.tryAcquire(THREAD_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+                started++;
+                executor.execute(() -> {
+                    try {
+                        Long id;
+                        while (System.nanoTime() < deadline && (id = pending.poll()) != null) {
+                            outcomes.putIfAbsent(id, fetch(id));
+                        }
+                    } finally {
+                        threads.release();
+                        finished.countDown();
+                    }
+                });
+            }
+            for (int i = started; i < workers; i++) {
+                finished.countDown();
+            }
+            finished.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Se cierra el resultado: una respuesta que llegue después ya no reemplaza al vencimiento
+        ids.forEach(id -> outcomes.putIfAbsent(id, TIMED_OUT));
+
+        List<ExternalBookDTO> books = new ArrayList<>();
+        List<BookRefreshErrorDTO> errors = new ArrayList<>();
+        int timedOut = 0;
+        for (Long id : ids) {
+            Outcome outcome = outcomes.get(id);
+            if (outcome.book() != null) {
+                books.add(outcome.book());
+            } else {
+                errors.add(new BookRefreshErrorDTO(id, outcome.error()));
+                if (outcome == TIMED_OUT) {
+                    timedOut++;
+                }
+            }
+        }
+        int created = books.isEmpty() ? 0 : bookService.upsertExternalBooks(books);
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Actualización completada en {} ms: {} actualizados, {} con error, {} vencidos",
+                elapsedMillis, books.size(), errors.size() - timedOut, timedOut);
+        return new BookRefreshResultDTO(ids.size(), books.size(), created, errors.size() - timedOut, timedOut,
+                errors, elapsedMillis);
+    }
+
+    private Outcome fetch(Long id) {
+        try {
+            ExternalBookDTO book = externalBookService.fetchBookById(id);
+            if (book == null) {
+                return new Outcome(null, "La API externa no devolvió el libro");
+            }
+            book.setId(id);
+            return new Outcome(book, null);
+        } catch (RuntimeException e) {
+            return new Outcome(null, e.getMessage());
+        }
+    }
+
+    private record Outcome(ExternalBookDTO book, String error) {
+    }
+}
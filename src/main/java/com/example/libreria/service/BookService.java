@@ -2,76 +2,159 @@ package com.example.libreria.service;
 
 import com.example.libreria.dto.BookResponseDTO;
 import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.event.BookSyncedEvent;
+import com.example.libreria.event.StockAdjustedEvent;
+import com.example.libreria.exception.BusinessRuleException;
+import com.example.libreria.exception.ConflictException;
+import com.example.libreria.exception.NotFoundException;
+import com.example.libreria.instrumentation.LibreriaMetrics;
 import com.example.libreria.model.Book;
 import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.FieldProjection;
+import com.example.libreria.repository.FieldProjectionRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "libreria.service.method", percentiles = {0.5, 0.95, 0.99})
 @RequiredArgsConstructor
 @Slf4j
 public class BookService {
     
+    private static final int AUTHOR_LOOKUP_CHUNK = 1000;
+    
+    // Campos de BookResponseDTO disponibles con ?fields=
+    private static final FieldProjection BOOK_FIELDS = new FieldProjection()
+            .path("externalId", "externalId")
+            .path("title", "title")
+            .collection("authorName")
+            .path("firstPublishYear", "firstPublishYear")
+            .path("editionCount", "editionCount")
+            .path("hasFulltext", "hasFulltext")
+            .path("price", "price")
+            .path("stockQuantity", "stockQuantity")
+            .path("availableQuantity", "availableQuantity");
+    
     private final BookRepository bookRepository;
     private final ExternalBookService externalBookService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LibreriaMetrics metrics;
+    private final FieldProjectionRepository fieldProjectionRepository;
+    private final AvailabilityCalendarService availabilityCalendar;
     
     @Transactional
     public void syncBooksFromExternalApi() {
         log.info("Synchronizing books from external API");
+        long start = System.nanoTime();
         List<ExternalBookDTO> externalBooks = externalBookService.fetchAllBooks();
         
         for (ExternalBookDTO externalBook : externalBooks) {
-            Book existingBook = bookRepository.findByExternalId(externalBook.getId())
-                    .orElse(null);
-            
-            if (existingBook == null) {
-                Book newBook = convertToBook(externalBook);
-                newBook.setStockQuantity(10); // Stock inicial por defecto
-                newBook.setAvailableQuantity(10);
-                bookRepository.save(newBook);
-                log.info("Created new book: {}", newBook.getTitle());
-            } else {
-                // Actualizar información del libro
-                updateBookFromExternal(existingBook, externalBook);
-                bookRepository.save(existingBook);
-                log.info("Updated book: {}", existingBook.getTitle());
-            }
+            upsert(externalBook);
         }
+        metrics.recordSync(Duration.ofNanos(System.nanoTime() - start), externalBooks.size());
         log.info("Synchronization completed");
     }
     
-    @Transactional(readOnly = true)
+    // Alta o actualización de libros ya obtenidos de la API externa; devuelve cuántos se crearon
+    @Transactional
+    public int upsertExternalBooks(List<ExternalBookDTO> externalBooks) {
+        int created = 0;
+        for (ExternalBookDTO externalBook : externalBooks) {
+            if (upsert(externalBook)) {
+                created++;
+            }
+        }
+        return created;
+    }
+    
+    private boolean upsert(ExternalBookDTO externalBook) {
+        Book existingBook = bookRepository.findByExternalId(externalBook.getId())
+                .orElse(null);
+        
+        if (existingBook == null) {
+            Book newBook = convertToBook(externalBook);
+            newBook.setStockQuantity(10); // Stock inicial por defecto
+            newBook.setAvailableQuantity(10);
+            bookRepository.save(newBook);
+            eventPublisher.publishEvent(new BookSyncedEvent(newBook.getExternalId(),
+                    newBook.getStockQuantity(), newBook.getAvailableQuantity(), true));
+            log.info("Created new book: {}", newBook.getTitle());
+            return true;
+        }
+        // Actualizar información del libro
+        updateBookFromExternal(existingBook, externalBook);
+        bookRepository.save(existingBook);
+        eventPublisher.publishEvent(new BookSyncedEvent(existingBook.getExternalId(),
+                existingBook.getStockQuantity(), existingBook.getAvailableQuantity(), false));
+        log.info("Updated book: {}", existingBook.getTitle());
+        return false;
+    }
+    
+    // Lleva ETag: se lee de la primaria (no readOnly), porque una réplica atrasada devolvería
+    // el catálogo anterior con el ETag de la versión nueva y el cliente lo conservaría
+    @Transactional
     public List<BookResponseDTO> getAllBooks() {
         return bookRepository.findAll().stream()
-                .map(this::convertToDTO)
+                .map(BookService::convertToDTO)
                 .collect(Collectors.toList());
     }
     
     @Transactional(readOnly = true)
     public BookResponseDTO getBookByExternalId(Long externalId) {
         Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
+                .orElseThrow(() -> new NotFoundException("Libro no encontrado con ID externo: " + externalId));
         return convertToDTO(book);
     }
     
+    public List<String> resolveFields(Collection<String> fields) {
+        return BOOK_FIELDS.resolve(fields);
+    }
+    
+    // Solo lee las columnas pedidas; los autores se consultan únicamente si se pide authorName.
+    // De la primaria, como getAllBooks()
+    @Transactional
+    public List<Map<String, Object>> getAllBooks(Collection<String> fields) {
+        return projectBooks(fields, null);
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<String, Object> getBookByExternalId(Long externalId, Collection<String> fields) {
+        List<Map<String, Object>> books = projectBooks(fields,
+                (root, query, cb) -> cb.equal(root.get("externalId"), externalId));
+        if (books.isEmpty()) {
+            throw new NotFoundException("Libro no encontrado con ID externo: " + externalId);
+        }
+        return books.get(0);
+    }
+    
     @Transactional
     public BookResponseDTO updateStock(Long externalId, Integer stockQuantity) {
-        Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
+        Book book = bookRepository.findForUpdateByExternalId(externalId)
+                .orElseThrow(() -> new NotFoundException("Libro no encontrado con ID externo: " + externalId));
         
-        int reserved = book.getStockQuantity() - book.getAvailableQuantity();
+        // Reservados: el pico de ocupación desde hoy, no la cantidad de reservas activas
+        int reserved = availabilityCalendar.reserved(externalId);
         if (stockQuantity < reserved) {
-            throw new RuntimeException("No se puede reducir el stock por debajo de los libros reservados: " + reserved);
+            throw new BusinessRuleException("No se puede reducir el stock por debajo de los libros reservados: " + reserved);
         }
         
         book.setStockQuantity(stockQuantity);
         book.setAvailableQuantity(stockQuantity - reserved);
         bookRepository.save(book);
+        publishStockAdjusted(book);
         
         return convertToDTO(book);
     }
@@ -79,27 +162,64 @@ public class BookService {
     @Transactional
     public void decreaseAvailableQuantity(Long externalId) {
         Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
+                .orElseThrow(() -> new NotFoundException("Libro no encontrado con ID externo: " + externalId));
         
         if (book.getAvailableQuantity() <= 0) {
-            throw new RuntimeException("No hay libros disponibles para reservar");
+            throw new ConflictException("No hay libros disponibles para reservar");
         }
         
         book.setAvailableQuantity(book.getAvailableQuantity() - 1);
         bookRepository.save(book);
+        publishStockAdjusted(book);
     }
     
     @Transactional
     public void increaseAvailableQuantity(Long externalId) {
         Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
+                .orElseThrow(() -> new NotFoundException("Libro no encontrado con ID externo: " + externalId));
         
         if (book.getAvailableQuantity() >= book.getStockQuantity()) {
-            throw new RuntimeException("La cantidad disponible no puede exceder el stock");
+            throw new BusinessRuleException("La cantidad disponible no puede exceder el stock");
         }
         
         book.setAvailableQuantity(book.getAvailableQuantity() + 1);
         bookRepository.save(book);
+        publishStockAdjusted(book);
+    }
+    
+    private List<Map<String, Object>> projectBooks(Collection<String> requested, Specification<Book> filter) {
+        List<String> fields = BOOK_FIELDS.resolve(requested);
+        if (!fields.contains("authorName")) {
+            return fieldProjectionRepository.find(Book.class, BOOK_FIELDS, fields, filter);
+        }
+        List<Map<String, Object>> books = fieldProjectionRepository.find(Book.class, BOOK_FIELDS,
+                BOOK_FIELDS.including(fields, "externalId"), filter);
+        Map<Long, List<String>> authors = findAuthorNames(books.stream()
+                .map(book -> (Long) book.get("externalId"))
+                .collect(Collectors.toList()));
+        for (Map<String, Object> book : books) {
+            book.put("authorName", authors.getOrDefault((Long) book.get("externalId"), List.of()));
+            if (!fields.contains("externalId")) {
+                book.remove("externalId");
+            }
+        }
+        return books;
+    }
+    
+    private Map<Long, List<String>> findAuthorNames(List<Long> externalIds) {
+        Map<Long, List<String>> authors = new HashMap<>();
+        for (int from = 0; from < externalIds.size(); from += AUTHOR_LOOKUP_CHUNK) {
+            List<Long> chunk = externalIds.subList(from, Math.min(from + AUTHOR_LOOKUP_CHUNK, externalIds.size()));
+            for (Object[] row : bookRepository.findAuthorNames(chunk)) {
+                authors.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
+            }
+        }
+        return authors;
+    }
+    
+    private void publishStockAdjusted(Book book) {
+        eventPublisher.publishEvent(new StockAdjustedEvent(book.getExternalId(),
+                book.getStockQuantity(), book.getAvailableQuantity()));
     }
     
     private Book convertToBook(ExternalBookDTO dto) {
@@ -116,14 +236,18 @@ public class BookService {
     
     private void updateBookFromExternal(Book book, ExternalBookDTO dto) {
         book.setTitle(dto.getTitle());
-        book.setAuthorName(dto.getAuthorName());
+        // Reemplazar la colección aunque tenga los mismos autores la reescribe e incrementa la versión del libro
+        if (book.getAuthorName() == null || dto.getAuthorName() == null
+                || !new ArrayList<>(book.getAuthorName()).equals(dto.getAuthorName())) {
+            book.setAuthorName(dto.getAuthorName());
+        }
         book.setFirstPublishYear(dto.getFirstPublishYear());
         book.setEditionCount(dto.getEditionCount());
         book.setHasFulltext(dto.getHasFulltext());
         book.setPrice(dto.getPrice());
     }
     
-    private BookResponseDTO convertToDTO(Book book) {
+    static BookResponseDTO convertToDTO(Book book) {
         BookResponseDTO dto = new BookResponseDTO();
         dto.setExternalId(book.getExternalId());
         dto.setTitle(book.getTitle());
@@ -0,0 +1,41 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.CacheRegionStatsDTO;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+@Service
+@Lazy
+@RequiredArgsConstructor
+public class CacheStatsService {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public List<CacheRegionStatsDTO> getRegionStats() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(region -> toDTO(region, statistics.getCacheRegionStatistics(region)))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private CacheRegionStatsDTO toDTO(String region, CacheRegionStatistics stats) {
+        if (stats == null) {
+            return null;
+        }
+        long hits = stats.getHitCount();
+        long misses = stats.getMissCount();
+        double hitRatio = hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+        return new CacheRegionStatsDTO(region, hits, misses, stats.getPutCount(), hitRatio);
+    }
+}
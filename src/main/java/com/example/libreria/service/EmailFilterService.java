@@ -0,0 +1,94 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.EmailFilterStatsDTO;
+import com.example.libreria.repository.UserRepository;
+import com.example.libreria.util.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+@Service
+@Slf4j
+public class EmailFilterService {
+
+    private final UserRepository userRepository;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    private volatile BloomFilter filter;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder definiteMisses = new LongAdder();
+    private final LongAdder databaseChecks = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    public EmailFilterService(UserRepository userRepository,
+                              @Value("${email-filter.expected-insertions:100000}") long expectedInsertions,
+                              @Value("${email-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long users = userRepository.count();
+        // Se dimensiona con margen para que el crecimiento no degrade la tasa de falsos positivos
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedInsertions, users * 2), falsePositiveRate);
+        try (Stream<String> emails = userRepository.streamAllEmails()) {
+            emails.forEach(rebuilt::put);
+        }
+        filter = rebuilt;
+        log.info("Filtro de emails reconstruido con {} usuarios ({} bits, {} hashes)",
+                rebuilt.insertions(), rebuilt.bitSize(), rebuilt.hashFunctions());
+    }
+
+    public boolean emailExists(String email) {
+        lookups.increment();
+        BloomFilter current = filter;
+        // Hasta que termina la reconstrucción se consulta siempre a la base de datos
+        if (current != null && !current.mightContain(email)) {
+            definiteMisses.increment();
+            return false;
+        }
+        databaseChecks.increment();
+        boolean exists = userRepository.existsByEmail(email);
+        if (!exists && current != null) {
+            falsePositives.increment();
+        }
+        return exists;
+    }
+
+    public void register(String email) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(email);
+        }
+    }
+
+    public EmailFilterStatsDTO getStats() {
+        BloomFilter current = filter;
+        long misses = definiteMisses.sum();
+        long fp = falsePositives.sum();
+        double observedRate = misses + fp == 0 ? 0.0 : (double) fp / (misses + fp);
+        return new EmailFilterStatsDTO(
+                current != null,
+                current != null ? current.insertions() : 0,
+                current != null ? current.bitSize() : 0,
+                current != null ? current.hashFunctions() : 0,
+                falsePositiveRate,
+                current != null ? current.estimatedFalsePositiveRate() : 0.0,
+                lookups.sum(),
+                misses,
+                databaseChecks.sum(),
+                fp,
+                observedRate);
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.libreria.service;
 
 import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.exception.BadRequestException;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
@@ -14,6 +16,7 @@ import java.util.Collections;
 import java.util.List;
 
 @Service
+@Timed(value = "libreria.service.method", percentiles = {0.5, 0.95, 0.99})
 @Slf4j
 public class ExternalBookService {
     // TODO: completar llamada a la API externa (ver bien todo el proyecto...)
@@ -41,8 +44,9 @@ public class ExternalBookService {
             log.info("Successfully fetched {} books from external API", books != null ? books.size() : 0);
             return books != null ? books : Collections.emptyList();
         } catch (RestClientException e) {
+            // La traza queda en el log; la respuesta solo lleva el mensaje
             log.error("Error fetching books from external API: {}", e.getMessage(), e);
-            throw new RuntimeException("Error al obtener libros de la API externa: " + e.getMessage(), e);
+            throw new BadRequestException("Error al obtener libros de la API externa: " + e.getMessage());
         }
     }
     
@@ -55,7 +59,7 @@ public class ExternalBookService {
             return book;
         } catch (RestClientException e) {
             log.error("Error fetching book {} from external API: {}", id, e.getMessage(), e);
-            throw new RuntimeException("Error al obtener el libro de la API externa: " + e.getMessage(), e);
+            throw new BadRequestException("Error al obtener el libro de la API externa: " + e.getMessage());
         }
     }
 
@@ -0,0 +1,227 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.RelatedBookDTO;
+import com.example.libreria.dto.RelatedBooksRebuildResultDTO;
+import com.example.libreria.event.ReservationCreatedEvent;
+import com.example.libreria.event.UserDeletedEvent;
+import com.example.libreria.exception.NotFoundException;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.ArchivedReservationRepository;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.util.SpaceSavingCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * "Quienes reservaron este libro también reservaron…": matriz de co-ocurrencia dispersa por
+ * {@code Book.externalId}, en memoria. Cada libro guarda a lo sumo {@code related.capacity}
+ * vecinos en un {@link SpaceSavingCounter}, así que los más frecuentes se conservan aunque el
+ * historial crezca. La primera consulta (o {@link #rebuild()}) arma la matriz desde el historial,
+ * repartiendo los libros en particiones que se procesan en paralelo, y guarda también los libros
+ * de cada usuario: con eso cada reserva confirmada suma al usuario con los otros libros que ya
+ * había reservado, y un usuario eliminado resta sus pares, sin consultar la base.
+ * <p>
+ * Los conteos son de usuarios distintos por par de libros y pueden sobreestimar cuando un libro
+ * tiene más vecinos que la capacidad. La matriz es local a cada instancia.
+ */
+@Service
+@Slf4j
+public class RelatedBookService {
+
+    private final ReservationRepository reservationRepository;
+    private final ArchivedReservationRepository archivedReservationRepository;
+    private final BookRepository bookRepository;
+    private final int capacity;
+    private final int partitions;
+    // Lock explícito: un monitor en disputa bloquea también al hilo portador de un hilo virtual
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    // null hasta la primera reconstrucción: lo que se reserve antes ya va a estar en el historial
+    private Map<Long, SpaceSavingCounter<Long>> neighbours;
+    private Map<Long, Set<Long>> booksByUser;
+
+    public RelatedBookService(ReservationRepository reservationRepository,
+                              ArchivedReservationRepository archivedReservationRepository,
+                              BookRepository bookRepository,
+                              @Value("${related.capacity:50}") int capacity) {
+        this.reservationRepository = reservationRepository;
+        this.archivedReservationRepository = archivedReservationRepository;
+        this.bookRepository = bookRepository;
+        this.capacity = capacity;
+        this.partitions = Runtime.getRuntime().availableProcessors() * 4;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationCreated(ReservationCreatedEvent event) {
+        recordReservation(event.userId(), event.bookExternalId());
+    }
+
+    // Sus reservas se borraron: cada par de libros suyos pierde un usuario
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserDeleted(UserDeletedEvent event) {
+        lock.lock();
+        try {
+            Set<Long> books = booksByUser != null ? booksByUser.remove(event.userId()) : null;
+            if (books == null) {
+                return;
+            }
+            for (Long book : books) {
+                SpaceSavingCounter<Long> counter = neighbours.get(book);
+                if (counter == null) {
+                    continue;
+                }
+                for (Long other : books) {
+                    if (!other.equals(book)) {
+                        counter.subtract(other, 1);
+                    }
+                }
+                if (counter.size() == 0) {
+                    neighbours.remove(book);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void recordReservation(Long userId, Long bookExternalId) {
+        lock.lock();
+        try {
+            if (neighbours == null) {
+                return;
+            }
+            Set<Long> history = booksByUser.computeIfAbsent(userId, id -> new LinkedHashSet<>());
+            if (!history.add(bookExternalId)) {
+                // Ya lo había reservado: sus pares con los demás libros ya están contados
+                return;
+            }
+            for (Long other : history) {
+                if (!other.equals(bookExternalId)) {
+                    counter(neighbours, bookExternalId).add(other);
+                    counter(neighbours, other).add(bookExternalId);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<RelatedBookDTO> getRelatedBooks(Long bookExternalId, int limit) {
+        if (!bookRepository.existsByExternalId(bookExternalId)) {
+            throw new NotFoundException("Libro no encontrado con ID externo: " + bookExternalId);
+        }
+        if (!isLoaded()) {
+            rebuild();
+        }
+        List<SpaceSavingCounter.Estimate<Long>> top;
+        lock.lock();
+        try {
+            SpaceSavingCounter<Long> counter = neighbours != null ? neighbours.get(bookExternalId) : null;
+            top = counter != null ? counter.top(limit) : List.of();
+        } finally {
+            lock.unlock();
+        }
+
+        Map<Long, Book> books = bookRepository.findAllById(top.stream().map(SpaceSavingCounter.Estimate::key).toList())
+                .stream()
+                .collect(Collectors.toMap(Book::getExternalId, Function.identity()));
+        return top.stream()
+                .filter(estimate -> books.containsKey(estimate.key()))
+                .map(estimate -> new RelatedBookDTO(estimate.key(), books.get(estimate.key()).getTitle(), estimate.count()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Arma la matriz desde las reservas y el archivo. Cada partición cuenta los vecinos de sus
+     * libros recorriendo todos los usuarios, así que las particiones no comparten contadores.
+     */
+    @Transactional(readOnly = true)
+    public RelatedBooksRebuildResultDTO rebuild() {
+        rebuildLock.lock();
+        try {
+            long start = System.nanoTime();
+            Map<Long, Set<Long>> booksByUser = new HashMap<>();
+            addPairs(booksByUser, reservationRepository.findUserBookPairs());
+            addPairs(booksByUser, archivedReservationRepository.findUserBookPairs());
+            List<long[]> users = new ArrayList<>(booksByUser.size());
+            for (Set<Long> books : booksByUser.values()) {
+                if (books.size() > 1) {
+                    users.add(books.stream().mapToLong(Long::longValue).toArray());
+                }
+            }
+
+            Map<Long, SpaceSavingCounter<Long>> rebuilt = new HashMap<>();
+            IntStream.range(0, partitions).parallel()
+                    .mapToObj(partition -> buildPartition(users, partition))
+                    .toList()
+                    .forEach(rebuilt::putAll);
+
+            lock.lock();
+            try {
+                neighbours = rebuilt;
+                this.booksByUser = booksByUser;
+            } finally {
+                lock.unlock();
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            log.info("Recomendaciones reconstruidas: {} usuarios, {} libros en {} ms", booksByUser.size(), rebuilt.size(), millis);
+            return new RelatedBooksRebuildResultDTO(booksByUser.size(), rebuilt.size(), millis);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private Map<Long, SpaceSavingCounter<Long>> buildPartition(List<long[]> users, int partition) {
+        Map<Long, SpaceSavingCounter<Long>> result = new HashMap<>();
+        for (long[] books : users) {
+            for (long source : books) {
+                if (Math.floorMod(Long.hashCode(source), partitions) != partition) {
+                    continue;
+                }
+                SpaceSavingCounter<Long> counter = counter(result, source);
+                for (long other : books) {
+                    if (other != source) {
+                        counter.add(other);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isLoaded() {
+        lock.lock();
+        try {
+            return neighbours != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private SpaceSavingCounter<Long> counter(Map<Long, SpaceSavingCounter<Long>> map, Long bookExternalId) {
+        return map.computeIfAbsent(bookExternalId, id -> new SpaceSavingCounter<>(capacity));
+    }
+
+    private static void addPairs(Map<Long, Set<Long>> booksByUser, List<Object[]> pairs) {
+        for (Object[] pair : pairs) {
+            booksByUser.computeIfAbsent((Long) pair[0], id -> new LinkedHashSet<>()).add((Long) pair[1]);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.libreria.service;
+
+import com.example.libreria.repository.ArchivedReservationRepository;
+import com.example.libreria.repository.ReservationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@Slf4j
+public class ReservationArchiveService {
+
+    private final ReservationRepository reservationRepository;
+    private final ArchivedReservationRepository archivedReservationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int minAgeDays;
+    private final int batchSize;
+
+    public ReservationArchiveService(ReservationRepository reservationRepository,
+                                     ArchivedReservationRepository archivedReservationRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${reservations.archive.min-age-days:90}") int minAgeDays,
+                                     @Value("${reservations.archive.batch-size:1000}") int batchSize) {
+        this.reservationRepository = reservationRepository;
+        this.archivedReservationRepository = archivedReservationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.minAgeDays = minAgeDays;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${reservations.archive.cron:0 30 3 * * *}")
+    public void scheduledArchive() {
+        archiveReturnedReservations();
+    }
+
+    public int archiveReturnedReservations() {
+        LocalDate cutoff = LocalDate.now().minusDays(minAgeDays);
+        log.info("Archivando reservas devueltas antes de {}", cutoff);
+        int archived = 0;
+        while (true) {
+            // Cada lote se mueve en su propia transacción para no retener locks sobre toda la tabla. Si
+            // otra instancia corre a la vez, el bloqueo de las filas reparte los lotes entre las dos
+            Integer moved = transactionTemplate.execute(status -> {
+                List<Long> ids = reservationRepository.lockReturnedIdsBefore(cutoff, batchSize);
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                archivedReservationRepository.copyFromReservations(ids, LocalDateTime.now());
+                return reservationRepository.deleteByIdIn(ids);
+            });
+            if (moved == null || moved == 0) {
+                break;
+            }
+            archived += moved;
+        }
+        log.info("Archivado completado: {} reservas movidas", archived);
+        return archived;
+    }
+}
@@ -4,13 +4,25 @@ import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.event.BookReturnedEvent;
+import com.example.libreria.event.ReservationCreatedEvent;
+import com.example.libreria.exception.ConflictException;
+import com.example.libreria.exception.NotFoundException;
+import com.example.libreria.instrumentation.LibreriaMetrics;
+import com.example.libreria.model.ArchivedReservation;
 import com.example.libreria.model.Book;
 import com.example.libreria.model.Reservation;
 import com.example.libreria.model.User;
+import com.example.libreria.repository.ArchivedReservationRepository;
 import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.FieldProjection;
+import com.example.libreria.repository.FieldProjectionRepository;
 import com.example.libreria.repository.ReservationRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,19 +31,50 @@ import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "libreria.service.method", percentiles = {0.5, 0.95, 0.99})
 @RequiredArgsConstructor
 @Slf4j
 public class ReservationService {
 
     private static final BigDecimal LATE_FEE_PERCENTAGE = new BigDecimal("0.15"); // 15% por día
 
+    // Campos de ReservationResponseDTO disponibles con ?fields=; userName y bookTitle son los únicos que hacen JOIN.
+    // Sirve tanto para Reservation como para ArchivedReservation, que tienen los mismos atributos
+    private static final FieldProjection RESERVATION_FIELDS = new FieldProjection()
+            .path("id", "id")
+            .path("userId", "user.id")
+            .path("userName", "user.name")
+            .path("bookExternalId", "book.externalId")
+            .path("bookTitle", "book.title")
+            .path("rentalDays", "rentalDays")
+            .path("startDate", "startDate")
+            .path("expectedReturnDate", "expectedReturnDate")
+            .path("actualReturnDate", "actualReturnDate")
+            .path("dailyRate", "dailyRate")
+            // Igual que convertToDTO: el total incluye la multa
+            .field("totalFee", (cb, root) -> cb.sum(root.<BigDecimal>get("totalFee"),
+                    cb.coalesce(root.<BigDecimal>get("lateFee"), BigDecimal.ZERO)))
+            .path("lateFee", "lateFee")
+            .path("status", "status")
+            .path("createdAt", "createdAt");
+
     private final ReservationRepository reservationRepository;
+    private final ArchivedReservationRepository archivedReservationRepository;
     private final BookRepository bookRepository;
     private final UserService userService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LibreriaMetrics metrics;
+    private final FieldProjectionRepository fieldProjectionRepository;
+    private final AvailabilityCalendarService availabilityCalendar;
 
     @Transactional
     public ReservationResponseDTO createReservation(ReservationRequestDTO requestDTO) {
@@ -40,9 +83,16 @@ public class ReservationService {
         // TODO: Implementar la creación de una reserva
         // Validar que el usuario existe
         
-        UserResponseDTO user = userService.getUserById(requestDTO.getUserId());
+        UserResponseDTO user;
+        try {
+            user = userService.getUserById(requestDTO.getUserId());
+        } catch (NotFoundException e) {
+            metrics.reservationRejected("user_not_found");
+            throw e;
+        }
         if (user == null) {
-            throw new RuntimeException("Usuario no encontrado con ID: " + requestDTO.getUserId());
+            metrics.reservationRejected("user_not_found");
+            throw new NotFoundException("Usuario no encontrado con ID: " + requestDTO.getUserId());
         }
 
         // Validar que el libro existe y está disponible
@@ -50,18 +100,29 @@ public class ReservationService {
         // Crear la reserva
         
         // Reducir la cantidad disponible
-        Book book = bookRepository.findByExternalId(requestDTO.getBookExternalId())
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + requestDTO.getBookExternalId()));
-
-        if (book.getAvailableQuantity() <= 0) {
-            throw new RuntimeException("Libro no disponible. Stock actual: " + book.getAvailableQuantity());
+        Book book = bookRepository.findForUpdateByExternalId(requestDTO.getBookExternalId()).orElse(null);
+        if (book == null) {
+            metrics.reservationRejected("book_not_found");
+            throw new NotFoundException("Libro no encontrado con ID externo: " + requestDTO.getBookExternalId());
         }
 
         // Verificar si el usuario ya tiene una reserva activa para este libro
         boolean hasActiveReservation = reservationRepository.existsByUserIdAndBookExternalIdAndActualReturnDateIsNull(
                 requestDTO.getUserId(), requestDTO.getBookExternalId());
         if (hasActiveReservation) {
-            throw new RuntimeException("El usuario ya tiene una reserva activa para este libro");
+            metrics.reservationRejected("already_reserved");
+            throw new ConflictException("El usuario ya tiene una reserva activa para este libro");
+        }
+
+        // La disponibilidad se mira en las fechas pedidas: una reserva futura no bloquea los días
+        // anteriores. Con la fila bloqueada, el calendario se arma con lo confirmado en la base
+        LocalDate expectedReturnDate = requestDTO.getStartDate().plusDays(requestDTO.getRentalDays());
+        OptionalInt reserved = availabilityCalendar.reserve(book.getExternalId(), book.getStockQuantity(),
+                requestDTO.getStartDate(), expectedReturnDate);
+        if (reserved.isEmpty()) {
+            metrics.reservationRejected("not_available");
+            throw new ConflictException("Libro no disponible entre " + requestDTO.getStartDate()
+                    + " y " + expectedReturnDate);
         }
 
         Reservation reservation = new Reservation();
@@ -69,7 +130,7 @@ public class ReservationService {
         reservation.setBook(book);
         reservation.setRentalDays(requestDTO.getRentalDays());
         reservation.setStartDate(requestDTO.getStartDate());
-        reservation.setExpectedReturnDate(requestDTO.getStartDate().plusDays(requestDTO.getRentalDays()));
+        reservation.setExpectedReturnDate(expectedReturnDate);
         reservation.setDailyRate(book.getPrice());
         reservation.setTotalFee(calculateTotalFee(book.getPrice(), requestDTO.getRentalDays()));
         reservation.setStatus(Reservation.ReservationStatus.ACTIVE);
@@ -77,9 +138,21 @@ public class ReservationService {
 
         Reservation savedReservation = reservationRepository.save(reservation);
 
-        book.setAvailableQuantity(book.getAvailableQuantity() - 1);
+        // Disponibles = stock menos el pico de ocupación desde hoy: una reserva en fechas que no se
+        // superponen con las demás no descuenta otro ejemplar
+        int available = book.getStockQuantity() - reserved.getAsInt();
+        int availableDelta = available - book.getAvailableQuantity();
+        book.setAvailableQuantity(available);
         bookRepository.save(book);
 
+        eventPublisher.publishEvent(new ReservationCreatedEvent(
+                savedReservation.getId(),
+                requestDTO.getUserId(),
+                book.getExternalId(),
+                savedReservation.getStartDate(),
+                savedReservation.getExpectedReturnDate(),
+                availableDelta));
+
         log.info("Reserva creada exitosamente con ID: {}", savedReservation.getId());
         return convertToDTO(savedReservation);
     }
@@ -90,12 +163,19 @@ public class ReservationService {
 
         // TODO: Implementar la devolución de un libro
         Reservation reservation = reservationRepository.findById(reservationId)
-                .orElseThrow(() -> new RuntimeException("Reserva no encontrada con ID: " + reservationId));
+                .orElseThrow(() -> new NotFoundException("Reserva no encontrada con ID: " + reservationId));
 
         if (reservation.getStatus() != Reservation.ReservationStatus.ACTIVE) {
-            throw new RuntimeException("La reserva ya fue devuelta");
+            throw new ConflictException("La reserva ya fue devuelta");
         }
 
+        // Antes de tocar la reserva: un calendario que se arme desde la base todavía la ve activa
+        Book book = bookRepository.findForUpdateByExternalId(reservation.getBook().getExternalId())
+                .orElseThrow(() -> new NotFoundException("Libro no encontrado con ID externo: "
+                        + reservation.getBook().getExternalId()));
+        int reserved = availabilityCalendar.release(book.getExternalId(), reservation.getStartDate(),
+                reservation.getExpectedReturnDate());
+
         LocalDate returnDate = returnRequest.getReturnDate();
         reservation.setActualReturnDate(returnDate);
 
@@ -115,39 +195,54 @@ public class ReservationService {
         Reservation updatedReservation = reservationRepository.save(reservation);
 
         // Aumentar la cantidad disponible
-        Book book = reservation.getBook();
-        book.setAvailableQuantity(book.getAvailableQuantity() + 1);
+        int available = book.getStockQuantity() - reserved;
+        int availableDelta = available - book.getAvailableQuantity();
+        book.setAvailableQuantity(available);
         bookRepository.save(book);
 
+        eventPublisher.publishEvent(new BookReturnedEvent(
+                reservationId,
+                reservation.getUser().getId(),
+                book.getExternalId(),
+                returnDate,
+                reservation.getLateFee(),
+                availableDelta));
+
         log.info("Devolución procesada exitosamente para reserva ID: {}", reservationId);
         return convertToDTO(updatedReservation);
     }
 
     @Transactional(readOnly = true)
     public ReservationResponseDTO getReservationById(Long id) {
-        Reservation reservation = reservationRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Reserva no encontrada con ID: " + id));
-        return convertToDTO(reservation);
+        return reservationRepository.findById(id)
+                .map(ReservationService::convertToDTO)
+                .or(() -> archivedReservationRepository.findById(id).map(ReservationService::convertToDTO))
+                .orElseThrow(() -> new NotFoundException("Reserva no encontrada con ID: " + id));
     }
 
     @Transactional(readOnly = true)
     public List<ReservationResponseDTO> getAllReservations() {
         return reservationRepository.findAll().stream()
-                .map(this::convertToDTO)
+                .map(ReservationService::convertToDTO)
                 .collect(Collectors.toList());
     }
 
-    @Transactional(readOnly = true)
+    // El historial se responde con ETag: sin readOnly se lee de la primaria y nunca sale de una
+    // réplica que todavía no tiene la reserva que ya cambió la versión
+    @Transactional
     public List<ReservationResponseDTO> getReservationsByUserId(Long userId) {
-        return reservationRepository.findByUserId(userId).stream()
-                .map(this::convertToDTO)
+        // El historial combina la tabla caliente con las reservas ya archivadas
+        return Stream.concat(
+                        reservationRepository.findByUserId(userId).stream().map(ReservationService::convertToDTO),
+                        archivedReservationRepository.findByUserId(userId).stream().map(ReservationService::convertToDTO))
+                .sorted(Comparator.comparing(ReservationResponseDTO::getId))
                 .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
     public List<ReservationResponseDTO> getActiveReservations() {
         return reservationRepository.findByActualReturnDateIsNull().stream()
-                .map(this::convertToDTO)
+                .map(ReservationService::convertToDTO)
                 .collect(Collectors.toList());
     }
 
@@ -155,24 +250,88 @@ public class ReservationService {
     public List<ReservationResponseDTO> getOverdueReservations() {
         LocalDate currentDate = LocalDate.now();
         return reservationRepository.findByExpectedReturnDateBeforeAndActualReturnDateIsNull(currentDate).stream()
-                .map(this::convertToDTO)
+                .map(ReservationService::convertToDTO)
                 .collect(Collectors.toList());
     }
+
+    public List<String> resolveFields(Collection<String> fields) {
+        return RESERVATION_FIELDS.resolve(fields);
+    }
+
+    // Variantes con ?fields=: solo se leen las columnas pedidas y no se cargan usuario ni libro
+
+    @Transactional(readOnly = true)
+    public Map<String, Object> getReservationById(Long id, Collection<String> fields) {
+        List<String> resolved = RESERVATION_FIELDS.resolve(fields);
+        List<Map<String, Object>> reservations = fieldProjectionRepository.find(Reservation.class, RESERVATION_FIELDS,
+                resolved, (root, query, cb) -> cb.equal(root.get("id"), id));
+        if (reservations.isEmpty()) {
+            reservations = fieldProjectionRepository.find(ArchivedReservation.class, RESERVATION_FIELDS,
+                    resolved, (root, query, cb) -> cb.equal(root.get("id"), id));
+        }
+        if (reservations.isEmpty()) {
+            throw new NotFoundException("Reserva no encontrada con ID: " + id);
+        }
+        return reservations.get(0);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getAllReservations(Collection<String> fields) {
+        return fieldProjectionRepository.find(Reservation.class, RESERVATION_FIELDS,
+                RESERVATION_FIELDS.resolve(fields), null);
+    }
+
+    @Transactional
+    public List<Map<String, Object>> getReservationsByUserId(Long userId, Collection<String> fields) {
+        List<String> resolved = RESERVATION_FIELDS.resolve(fields);
+        // El ID se lee siempre para ordenar el historial combinado, como en la versión completa
+        List<String> selected = RESERVATION_FIELDS.including(resolved, "id");
+        List<Map<String, Object>> reservations = Stream.concat(
+                        fieldProjectionRepository.find(Reservation.class, RESERVATION_FIELDS, selected,
+                                byUser(userId)).stream(),
+                        fieldProjectionRepository.find(ArchivedReservation.class, RESERVATION_FIELDS, selected,
+                                byUser(userId)).stream())
+                .sorted(Comparator.comparing(reservation -> (Long) reservation.get("id")))
+                .collect(Collectors.toList());
+        if (!resolved.contains("id")) {
+            reservations.forEach(reservation -> reservation.remove("id"));
+        }
+        return reservations;
+    }
+
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getActiveReservations(Collection<String> fields) {
+        return fieldProjectionRepository.find(Reservation.class, RESERVATION_FIELDS, RESERVATION_FIELDS.resolve(fields),
+                (root, query, cb) -> cb.isNull(root.get("actualReturnDate")));
+    }
+
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getOverdueReservations(Collection<String> fields) {
+        LocalDate currentDate = LocalDate.now();
+        return fieldProjectionRepository.find(Reservation.class, RESERVATION_FIELDS, RESERVATION_FIELDS.resolve(fields),
+                (root, query, cb) -> cb.and(
+                        cb.lessThan(root.get("expectedReturnDate"), currentDate),
+                        cb.isNull(root.get("actualReturnDate"))));
+    }
+
+    private static <T> Specification<T> byUser(Long userId) {
+        return (root, query, cb) -> cb.equal(root.get("user").get("id"), userId);
+    }
         // TODO: Implementar el cálculo del total de la reserva
 
-    protected BigDecimal calculateTotalFee(BigDecimal dailyRate, Integer rentalDays) {
+    static BigDecimal calculateTotalFee(BigDecimal dailyRate, Integer rentalDays) {
         return dailyRate.multiply(new BigDecimal(rentalDays))
                 .setScale(2, RoundingMode.HALF_UP);
     }
 
-    protected BigDecimal calculateLateFee(BigDecimal bookPrice, long daysLate) {
+    static BigDecimal calculateLateFee(BigDecimal bookPrice, long daysLate) {
         // 15% del precio del libro por cada día de demora
         BigDecimal dailyLateFee = bookPrice.multiply(LATE_FEE_PERCENTAGE);
         return dailyLateFee.multiply(new BigDecimal(daysLate))
                 .setScale(2, RoundingMode.HALF_UP);
     }
 
-    private ReservationResponseDTO convertToDTO(Reservation reservation) {
+    static ReservationResponseDTO convertToDTO(Reservation reservation) {
         ReservationResponseDTO dto = new ReservationResponseDTO();
         dto.setId(reservation.getId());
         dto.setUserId(reservation.getUser().getId());
@@ -198,21 +357,48 @@ public class ReservationService {
         return dto;
     }
 
+    private static ReservationResponseDTO convertToDTO(ArchivedReservation reservation) {
+        BigDecimal totalFee = reservation.getTotalFee();
+        if (reservation.getLateFee() != null) {
+            totalFee = totalFee.add(reservation.getLateFee());
+        }
+        return new ReservationResponseDTO(
+                reservation.getId(),
+                reservation.getUser().getId(),
+                reservation.getUser().getName(),
+                reservation.getBook().getExternalId(),
+                reservation.getBook().getTitle(),
+                reservation.getRentalDays(),
+                reservation.getStartDate(),
+                reservation.getExpectedReturnDate(),
+                reservation.getActualReturnDate(),
+                reservation.getDailyRate(),
+                totalFee,
+                reservation.getLateFee(),
+                reservation.getStatus(),
+                reservation.getCreatedAt());
+    }
+
     // Método auxiliar para obtener el total de multas pendientes de un usuario
     @Transactional(readOnly = true)
     public BigDecimal getUserPendingLateFees(Long userId) {
         List<Reservation> userReservations = reservationRepository.findByUserId(userId);
-        return userReservations.stream()
+        BigDecimal hotLateFees = userReservations.stream()
                 .filter(r -> r.getLateFee() != null && r.getLateFee().compareTo(BigDecimal.ZERO) > 0)
                 .map(Reservation::getLateFee)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal archivedLateFees = archivedReservationRepository.sumLateFeesByUserId(userId);
+        if (archivedLateFees == null || archivedLateFees.signum() == 0) {
+            return hotLateFees;
+        }
+        return hotLateFees.add(archivedLateFees);
     }
 
     // Método para verificar disponibilidad de un libro
     @Transactional(readOnly = true)
     public boolean isBookAvailable(Long bookExternalId) {
         Book book = bookRepository.findByExternalId(bookExternalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado"));
+                .orElseThrow(() -> new NotFoundException("Libro no encontrado"));
 
         long activeReservations = reservationRepository.countByBookExternalIdAndActualReturnDateIsNull(bookExternalId);
 
@@ -221,11 +407,21 @@ public class ReservationService {
 
     // Método para calcular el total final (tarifa base + multa)
     public BigDecimal calculateFinalTotal(Long reservationId) {
-        Reservation reservation = reservationRepository.findById(reservationId)
-                .orElseThrow(() -> new RuntimeException("Reserva no encontrada"));
+        Reservation reservation = reservationRepository.findById(reservationId).orElse(null);
+        BigDecimal totalFee;
+        BigDecimal lateFeeValue;
+        if (reservation != null) {
+            totalFee = reservation.getTotalFee();
+            lateFeeValue = reservation.getLateFee();
+        } else {
+            ArchivedReservation archived = archivedReservationRepository.findById(reservationId)
+                    .orElseThrow(() -> new NotFoundException("Reserva no encontrada"));
+            totalFee = archived.getTotalFee();
+            lateFeeValue = archived.getLateFee();
+        }
 
-        BigDecimal total = reservation.getTotalFee() != null ? reservation.getTotalFee() : BigDecimal.ZERO;
-        BigDecimal lateFee = reservation.getLateFee() != null ? reservation.getLateFee() : BigDecimal.ZERO;
+        BigDecimal total = totalFee != null ? totalFee : BigDecimal.ZERO;
+        BigDecimal lateFee = lateFeeValue != null ? lateFeeValue : BigDecimal.ZERO;
 
         return total.add(lateFee);
     }
@@ -0,0 +1,30 @@
+package com.example.libreria.service;
+
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Versiones para los ETag del catálogo y de las reservas de cada usuario, derivadas de la base:
+ * cantidad de filas y suma de sus columnas {@code @Version}. Todas las instancias calculan el mismo
+ * ETag para los mismos datos, y una escritura confirmada en cualquiera de ellas lo cambia.
+ * <p>
+ * Se leen sin transacción de solo lectura, así van a la primaria: una réplica atrasada anunciaría
+ * una versión vieja.
+ */
+@Service
+@RequiredArgsConstructor
+public class ResourceVersionService {
+
+    private final BookRepository bookRepository;
+    private final ReservationRepository reservationRepository;
+
+    public String booksETag() {
+        return "\"books-" + bookRepository.findVersionStamp() + "\"";
+    }
+
+    public String userReservationsETag(Long userId) {
+        return "\"reservations-" + userId + "-" + reservationRepository.findVersionStampByUserId(userId) + "\"";
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.AvailabilityDiscrepancyDTO;
+import com.example.libreria.dto.StockReconciliationResultDTO;
+import com.example.libreria.event.StockAdjustedEvent;
+import com.example.libreria.instrumentation.QueryStats;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara {@code Book.availableQuantity} con {@code stockQuantity} menos el pico de ocupación
+ * desde hoy de las reservas activas y, si se pide, corrige las diferencias. El catálogo se divide en tramos de {@code external_id}
+ * que se procesan en paralelo en un ForkJoinPool propio; cada tramo hace una sola consulta
+ * agrupada que devuelve solo los libros con diferencias y, al corregir, un lote de UPDATE en su
+ * propia transacción.
+ * <p>
+ * La corrección solo pisa el valor si sigue siendo el que se leyó: una reserva o devolución
+ * concurrente deja el libro para la próxima pasada.
+ */
+@Service
+@Slf4j
+public class StockReconciliationService {
+
+    private static final String CATALOG_RANGE = "SELECT MIN(external_id) AS min_id, MAX(external_id) AS max_id, COUNT(*) AS books FROM books";
+    // Reservados por libro: el pico de ocupación desde hoy, como en AvailabilityCalendarService. La
+    // ocupación solo sube cuando empieza una reserva, así que alcanza con contar en hoy y en cada
+    // inicio futuro las reservas que lo cubren más las vencidas
+    private static final String FIND_DISCREPANCIES =
+            "SELECT b.external_id, b.stock_quantity, b.available_quantity, " +
+            "b.stock_quantity - COALESCE(r.reserved, 0) AS expected_available " +
+            "FROM books b LEFT JOIN (" +
+            "SELECT book_external_id, MAX(occupied) AS reserved FROM (" +
+            "SELECT p.book_external_id, p.point_date, COUNT(*) AS occupied FROM (" +
+            "SELECT DISTINCT book_external_id, GREATEST(start_date, :today) AS point_date FROM reservations " +
+            "WHERE actual_return_date IS NULL AND book_external_id BETWEEN :from AND :to) p " +
+            "JOIN reservations a ON a.book_external_id = p.book_external_id AND a.actual_return_date IS NULL " +
+            "AND a.start_date <= p.point_date " +
+            "AND (a.expected_return_date > p.point_date OR a.expected_return_date <= :today) " +
+            "GROUP BY p.book_external_id, p.point_date) o " +
+            "GROUP BY book_external_id) r ON r.book_external_id = b.external_id " +
+            "WHERE b.external_id BETWEEN :from AND :to " +
+            "AND b.available_quantity <> b.stock_quantity - COALESCE(r.reserved, 0)";
+    private static final String FIX_AVAILABLE =
+            "UPDATE books SET available_quantity = :expected, version = version + 1 " +
+            "WHERE external_id = :externalId AND available_quantity = :stored AND stock_quantity = :stock";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookCacheInvalidator bookCacheInvalidator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ForkJoinPool pool;
+    private final int partitions;
+    private final int maxReported;
+    private final boolean scheduledApply;
+
+    public StockReconciliationService(NamedParameterJdbcTemplate jdbcTemplate,
+                                      PlatformTransactionManager transactionManager,
+                                      BookCacheInvalidator bookCacheInvalidator,
+                                      ApplicationEventPublisher eventPublisher,
+                                      @Value("${reconciliation.parallelism:0}") int parallelism,
+                                      @Value("${reconciliation.partitions:64}") int partitions,
+                                      @Value("${reconciliation.max-reported:1000}") int maxReported,
+                                      @Value("${reconciliation.scheduled-apply:false}") boolean scheduledApply) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.bookCacheInvalidator = bookCacheInvalidator;
+        this.eventPublisher = eventPublisher;
+        // 0: un hilo por procesador; las consultas esperan a la base, así que puede convenir más
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.partitions = Math.max(1, partitions);
+        this.maxReported = maxReported;
+        this.scheduledApply = scheduledApply;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // Deshabilitado por defecto ("-"); se configura con reconciliation.cron
+    @Scheduled(cron = "${reconciliation.cron:-}")
+    public void scheduledReconcile() {
+        StockReconciliationResultDTO result = reconcile(scheduledApply);
+        if (result.getDiscrepancyCount() > 0) {
+            log.warn("Conciliación programada: {} libros con diferencias, {} corregidos",
+                    result.getDiscrepancyCount(), result.getFixed());
+        }
+    }
+
+    public StockReconciliationResultDTO reconcile(boolean apply) {
+        long start = System.nanoTime();
+        Map<String, Object> range = jdbcTemplate.getJdbcTemplate().queryForMap(CATALOG_RANGE);
+        long books = ((Number) range.get("books")).longValue();
+        if (books == 0) {
+            return new StockReconciliationResultDTO(0, 0, 0, 0, List.of(), false, apply, 0);
+        }
+        long min = ((Number) range.get("min_id")).longValue();
+        long max = ((Number) range.get("max_id")).longValue();
+
+        // Tramos de igual ancho sobre [min, max]; con IDs muy desparejos algunos quedan vacíos
+        long width = Math.max(1, (max - min) / partitions + 1);
+        List<Callable<PartitionResult>> tasks = new ArrayList<>();
+        for (long from = min; from <= max; from += width) {
+            long to = Math.min(max, from + width - 1);
+            long partitionFrom = from;
+            // Las consultas de los tramos cuentan en la petición que pidió la conciliación
+            tasks.add(QueryStats.propagate(() -> reconcilePartition(partitionFrom, to, apply)));
+            if (to == max) {
+                break;
+            }
+        }
+
+        List<AvailabilityDiscrepancyDTO> discrepancies = new ArrayList<>();
+        int discrepancyCount = 0;
+        int fixed = 0;
+        for (Future<PartitionResult> future : pool.invokeAll(tasks)) {
+            PartitionResult partition = result(future);
+            discrepancyCount += partition.discrepancies().size();
+            fixed += partition.fixed();
+            for (AvailabilityDiscrepancyDTO discrepancy : partition.discrepancies()) {
+                if (discrepancies.size() < maxReported) {
+                    discrepancies.add(discrepancy);
+                }
+            }
+        }
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Conciliación de stock: {} libros en {} tramos, {} con diferencias, {} corregidos en {} ms",
+                books, tasks.size(), discrepancyCount, fixed, millis);
+        return new StockReconciliationResultDTO(books, tasks.size(), discrepancyCount, fixed, discrepancies,
+                discrepancyCount > discrepancies.size(), apply, millis);
+    }
+
+    private PartitionResult reconcilePartition(long from, long to, boolean apply) {
+        MapSqlParameterSource range = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to)
+                .addValue("today", LocalDate.now());
+        List<AvailabilityDiscrepancyDTO> discrepancies = jdbcTemplate.query(FIND_DISCREPANCIES, range,
+                (rs, rowNum) -> new AvailabilityDiscrepancyDTO(
+                        rs.getLong("external_id"),
+                        rs.getInt("stock_quantity"),
+                        rs.getInt("expected_available"),
+                        rs.getInt("stock_quantity"),
+                        rs.getInt("available_quantity")));
+        if (!apply || discrepancies.isEmpty()) {
+            return new PartitionResult(discrepancies, 0);
+        }
+
+        Integer fixed = transactionTemplate.execute(status -> {
+            int[] counts = jdbcTemplate.batchUpdate(FIX_AVAILABLE, discrepancies.stream()
+                    .map(d -> new MapSqlParameterSource()
+                            .addValue("externalId", d.getExternalId())
+                            .addValue("expected", d.getExpectedAvailableQuantity())
+                            .addValue("stored", d.getStoredAvailableQuantity())
+                            .addValue("stock", d.getStoredStockQuantity()))
+                    .toArray(MapSqlParameterSource[]::new));
+            List<Long> fixedIds = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    AvailabilityDiscrepancyDTO d = discrepancies.get(i);
+                    fixedIds.add(d.getExternalId());
+                    eventPublisher.publishEvent(new StockAdjustedEvent(d.getExternalId(),
+                            d.getExpectedStockQuantity(), d.getExpectedAvailableQuantity()));
+                }
+            }
+            bookCacheInvalidator.evictAfterCommit(fixedIds);
+            return fixedIds.size();
+        });
+        return new PartitionResult(discrepancies, fixed != null ? fixed : 0);
+    }
+
+    private static PartitionResult result(Future<PartitionResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Conciliación interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private record PartitionResult(List<AvailabilityDiscrepancyDTO> discrepancies, int fixed) {
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.TrendingBookDTO;
+import com.example.libreria.event.ReservationCreatedEvent;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.util.SpaceSavingCounter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class TrendingBookService {
+
+    private final BookRepository bookRepository;
+    private final Clock clock;
+    private final long bucketMillis;
+    private final SpaceSavingCounter<Long>[] buckets;
+    private final long[] bucketEpochs;
+    // Lock explícito: un monitor en disputa bloquea también al hilo portador de un hilo virtual
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Autowired
+    public TrendingBookService(BookRepository bookRepository,
+                               @Value("${trending.window-minutes:60}") int windowMinutes,
+                               @Value("${trending.buckets:12}") int bucketCount,
+                               @Value("${trending.capacity:100}") int capacity) {
+        this(bookRepository, Clock.systemUTC(), windowMinutes, bucketCount, capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    TrendingBookService(BookRepository bookRepository, Clock clock,
+                        int windowMinutes, int bucketCount, int capacity) {
+        this.bookRepository = bookRepository;
+        this.clock = clock;
+        this.bucketMillis = Math.max(1, windowMinutes * 60_000L / bucketCount);
+        this.buckets = new SpaceSavingCounter[bucketCount];
+        this.bucketEpochs = new long[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new SpaceSavingCounter<>(capacity);
+            bucketEpochs[i] = -1;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationCreated(ReservationCreatedEvent event) {
+        recordReservation(event.bookExternalId());
+    }
+
+    public void recordReservation(Long bookExternalId) {
+        long epoch = clock.millis() / bucketMillis;
+        int index = (int) (epoch % buckets.length);
+        lock.lock();
+        try {
+            if (bucketEpochs[index] != epoch) {
+                // El bucket quedó fuera de la ventana: se recicla
+                buckets[index].clear();
+                bucketEpochs[index] = epoch;
+            }
+            buckets[index].add(bookExternalId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<TrendingBookDTO> getTrendingBooks(int limit) {
+        Map<Long, Long> counts = snapshot();
+        List<Map.Entry<Long, Long>> top = counts.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .collect(Collectors.toList());
+
+        Map<Long, Book> books = bookRepository.findAllById(top.stream().map(Map.Entry::getKey).toList()).stream()
+                .collect(Collectors.toMap(Book::getExternalId, Function.identity()));
+
+        return top.stream()
+                .filter(entry -> books.containsKey(entry.getKey()))
+                .map(entry -> new TrendingBookDTO(
+                        entry.getKey(),
+                        books.get(entry.getKey()).getTitle(),
+                        entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    private Map<Long, Long> snapshot() {
+        long currentEpoch = clock.millis() / bucketMillis;
+        Map<Long, Long> merged = new HashMap<>();
+        lock.lock();
+        try {
+            for (int i = 0; i < buckets.length; i++) {
+                if (bucketEpochs[i] < 0 || currentEpoch - bucketEpochs[i] >= buckets.length) {
+                    continue;
+                }
+                for (SpaceSavingCounter.Estimate<Long> estimate : buckets[i].estimates()) {
+                    merged.merge(estimate.key(), estimate.count(), Long::sum);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.UserImportErrorDTO;
+import com.example.libreria.dto.UserImportResultDTO;
+import com.example.libreria.dto.UserRequestDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+@Lazy
+@Slf4j
+public class UserImportService {
+
+    private static final String INSERT_USER =
+            "INSERT INTO users (name, email, phone_number, created_at) VALUES (:name, :email, :phoneNumber, :createdAt)";
+    private static final String SELECT_EXISTING_EMAILS = "SELECT email FROM users WHERE email IN (:emails)";
+
+    public enum Format { CSV, NDJSON }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final EmailFilterService emailFilterService;
+    private final int chunkSize;
+    private final int maxReportedErrors;
+
+    public UserImportService(NamedParameterJdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             Validator validator,
+                             ObjectMapper objectMapper,
+                             EmailFilterService emailFilterService,
+                             @Value("${user-import.chunk-size:1000}") int chunkSize,
+                             @Value("${user-import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.emailFilterService = emailFilterService;
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public UserImportResultDTO importUsers(InputStream body, Format format) {
+        log.info("Importando usuarios en formato {}", format);
+        ImportReport report = new ImportReport(maxReportedErrors);
+        List<Row> chunk = new ArrayList<>(chunkSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && format == Format.CSV && isCsvHeader(line))) {
+                    continue;
+                }
+                report.totalRows++;
+                try {
+                    chunk.add(new Row(lineNumber, parse(line, format)));
+                } catch (IllegalArgumentException e) {
+                    report.reject(lineNumber, null, e.getMessage());
+                }
+                if (chunk.size() >= chunkSize) {
+                    processChunk(chunk, report);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error al leer el archivo de importación", e);
+        }
+        if (!chunk.isEmpty()) {
+            processChunk(chunk, report);
+        }
+
+        log.info("Importación completada: {} filas, {} importadas, {} rechazadas",
+                report.totalRows, report.imported, report.rejected);
+        return report.toDTO();
+    }
+
+    private void processChunk(List<Row> chunk, ImportReport report) {
+        List<Row> valid = new ArrayList<>(chunk.size());
+        Set<String> seen = new HashSet<>();
+        for (Row row : chunk) {
+            Set<ConstraintViolation<UserRequestDTO>> violations = validator.validate(row.user());
+            if (!violations.isEmpty()) {
+                report.reject(row.line(), row.user().getEmail(), violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+            } else if (!seen.add(row.user().getEmail())) {
+                report.reject(row.line(), row.user().getEmail(), "Email repetido en el archivo");
+            } else {
+                valid.add(row);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        // Una sola consulta por bloque; los bloques anteriores ya están insertados, así que también
+        // detecta repetidos entre bloques sin mantener en memoria los emails del archivo completo
+        Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(SELECT_EXISTING_EMAILS,
+                new MapSqlParameterSource("emails", seen), String.class));
+        List<Row> toInsert = new ArrayList<>(valid.size());
+        for (Row row : valid) {
+            if (existing.contains(row.user().getEmail())) {
+                report.reject(row.line(), row.user().getEmail(),
+                        "Ya existe un usuario con el email: " + row.user().getEmail());
+            } else {
+                toInsert.add(row);
+            }
+        }
+        if (toInsert.isEmpty()) {
+            return;
+        }
+
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_USER,
+                    toInsert.stream().map(row -> parameters(row.user(), createdAt)).toArray(MapSqlParameterSource[]::new)));
+            toInsert.forEach(row -> emailFilterService.register(row.user().getEmail()));
+            report.imported += toInsert.size();
+        } catch (DataIntegrityViolationException e) {
+            // Otro proceso registró alguno de los emails entre la consulta y el insert: se aísla fila por fila
+            log.warn("Lote rechazado por la base de datos, reintentando fila por fila: {}", e.getMessage());
+            for (Row row : toInsert) {
+                insertSingle(row, createdAt, report);
+            }
+        }
+    }
+
+    private void insertSingle(Row row, Timestamp createdAt, ImportReport report) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT_USER, parameters(row.user(), createdAt)));
+            emailFilterService.register(row.user().getEmail());
+            report.imported++;
+        } catch (DataIntegrityViolationException e) {
+            report.reject(row.line(), row.user().getEmail(), UserService.isDuplicateEmail(e)
+                    ? "Ya existe un usuario con el email: " + row.user().getEmail()
+                    : "Fila rechazada por la base de datos");
+        }
+    }
+
+    private MapSqlParameterSource parameters(UserRequestDTO user, Timestamp createdAt) {
+        return new MapSqlParameterSource()
+                .addValue("name", user.getName())
+                .addValue("email", user.getEmail())
+                .addValue("phoneNumber", user.getPhoneNumber())
+                .addValue("createdAt", createdAt);
+    }
+
+    private UserRequestDTO parse(String line, Format format) {
+        if (format == Format.NDJSON) {
+            try {
+                return objectMapper.readValue(line, UserRequestDTO.class);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("JSON inválido: " + e.getOriginalMessage());
+            }
+        }
+        List<String> fields = splitCsv(line);
+        if (fields.size() < 2 || fields.size() > 3) {
+            throw new IllegalArgumentException("Se esperaban las columnas name,email[,phoneNumber]");
+        }
+        return new UserRequestDTO(fields.get(0), fields.get(1), fields.size() > 2 && !fields.get(2).isEmpty() ? fields.get(2) : null);
+    }
+
+    private boolean isCsvHeader(String line) {
+        return line.trim().toLowerCase(Locale.ROOT).startsWith("name,");
+    }
+
+    private List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        fields.add(current.toString().trim());
+        return fields;
+    }
+
+    private record Row(long line, UserRequestDTO user) {
+    }
+
+    private static final class ImportReport {
+        private final int maxErrors;
+        private final List<UserImportErrorDTO> errors = new ArrayList<>();
+        private long totalRows;
+        private long imported;
+        private long rejected;
+
+        private ImportReport(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        private void reject(long line, String email, String message) {
+            rejected++;
+            // El detalle se acota para que la memoria no crezca con el tamaño del archivo
+            if (errors.size() < maxErrors) {
+                errors.add(new UserImportErrorDTO(line, email, message));
+            }
+        }
+
+        private UserImportResultDTO toDTO() {
+            return new UserImportResultDTO(totalRows, imported, rejected, errors, rejected > errors.size());
+        }
+    }
+}
@@ -2,27 +2,41 @@ package com.example.libreria.service;
 
 import com.example.libreria.dto.UserRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.event.UserDeletedEvent;
+import com.example.libreria.exception.ConflictException;
+import com.example.libreria.exception.NotFoundException;
 import com.example.libreria.model.User;
+import com.example.libreria.repository.ArchivedReservationRepository;
 import com.example.libreria.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.SQLException;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "libreria.service.method", percentiles = {0.5, 0.95, 0.99})
 @RequiredArgsConstructor
 @Slf4j
 public class UserService {
     
     private final UserRepository userRepository;
+    private final EmailFilterService emailFilterService;
+    private final ArchivedReservationRepository archivedReservationRepository;
+    private final ApplicationEventPublisher eventPublisher;
     
     @Transactional
     public UserResponseDTO createUser(UserRequestDTO requestDTO) {
-        if (userRepository.existsByEmail(requestDTO.getEmail())) {
-            throw new RuntimeException("Ya existe un usuario con el email: " + requestDTO.getEmail());
+        if (emailFilterService.emailExists(requestDTO.getEmail())) {
+            throw new ConflictException("Ya existe un usuario con el email: " + requestDTO.getEmail());
         }
         
         User user = new User();
@@ -30,7 +44,17 @@ public class UserService {
         user.setEmail(requestDTO.getEmail());
         user.setPhoneNumber(requestDTO.getPhoneNumber());
         
-        User savedUser = userRepository.save(user);
+        User savedUser;
+        try {
+            savedUser = userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            // La restricción unique es la garantía final cuando el filtro descarta la consulta
+            if (!isDuplicateEmail(e)) {
+                throw e;
+            }
+            throw new ConflictException("Ya existe un usuario con el email: " + requestDTO.getEmail());
+        }
+        emailFilterService.register(savedUser.getEmail());
         log.info("Created user with id: {}", savedUser.getId());
         return convertToDTO(savedUser);
     }
@@ -38,53 +62,83 @@ public class UserService {
     @Transactional(readOnly = true)
     public UserResponseDTO getUserById(Long id) {
         User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
+                .orElseThrow(() -> new NotFoundException("Usuario no encontrado con ID: " + id));
         return convertToDTO(user);
     }
     
     @Transactional(readOnly = true)
     public List<UserResponseDTO> getAllUsers() {
         return userRepository.findAll().stream()
-                .map(this::convertToDTO)
+                .map(UserService::convertToDTO)
                 .collect(Collectors.toList());
     }
     
     @Transactional
     public UserResponseDTO updateUser(Long id, UserRequestDTO requestDTO) {
         User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
+                .orElseThrow(() -> new NotFoundException("Usuario no encontrado con ID: " + id));
         
         // Verificar si el email ya existe en otro usuario
-        if (!user.getEmail().equals(requestDTO.getEmail()) && 
-            userRepository.existsByEmail(requestDTO.getEmail())) {
-            throw new RuntimeException("Ya existe un usuario con el email: " + requestDTO.getEmail());
+        boolean emailChanged = !user.getEmail().equals(requestDTO.getEmail());
+        if (emailChanged && emailFilterService.emailExists(requestDTO.getEmail())) {
+            throw new ConflictException("Ya existe un usuario con el email: " + requestDTO.getEmail());
         }
         
         user.setName(requestDTO.getName());
         user.setEmail(requestDTO.getEmail());
         user.setPhoneNumber(requestDTO.getPhoneNumber());
         
-        User updatedUser = userRepository.save(user);
+        User updatedUser;
+        try {
+            updatedUser = userRepository.save(user);
+            userRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            if (!isDuplicateEmail(e)) {
+                throw e;
+            }
+            throw new ConflictException("Ya existe un usuario con el email: " + requestDTO.getEmail());
+        }
+        if (emailChanged) {
+            emailFilterService.register(updatedUser.getEmail());
+        }
         log.info("Updated user with id: {}", updatedUser.getId());
         return convertToDTO(updatedUser);
     }
     
     @Transactional
     public void deleteUser(Long id) {
-        if (!userRepository.existsById(id)) {
-            throw new RuntimeException("Usuario no encontrado con ID: " + id);
-        }
-        userRepository.deleteById(id);
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Usuario no encontrado con ID: " + id));
+        // La cascada borra también las reservas activas: sus libros dejan de tener esos ejemplares ocupados
+        Set<Long> activeBookExternalIds = user.getReservations().stream()
+                .filter(reservation -> reservation.getActualReturnDate() == null)
+                .map(reservation -> reservation.getBook().getExternalId())
+                .collect(Collectors.toSet());
+        // Las reservas archivadas no están en la cascada de User y referencian al usuario
+        archivedReservationRepository.deleteByUserId(id);
+        userRepository.delete(user);
+        eventPublisher.publishEvent(new UserDeletedEvent(id, activeBookExternalIds));
         log.info("Deleted user with id: {}", id);
     }
     
     @Transactional(readOnly = true)
     public User getUserEntity(Long id) {
         return userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
+                .orElseThrow(() -> new NotFoundException("Usuario no encontrado con ID: " + id));
+    }
+    
+    /** Si la violación es la de email único y no otra restricción de la tabla. */
+    static boolean isDuplicateEmail(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql && sql.getMessage() != null
+                    && sql.getMessage().toLowerCase(Locale.ROOT).contains(User.EMAIL_CONSTRAINT)) {
+                return true;
+            }
+        }
+        return false;
     }
     
-    private UserResponseDTO convertToDTO(User user) {
+    static UserResponseDTO convertToDTO(User user) {
         UserResponseDTO dto = new UserResponseDTO();
         dto.setId(user.getId());
         dto.setName(user.getName());
@@ -96,7 +150,7 @@ public class UserService {
 
     public User getUserEntityById(Long userId) {
         return userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+                .orElseThrow(() -> new NotFoundException("Usuario no encontrado"));
     }
 }
 
@@ -0,0 +1,73 @@
+package com.example.libreria.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Anillo de hash consistente con nodos virtuales. Cada nodo ocupa {@code virtualNodes} puntos
+ * del anillo y una clave pertenece al primer punto en sentido horario, así que al agregar o
+ * quitar un nodo solo cambian de dueño las claves de los tramos que ese nodo gana o pierde.
+ * Es inmutable: un cambio de miembros construye un anillo nuevo.
+ */
+public final class ConsistentHashRing {
+
+    private static final double RING_SIZE = Math.pow(2, 64);
+
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+    private final Set<String> nodes;
+
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("El anillo necesita al menos un nodo");
+        }
+        this.nodes = Collections.unmodifiableSet(new TreeSet<>(nodes));
+        // Se recorre en orden para que una colisión de puntos se resuelva igual en todas las instancias
+        for (String node : this.nodes) {
+            for (int i = 0; i < Math.max(1, virtualNodes); i++) {
+                points.putIfAbsent(BloomFilter.hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    public String owner(long key) {
+        Map.Entry<Long, String> entry = points.ceilingEntry(mix(key));
+        return entry != null ? entry.getValue() : points.firstEntry().getValue();
+    }
+
+    public Set<String> nodes() {
+        return nodes;
+    }
+
+    // Fracción del espacio de hash que le toca a cada nodo
+    public Map<String, Double> ownershipShares() {
+        Map<String, Double> shares = new HashMap<>();
+        long previous = points.lastKey();
+        boolean first = true;
+        for (Map.Entry<Long, String> point : points.entrySet()) {
+            double length = first
+                    ? RING_SIZE - ((double) previous - (double) point.getKey())
+                    : (double) point.getKey() - (double) previous;
+            shares.merge(point.getValue(), length / RING_SIZE, Double::sum);
+            previous = point.getKey();
+            first = false;
+        }
+        return shares;
+    }
+
+    // Mezcla final de MurmurHash3: los IDs consecutivos quedan repartidos por todo el anillo
+    private static long mix(long key) {
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.libreria.util;
+
+import java.util.Arrays;
+
+/**
+ * Árbol de segmentos sobre las posiciones {@code [0, size)} que suma un valor a un rango y
+ * devuelve el máximo de un rango, las dos cosas en O(log size). Los nodos se crean recién cuando
+ * un rango los toca, así que un árbol sobre muchas posiciones ocupa memoria solo donde hay datos.
+ * <p>
+ * La suma pendiente de un nodo no se baja a los hijos: cada nodo guarda lo que se sumó a su rango
+ * completo y el máximo ya incluye esa suma. Las posiciones nunca tocadas valen 0. No es seguro
+ * para uso concurrente.
+ */
+public class RangeMaxSegmentTree {
+
+    private static final int NONE = 0; // el nodo 0 es la raíz, nunca es hijo de otro
+
+    private final int size;
+    private int[] left;
+    private int[] right;
+    private int[] added;
+    private int[] max;
+    private int nodes = 1;
+
+    public RangeMaxSegmentTree(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("El tamaño debe ser positivo");
+        }
+        this.size = size;
+        this.left = new int[16];
+        this.right = new int[16];
+        this.added = new int[16];
+        this.max = new int[16];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Suma {@code delta} a cada posición de {@code [from, to)}. */
+    public void add(int from, int to, int delta) {
+        checkRange(from, to);
+        if (from < to && delta != 0) {
+            add(0, 0, size, from, to, delta);
+        }
+    }
+
+    /** Máximo de las posiciones de {@code [from, to)}; 0 si el rango está vacío. */
+    public int max(int from, int to) {
+        checkRange(from, to);
+        return from < to ? max(0, 0, size, from, to) : 0;
+    }
+
+    private void add(int node, int lo, int hi, int from, int to, int delta) {
+        if (from <= lo && hi <= to) {
+            added[node] += delta;
+            max[node] += delta;
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (from < mid) {
+            if (left[node] == NONE) {
+                int child = newNode(); // antes de indexar: newNode puede reemplazar los arreglos
+                left[node] = child;
+            }
+            add(left[node], lo, mid, from, to, delta);
+        }
+        if (to > mid) {
+            if (right[node] == NONE) {
+                int child = newNode();
+                right[node] = child;
+            }
+            add(right[node], mid, hi, from, to, delta);
+        }
+        max[node] = added[node] + Math.max(maxOf(left[node]), maxOf(right[node]));
+    }
+
+    private int max(int node, int lo, int hi, int from, int to) {
+        if (from <= lo && hi <= to) {
+            return max[node];
+        }
+        int mid = (lo + hi) >>> 1;
+        int result = Integer.MIN_VALUE;
+        if (from < mid) {
+            result = left[node] == NONE ? 0 : max(left[node], lo, mid, from, to);
+        }
+        if (to > mid) {
+            result = Math.max(result, right[node] == NONE ? 0 : max(right[node], mid, hi, from, to));
+        }
+        return added[node] + result;
+    }
+
+    private int maxOf(int node) {
+        return node == NONE ? 0 : max[node];
+    }
+
+    private int newNode() {
+        if (nodes == max.length) {
+            int capacity = nodes * 2;
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            added = Arrays.copyOf(added, capacity);
+            max = Arrays.copyOf(max, capacity);
+        }
+        return nodes++;
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Rango [" + from + ", " + to + ") fuera de [0, " + size + ")");
+        }
+    }
+}
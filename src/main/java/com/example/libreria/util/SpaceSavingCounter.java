@@ -0,0 +1,115 @@
+package com.example.libreria.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Algoritmo Space-Saving (Metwally et al.): mantiene a lo sumo {@code capacity} claves y
+ * garantiza que toda clave con frecuencia mayor a N / capacity esté presente.
+ * Los conteos pueden sobreestimar como máximo en {@code error}. No es thread-safe.
+ */
+public class SpaceSavingCounter<K> {
+
+    private final int capacity;
+    private final Map<K, Entry<K>> entries;
+    private final TreeSet<Entry<K>> byCount = new TreeSet<>(
+            Comparator.<Entry<K>>comparingLong(e -> e.count).thenComparingLong(e -> e.sequence));
+    private long sequence;
+
+    public SpaceSavingCounter(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad debe ser positiva");
+        }
+        this.capacity = capacity;
+        this.entries = new HashMap<>(capacity * 2);
+    }
+
+    public void add(K key) {
+        add(key, 1);
+    }
+
+    public void add(K key, long increment) {
+        Entry<K> entry = entries.get(key);
+        if (entry != null) {
+            byCount.remove(entry);
+            entry.count += increment;
+            byCount.add(entry);
+            return;
+        }
+        if (entries.size() < capacity) {
+            entry = new Entry<>(key, increment, 0, sequence++);
+        } else {
+            // Reemplaza la clave con menor conteo y hereda su conteo como error
+            Entry<K> min = byCount.pollFirst();
+            entries.remove(min.key);
+            entry = new Entry<>(key, min.count + increment, min.count, sequence++);
+        }
+        entries.put(key, entry);
+        byCount.add(entry);
+    }
+
+    /** Resta {@code decrement} al conteo de {@code key} y la quita si queda en cero. */
+    public void subtract(K key, long decrement) {
+        Entry<K> entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        byCount.remove(entry);
+        entry.count -= decrement;
+        if (entry.count > 0) {
+            byCount.add(entry);
+        } else {
+            entries.remove(key);
+        }
+    }
+
+    public long count(K key) {
+        Entry<K> entry = entries.get(key);
+        return entry != null ? entry.count : 0;
+    }
+
+    public List<Estimate<K>> top(int limit) {
+        List<Estimate<K>> result = new ArrayList<>(Math.min(limit, entries.size()));
+        for (Entry<K> entry : byCount.descendingSet()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(new Estimate<>(entry.key, entry.count, entry.error));
+        }
+        return result;
+    }
+
+    public List<Estimate<K>> estimates() {
+        return top(entries.size());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        byCount.clear();
+    }
+
+    public record Estimate<K>(K key, long count, long error) {
+    }
+
+    private static final class Entry<K> {
+        private final K key;
+        private long count;
+        private final long error;
+        private final long sequence;
+
+        private Entry(K key, long count, long error, long sequence) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.sequence = sequence;
+        }
+    }
+}
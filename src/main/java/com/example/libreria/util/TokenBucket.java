@@ -0,0 +1,56 @@
+package com.example.libreria.util;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cubeta de fichas: se reponen {@code ratePerSecond} fichas por segundo hasta {@code capacity}
+ * y cada pedido consume una. La capacidad es la ráfaga que se tolera después de un rato sin
+ * pedidos; a la larga no se admiten más de {@code ratePerSecond} pedidos por segundo.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final ReentrantLock lock = new ReentrantLock();
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double ratePerSecond, int capacity) {
+        this(ratePerSecond, capacity, System.nanoTime());
+    }
+
+    TokenBucket(double ratePerSecond, int capacity, long nowNanos) {
+        if (ratePerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("La tasa y la capacidad deben ser positivas");
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerSecond / 1e9;
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * Consume una ficha. Devuelve 0 si había una disponible o, si no, los nanosegundos que faltan
+     * para que se reponga.
+     */
+    public long tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    long tryAcquire(long nowNanos) {
+        lock.lock();
+        try {
+            if (nowNanos > lastRefillNanos) {
+                tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+                lastRefillNanos = nowNanos;
+            }
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPerNano);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.libreria.web;
+
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.util.TokenBucket;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Control de admisión de las reservas y devoluciones, antes de que lleguen a la base:
+ * <ol>
+ *   <li>una cubeta de fichas por usuario, para que un cliente que insiste no gaste el cupo de los demás;</li>
+ *   <li>una cubeta global que acota la tasa total de escrituras, por debajo de lo que la base atiende;</li>
+ *   <li>un tope de escrituras simultáneas: si está lleno se espera a lo sumo {@code max-queue-wait-ms}
+ *       y después se descarta, así la cola no crece y la latencia queda acotada.</li>
+ * </ol>
+ * En una devolución el usuario se busca en la base, así que su cubeta se controla al final, con el
+ * lugar ya tomado. Lo descartado responde 429 con {@code Retry-After} y se cuenta en
+ * {@code libreria.admission.shed}. En modo particionado corre después del reenvío: solo la dueña
+ * admite el pedido.
+ */
+@Component
+@ConditionalOnProperty(name = "admission.enabled", havingValue = "true")
+@Order(Ordered.HIGHEST_PRECEDENCE + 100)
+@Slf4j
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final String RESERVATIONS_PATH = "/api/reservations";
+    private static final Pattern RETURN_PATH = Pattern.compile("^/api/reservations/(\\d+)/return$");
+
+    private final ReservationRepository reservationRepository;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry registry;
+    private final double userRate;
+    private final int userBurst;
+    private final Cache<Long, TokenBucket> userBuckets;
+    private final TokenBucket globalBucket;
+    private final Semaphore permits;
+    private final long maxQueueWaitMillis;
+    private final Counter admitted;
+
+    public AdmissionControlFilter(ReservationRepository reservationRepository,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry registry,
+                                  @Value("${admission.per-user.rate-per-second:2}") double userRate,
+                                  @Value("${admission.per-user.burst:10}") int userBurst,
+                                  @Value("${admission.global.rate-per-second:80}") double globalRate,
+                                  @Value("${admission.global.burst:40}") int globalBurst,
+                                  @Value("${admission.max-concurrent:4}") int maxConcurrent,
+                                  @Value("${admission.max-queue-wait-ms:20}") long maxQueueWaitMillis,
+                                  @Value("${admission.idle-user-expiry-minutes:10}") long idleUserExpiryMinutes) {
+        this.reservationRepository = reservationRepository;
+        this.objectMapper = objectMapper;
+        this.registry = registry;
+        this.userRate = userRate;
+        this.userBurst = userBurst;
+        // Una cubeta sin uso durante ese tiempo ya está llena: descartarla equivale a crearla de nuevo
+        this.userBuckets = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(idleUserExpiryMinutes))
+                .build();
+        this.globalBucket = new TokenBucket(globalRate, globalBurst);
+        this.permits = new Semaphore(maxConcurrent);
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+
+        this.admitted = Counter.builder("libreria.admission.admitted")
+                .description("Escrituras de reservas admitidas")
+                .register(registry);
+        Gauge.builder("libreria.admission.in.flight", permits, p -> maxConcurrent - p.availablePermits())
+                .description("Escrituras de reservas en curso")
+                .register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = path(request);
+        return !"POST".equals(request.getMethod())
+                || !(RESERVATIONS_PATH.equals(path) || RETURN_PATH.matcher(path).matches());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        CachedBodyRequest cached = new CachedBodyRequest(request, request.getInputStream().readAllBytes());
+
+        // En una reserva el usuario viene en el cuerpo y se controla antes que nada, sin tocar la base
+        Matcher returnPath = RETURN_PATH.matcher(path(request));
+        if (!returnPath.matches() && !admitUser(bodyUserId(cached.getBody()), response)) {
+            return;
+        }
+        long waitNanos = globalBucket.tryAcquire();
+        if (waitNanos > 0) {
+            shed(response, "global_rate", waitNanos, "Demasiadas solicitudes de reserva, reintente más tarde");
+            return;
+        }
+
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxQueueWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            shed(response, "concurrency", TimeUnit.SECONDS.toNanos(1), "El servicio está saturado, reintente más tarde");
+            return;
+        }
+        try {
+            // En una devolución el usuario sale de la base: se busca recién con un lugar asegurado
+            if (returnPath.matches() && !admitUser(reservationRepository.findUserIdById(
+                    Long.valueOf(returnPath.group(1))).orElse(null), response)) {
+                return;
+            }
+            admitted.increment();
+            filterChain.doFilter(cached, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean admitUser(Long userId, HttpServletResponse response) throws IOException {
+        if (userId == null) {
+            return true;
+        }
+        long waitNanos = userBuckets.get(userId, id -> new TokenBucket(userRate, userBurst)).tryAcquire();
+        if (waitNanos > 0) {
+            shed(response, "user_rate", waitNanos, "Demasiadas solicitudes para el usuario " + userId);
+            return false;
+        }
+        return true;
+    }
+
+    private void shed(HttpServletResponse response, String reason, long waitNanos, String message) throws IOException {
+        registry.counter("libreria.admission.shed", "reason", reason).increment();
+        log.debug("Pedido descartado ({}): {}", reason, message);
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getOutputStream().write(objectMapper.writeValueAsBytes(Map.of("message", message)));
+    }
+
+    private Long bodyUserId(byte[] body) {
+        try {
+            JsonNode id = objectMapper.readTree(body).path("userId");
+            return id.canConvertToLong() ? id.asLong() : null;
+        } catch (IOException e) {
+            // El cuerpo inválido lo rechaza el controlador; igual pasa por la cubeta global y el tope
+            return null;
+        }
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
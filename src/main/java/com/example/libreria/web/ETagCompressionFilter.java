@@ -0,0 +1,143 @@
+package com.example.libreria.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tomcat no comprime respuestas con ETag fuerte, porque la versión comprimida y la original
+ * compartirían el mismo validador. Este filtro las comprime con gzip y les da un ETag propio
+ * (sufijo {@code -gzip}); al recibir ese ETag en {@code If-None-Match} le quita el sufijo, así
+ * los controladores solo conocen la versión sin comprimir.
+ */
+@Component
+@ConditionalOnProperty(name = "server.compression.enabled", havingValue = "true")
+public class ETagCompressionFilter extends OncePerRequestFilter {
+
+    static final String GZIP_SUFFIX = "-gzip";
+
+    private final long minResponseSize;
+
+    public ETagCompressionFilter(@Value("${server.compression.min-response-size:2KB}") DataSize minResponseSize) {
+        this.minResponseSize = minResponseSize.toBytes();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()))
+                || !acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(new StrippedETagRequest(request), wrapper);
+
+        String etag = wrapper.getHeader(HttpHeaders.ETAG);
+        if (etag == null || etag.startsWith("W/") || !etag.endsWith("\"")) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+        String gzipETag = etag.substring(0, etag.length() - 1) + GZIP_SUFFIX + "\"";
+        if (wrapper.getStatus() == HttpServletResponse.SC_NOT_MODIFIED) {
+            // El 304 debe repetir el ETag de la representación que tiene el cliente: la comprimida
+            // solo si eso es lo que validó; una respuesta chica o anterior la guardó sin comprimir
+            if (matches(request, gzipETag)) {
+                response.setHeader(HttpHeaders.ETAG, gzipETag);
+            }
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            wrapper.copyBodyToResponse();
+            return;
+        }
+        if (wrapper.getStatus() != HttpServletResponse.SC_OK || wrapper.getContentSize() < minResponseSize
+                || !isJson(wrapper.getContentType())) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(wrapper.getContentSize() / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(wrapper.getContentAsByteArray());
+        }
+        response.setHeader(HttpHeaders.ETAG, gzipETag);
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setContentLength(compressed.size());
+        if (!"HEAD".equals(request.getMethod())) {
+            compressed.writeTo(response.getOutputStream());
+        }
+    }
+
+    private static boolean matches(HttpServletRequest request, String etag) {
+        return Collections.list(request.getHeaders(HttpHeaders.IF_NONE_MATCH)).stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .anyMatch(candidate -> etag.equals(candidate.trim()));
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = coding.trim().split(";");
+            if ("gzip".equals(parts[0].trim())) {
+                return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static boolean isJson(String contentType) {
+        try {
+            return contentType != null && MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(contentType));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static final class StrippedETagRequest extends HttpServletRequestWrapper {
+
+        private StrippedETagRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            String value = super.getHeader(name);
+            return HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name) && value != null ? strip(value) : value;
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (!HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name)) {
+                return super.getHeaders(name);
+            }
+            return Collections.enumeration(Collections.list(super.getHeaders(name)).stream()
+                    .map(StrippedETagRequest::strip)
+                    .toList());
+        }
+
+        private static String strip(String value) {
+            return value.replace(GZIP_SUFFIX + "\"", "\"");
+        }
+    }
+}
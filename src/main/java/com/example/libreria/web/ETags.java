@@ -0,0 +1,83 @@
+package com.example.libreria.web;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Un ETag fuerte identifica una representación concreta: la misma versión en CBOR o Smile
+ * lleva un sufijo propio para que un cliente que cambia de formato no reciba un 304 con bytes
+ * de otro formato. Lo mismo con {@code ?fields=}: cada subconjunto de campos es otra representación.
+ * <p>
+ * El formato lo decide la negociación de Spring, así que el sufijo lo agrega
+ * {@link RepresentationETagAdvice} con el convertidor ya elegido; los controladores solo
+ * conocen la versión.
+ */
+public final class ETags {
+
+    static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+    static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    static final Map<MediaType, String> FORMAT_SUFFIXES = Map.of(CBOR, "cbor", SMILE, "smile");
+
+    static final String VERSION_ATTRIBUTE = ETags.class.getName() + ".version";
+    static final String DEFERRED_BODY_ATTRIBUTE = ETags.class.getName() + ".deferredBody";
+
+    private ETags() {
+    }
+
+    /**
+     * Respuesta condicional para la versión {@code etag}. Si {@code If-None-Match} trae esa versión
+     * en algún formato, la consulta se posterga hasta conocer el formato elegido: si coincide se
+     * responde 304 sin ejecutarla.
+     */
+    public static <T> ResponseEntity<T> conditional(String etag, WebRequest request, Supplier<T> body) {
+        request.setAttribute(VERSION_ATTRIBUTE, etag, RequestAttributes.SCOPE_REQUEST);
+        if (mentionsVersion(request.getHeaderValues(HttpHeaders.IF_NONE_MATCH), etag)) {
+            request.setAttribute(DEFERRED_BODY_ATTRIBUTE, body, RequestAttributes.SCOPE_REQUEST);
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.ok(body.get());
+    }
+
+    // Los campos ya validados y en orden canónico, así el mismo subconjunto da siempre el mismo ETag
+    public static String forFields(String etag, List<String> fields) {
+        return etag.substring(0, etag.length() - 1) + "-" + String.join(".", fields) + "\"";
+    }
+
+    static String forFormat(String etag, MediaType contentType) {
+        if (contentType != null) {
+            for (Map.Entry<MediaType, String> format : FORMAT_SUFFIXES.entrySet()) {
+                if (format.getKey().isCompatibleWith(contentType)) {
+                    return etag.substring(0, etag.length() - 1) + "-" + format.getValue() + "\"";
+                }
+            }
+        }
+        return etag;
+    }
+
+    // Comparación débil, como pide If-None-Match
+    static boolean matches(Collection<String> ifNoneMatch, String etag) {
+        return ifNoneMatch.stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(String::trim)
+                .map(candidate -> candidate.startsWith("W/") ? candidate.substring(2) : candidate)
+                .anyMatch(candidate -> "*".equals(candidate) || etag.equals(candidate));
+    }
+
+    private static boolean mentionsVersion(String[] ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        List<String> values = Arrays.asList(ifNoneMatch);
+        return matches(values, etag)
+                || FORMAT_SUFFIXES.keySet().stream().anyMatch(format -> matches(values, forFormat(etag, format)));
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.libreria.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Soporte del encabezado {@code Idempotency-Key} en reservas y devoluciones. La primera petición
+ * con una clave se ejecuta y su respuesta queda guardada {@code idempotency.ttl-minutes}; los
+ * reintentos con la misma clave reciben esa respuesta (con {@code Idempotent-Replayed: true}) sin
+ * volver a ejecutar la transacción, y los duplicados que llegan mientras la primera sigue en curso
+ * esperan su resultado. Reusar la clave con otro cuerpo responde 422.
+ * <p>
+ * Los 5xx y los 429 no se guardan: el reintento vuelve a ejecutarse. Las claves son locales a
+ * cada instancia.
+ */
+@Component
+@ConditionalOnProperty(name = "idempotency.enabled", havingValue = "true")
+@Order(Ordered.HIGHEST_PRECEDENCE + 90)
+@Slf4j
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final String RESERVATIONS_PATH = "/api/reservations";
+    private static final Pattern RETURN_PATH = Pattern.compile("^/api/reservations/(\\d+)/return$");
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Set<String> SKIPPED_HEADERS = Set.of("content-type", "content-length", "transfer-encoding", "date");
+
+    private final ObjectMapper objectMapper;
+    private final Cache<String, Execution> executions;
+    private final long waitTimeoutMillis;
+
+    public IdempotencyFilter(ObjectMapper objectMapper,
+                             @Value("${idempotency.ttl-minutes:60}") long ttlMinutes,
+                             @Value("${idempotency.max-entries:100000}") long maxEntries,
+                             @Value("${idempotency.wait-timeout-ms:10000}") long waitTimeoutMillis) {
+        this.objectMapper = objectMapper;
+        this.executions = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .maximumSize(maxEntries)
+                .build();
+        this.waitTimeoutMillis = waitTimeoutMillis;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = path(request);
+        return request.getHeader(KEY_HEADER) == null
+                || !"POST".equals(request.getMethod())
+                || !(RESERVATIONS_PATH.equals(path) || RETURN_PATH.matcher(path).matches());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String key = request.getHeader(KEY_HEADER).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpStatus.BAD_REQUEST,
+                    "El encabezado " + KEY_HEADER + " debe tener entre 1 y " + MAX_KEY_LENGTH + " caracteres");
+            return;
+        }
+        CachedBodyRequest cached = new CachedBodyRequest(request, request.getInputStream().readAllBytes());
+        String storeKey = request.getMethod() + " " + path(request) + " " + key;
+        String fingerprint = fingerprint(cached.getBody());
+
+        while (true) {
+            Execution mine = new Execution(fingerprint, new CompletableFuture<>());
+            Execution existing = executions.asMap().putIfAbsent(storeKey, mine);
+            if (existing == null) {
+                execute(cached, response, filterChain, storeKey, mine);
+                return;
+            }
+            if (!existing.fingerprint().equals(fingerprint)) {
+                reject(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                        "La clave de idempotencia " + key + " ya se usó con otra solicitud");
+                return;
+            }
+            StoredResponse stored;
+            try {
+                stored = existing.response().get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                reject(response, HttpStatus.CONFLICT,
+                        "La solicitud con la clave " + key + " todavía está en curso, reintente más tarde");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServletException(e);
+            } catch (ExecutionException e) {
+                throw new ServletException(e.getCause());
+            }
+            if (stored != null) {
+                log.debug("Se repite la respuesta guardada para la clave {}", key);
+                replay(stored, response);
+                return;
+            }
+            // La primera ejecución no dejó un resultado guardable: se vuelve a intentar
+        }
+    }
+
+    private void execute(CachedBodyRequest request, HttpServletResponse response, FilterChain filterChain,
+                         String storeKey, Execution execution) throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        StoredResponse stored = null;
+        try {
+            filterChain.doFilter(request, wrapper);
+            if (isStorable(wrapper.getStatus())) {
+                stored = store(wrapper);
+            }
+        } finally {
+            if (stored == null) {
+                executions.asMap().remove(storeKey, execution);
+            }
+            // Libera a los duplicados que esperan; con null reintentan la ejecución
+            execution.response().complete(stored);
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private static boolean isStorable(int status) {
+        return status < 500 && status != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private static StoredResponse store(ContentCachingResponseWrapper wrapper) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : wrapper.getHeaderNames()) {
+            if (!SKIPPED_HEADERS.contains(name.toLowerCase())) {
+                headers.put(name, new ArrayList<>(wrapper.getHeaders(name)));
+            }
+        }
+        return new StoredResponse(wrapper.getStatus(), wrapper.getContentType(), headers, wrapper.getContentAsByteArray());
+    }
+
+    private static void replay(StoredResponse stored, HttpServletResponse response) throws IOException {
+        response.setStatus(stored.status());
+        stored.headers().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getOutputStream().write(objectMapper.writeValueAsBytes(Map.of("message", message)));
+    }
+
+    private static String fingerprint(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private record Execution(String fingerprint, CompletableFuture<StoredResponse> response) {
+    }
+
+    private record StoredResponse(int status, String contentType, Map<String, List<String>> headers, byte[] body) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.libreria.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.function.Supplier;
+
+/**
+ * Completa las respuestas de {@link ETags#conditional}: con el tipo que eligió la negociación
+ * arma el ETag de la representación, responde 304 si el cliente ya la tiene y, si no, ejecuta
+ * la consulta postergada. {@code Vary: Accept} avisa a las cachés intermedias que el ETag
+ * depende del formato pedido.
+ */
+@ControllerAdvice
+public class RepresentationETagAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest servletRequest)) {
+            return body;
+        }
+        HttpServletRequest servlet = servletRequest.getServletRequest();
+        String version = (String) servlet.getAttribute(ETags.VERSION_ATTRIBUTE);
+        if (version == null) {
+            return body;
+        }
+        String etag = ETags.forFormat(version, selectedContentType);
+        response.getHeaders().setETag(etag);
+        response.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+
+        Supplier<?> deferred = (Supplier<?>) servlet.getAttribute(ETags.DEFERRED_BODY_ATTRIBUTE);
+        if (deferred == null) {
+            return body;
+        }
+        if (ETags.matches(request.getHeaders().getOrEmpty(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return null;
+        }
+        return deferred.get();
+    }
+}
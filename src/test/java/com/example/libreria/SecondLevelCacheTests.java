@@ -0,0 +1,108 @@
+package com.example.libreria;
+
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SecondLevelCacheTests {
+
+    private static final Long BOOK_ID = 990001L;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        Book book = new Book();
+        book.setExternalId(BOOK_ID);
+        book.setTitle("Cache Test");
+        book.setAuthorName(List.of("Autor"));
+        book.setPrice(new BigDecimal("10.00"));
+        book.setStockQuantity(5);
+        book.setAvailableQuantity(5);
+        bookRepository.save(book);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteById(BOOK_ID);
+        // El borrado deja la entrada bloqueada con la versión del libro; el siguiente alta vuelve a la versión 0
+        entityManagerFactory.getCache().evict(Book.class, BOOK_ID);
+    }
+
+    @Test
+    void testFindByExternalId_SecondLookupServedFromCache() {
+        bookService.getBookByExternalId(BOOK_ID);
+        long queriesAfterFirst = statistics.getPrepareStatementCount();
+
+        bookService.getBookByExternalId(BOOK_ID);
+
+        assertEquals(queriesAfterFirst, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getQueryCacheHitCount() > 0);
+    }
+
+    @Test
+    void testFindById_SecondLookupServedFromEntityRegion() {
+        bookRepository.findById(BOOK_ID);
+        bookRepository.findById(BOOK_ID);
+
+        assertTrue(statistics.getCacheRegionStatistics("books").getHitCount() > 0);
+    }
+
+    @Test
+    void testUpdateStock_InvalidatesCachedBook() {
+        bookService.getBookByExternalId(BOOK_ID);
+
+        bookService.updateStock(BOOK_ID, 9);
+
+        assertEquals(9, bookService.getBookByExternalId(BOOK_ID).getStockQuantity());
+    }
+
+    @Test
+    void testGetUserById_CachedAndInvalidatedOnUpdate() {
+        userService.getUserById(1L);
+        long queriesAfterFirst = statistics.getPrepareStatementCount();
+
+        userService.getUserById(1L);
+        assertEquals(queriesAfterFirst, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getCacheRegionStatistics("users").getHitCount() > 0);
+
+        String originalName = userService.getUserById(1L).getName();
+        userService.updateUser(1L, new UserRequestDTO("Nombre Cache", "juan.perez@example.com", "123456789"));
+        try {
+            assertEquals("Nombre Cache", userService.getUserById(1L).getName());
+        } finally {
+            userService.updateUser(1L, new UserRequestDTO(originalName, "juan.perez@example.com", "123456789"));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.libreria.controller;
+
+import com.example.libreria.exception.BadRequestException;
+import com.example.libreria.exception.BusinessRuleException;
+import com.example.libreria.exception.ConflictException;
+import com.example.libreria.exception.NotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class GlobalExceptionHandlerTest {
+
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new FailingController())
+            .setControllerAdvice(new GlobalExceptionHandler())
+            .build();
+
+    @Test
+    void domainErrorsMapToTheirStatus() throws Exception {
+        mockMvc.perform(get("/fail/not-found"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Libro no encontrado con ID externo: 1"));
+        mockMvc.perform(get("/fail/conflict"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("Libro no disponible. Stock actual: 0"));
+        mockMvc.perform(get("/fail/rule"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.message").value("La cantidad disponible no puede exceder el stock"));
+    }
+
+    @Test
+    void badRequestsKeepTheirMessage() throws Exception {
+        mockMvc.perform(get("/fail/bad-request"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Campo desconocido: x"));
+        mockMvc.perform(get("/fail/number/abc"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void unexpectedRuntimeExceptionsHideTheirMessage() throws Exception {
+        mockMvc.perform(get("/fail/other"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.message").value("Error interno del servidor"));
+    }
+
+    @Test
+    void domainErrorsDoNotCaptureStackTrace() {
+        assertEquals(0, new NotFoundException("x").getStackTrace().length);
+        assertEquals(0, new ConflictException("x").getStackTrace().length);
+        assertEquals(0, new BusinessRuleException("x").getStackTrace().length);
+        assertEquals(0, new BadRequestException("x").getStackTrace().length);
+    }
+
+    @RestController
+    static class FailingController {
+
+        @GetMapping("/fail/{kind}")
+        String fail(@PathVariable String kind) {
+            switch (kind) {
+                case "not-found" -> throw new NotFoundException("Libro no encontrado con ID externo: 1");
+                case "conflict" -> throw new ConflictException("Libro no disponible. Stock actual: 0");
+                case "rule" -> throw new BusinessRuleException("La cantidad disponible no puede exceder el stock");
+                case "bad-request" -> throw new BadRequestException("Campo desconocido: x");
+                default -> throw new RuntimeException("Referential integrity constraint violation: FK_BOOK");
+            }
+        }
+
+        @GetMapping("/fail/number/{value}")
+        int number(@PathVariable int value) {
+            return value;
+        }
+    }
+}
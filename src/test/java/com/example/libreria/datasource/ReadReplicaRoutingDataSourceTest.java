@@ -0,0 +1,93 @@
+package com.example.libreria.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReadReplicaRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource replicaA;
+
+    @Mock
+    private DataSource replicaB;
+
+    @Mock
+    private Connection primaryConnection;
+
+    @Mock
+    private Connection replicaConnection;
+
+    private ReplicaRouter router;
+    private ReadReplicaRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", replicaA);
+        replicas.put("replica-2", replicaB);
+        router = new ReplicaRouter(primary, replicas, null, 5000);
+        routing = new ReadReplicaRoutingDataSource(router);
+    }
+
+    @AfterEach
+    void clearTransaction() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void replicaThatFailsToConnectIsMarkedDownAndReadFallsBack() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(replicaA.getConnection()).thenThrow(new SQLException("Connection refused"));
+        when(replicaB.getConnection()).thenReturn(replicaConnection);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+
+        assertSame(primaryConnection, routing.getConnection());
+        assertFalse(router.replicas().get(0).available());
+        assertEquals("Connection refused", router.replicas().get(0).reason());
+
+        // Las siguientes lecturas ya no intentan la réplica caída
+        assertSame(replicaConnection, routing.getConnection());
+        assertSame(replicaConnection, routing.getConnection());
+        verify(replicaA, times(1)).getConnection();
+    }
+
+    @Test
+    void healthCheckRestoresRecoveredReplica() throws SQLException {
+        when(replicaA.getConnection()).thenThrow(new SQLException("Connection refused")).thenReturn(replicaConnection);
+        when(replicaB.getConnection()).thenReturn(replicaConnection);
+        when(replicaConnection.isValid(anyInt())).thenReturn(true);
+
+        router.checkHealth();
+        assertFalse(router.replicas().get(0).available());
+
+        router.checkHealth();
+        assertTrue(router.replicas().get(0).available());
+        assertNull(router.replicas().get(0).reason());
+    }
+
+    @Test
+    void connectionsOutsideReadOnlyTransactionsUsePrimary() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+
+        assertSame(primaryConnection, routing.getConnection());
+        verifyNoInteractions(replicaA, replicaB);
+    }
+}
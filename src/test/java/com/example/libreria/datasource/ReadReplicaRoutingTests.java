@@ -0,0 +1,194 @@
+package com.example.libreria.datasource;
+
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.UserRepository;
+import com.example.libreria.service.AvailabilityCalendarService;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing_primary",
+        "replicas.enabled=true",
+        "replicas.urls=jdbc:h2:mem:routing_replica_a,jdbc:h2:mem:routing_replica_b",
+        "replicas.lag-query=SELECT lag_ms FROM replica_lag",
+        "replicas.max-lag-ms=5000",
+        "replicas.health-check-interval-ms=3600000"
+})
+class ReadReplicaRoutingTests {
+
+    private static final String CURRENT_DATABASE = "SELECT DATABASE()";
+
+    @Autowired
+    private ReplicaRouter router;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private AvailabilityCalendarService availabilityCalendarService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private JdbcTemplate jdbcTemplate;
+
+    // Simula la replicación: cada réplica recibe una copia de la primaria y una tabla de retraso en 0
+    @BeforeEach
+    void replicate() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        List<String> script = new JdbcTemplate(router.primary()).queryForList("SCRIPT", String.class);
+        for (ReplicaRouter.Replica replica : router.replicas()) {
+            JdbcTemplate replicaJdbc = new JdbcTemplate(replica.dataSource());
+            replicaJdbc.execute("DROP ALL OBJECTS");
+            script.forEach(replicaJdbc::execute);
+            replicaJdbc.execute("CREATE TABLE replica_lag (lag_ms BIGINT)");
+            replicaJdbc.update("INSERT INTO replica_lag VALUES (0)");
+        }
+        router.checkHealth();
+    }
+
+    @Test
+    void readOnlyTransactionsAreSpreadAcrossReplicas() {
+        Map<String, Long> hits = readOnlyDatabases(4).stream()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+
+        assertEquals(Map.of("ROUTING_REPLICA_A", 2L, "ROUTING_REPLICA_B", 2L), hits);
+    }
+
+    @Test
+    void writesAndNonTransactionalAccessGoToPrimary() {
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        assertEquals("ROUTING_PRIMARY", readWrite.execute(status -> currentDatabase()));
+        assertEquals("ROUTING_PRIMARY", currentDatabase());
+    }
+
+    @Test
+    void serviceReadsAreServedByReplicas() {
+        String email = "replica-test@example.com";
+        userService.createUser(new UserRequestDTO("Réplica", email, null));
+
+        // La escritura fue a la primaria y todavía no se replicó
+        long usersInPrimary = new JdbcTemplate(router.primary()).queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        Boolean existsInReplica = readOnly().execute(status -> userRepository.existsByEmail(email));
+        assertEquals(Boolean.FALSE, existsInReplica);
+        // Los métodos de lectura de los repositorios también son transacciones de solo lectura
+        assertEquals(usersInPrimary - 1, userRepository.count());
+    }
+
+    // Una fila atrasada de la réplica no vuelve a la caché después de que una escritura la desalojó
+    @Test
+    void replicaReadsDoNotPopulateSecondLevelCache() {
+        Long id = userService.createUser(new UserRequestDTO("Antes", "replica-cache@example.com", null)).getId();
+        replicate();
+        new JdbcTemplate(router.primary()).update("UPDATE users SET name = 'Después' WHERE id = ?", id);
+        entityManagerFactory.getCache().evict(User.class, id);
+
+        String name = readOnly().execute(status -> userRepository.findById(id).orElseThrow().getName());
+
+        assertEquals("Antes", name);
+        assertFalse(entityManagerFactory.getCache().contains(User.class, id));
+        assertEquals("Después", new TransactionTemplate(transactionManager)
+                .execute(status -> userRepository.findById(id).orElseThrow().getName()));
+    }
+
+    // Las lecturas con ETag no salen de una réplica: el ETag ya anuncia la versión de la primaria
+    @Test
+    void readsWithETagAreServedByPrimary() {
+        new JdbcTemplate(router.primary()).update("INSERT INTO books (external_id, title, price, stock_quantity, " +
+                "available_quantity) VALUES (990501, 'Sin replicar', 10.00, 1, 1)");
+
+        assertTrue(bookService.getAllBooks().stream().anyMatch(book -> book.getExternalId() == 990501L));
+        assertTrue(bookService.getAllBooks(List.of("externalId")).stream()
+                .anyMatch(book -> Long.valueOf(990501L).equals(book.get("externalId"))));
+    }
+
+    // El calendario se arma una vez y queda en memoria: armarlo desde una réplica atrasada lo dejaría sin reservas
+    @Test
+    void availabilityCalendarIsLoadedFromPrimary() {
+        JdbcTemplate primary = new JdbcTemplate(router.primary());
+        primary.update("INSERT INTO books (external_id, title, price, stock_quantity, available_quantity) " +
+                "VALUES (990502, 'Calendario sin replicar', 10.00, 1, 0)");
+        primary.update("INSERT INTO users (name, email, created_at) " +
+                "VALUES ('Calendario', 'calendario@example.com', CURRENT_TIMESTAMP)");
+        primary.update("INSERT INTO reservations (user_id, book_external_id, rental_days, start_date, " +
+                "expected_return_date, daily_rate, total_fee, status, created_at) " +
+                "SELECT id, 990502, 7, CURRENT_DATE, DATEADD(DAY, 7, CURRENT_DATE), 10.00, 70.00, 'ACTIVE', " +
+                "CURRENT_TIMESTAMP FROM users WHERE email = 'calendario@example.com'");
+
+        LocalDate today = LocalDate.now();
+        assertEquals(0, availabilityCalendarService.getAvailability(990502L, today, today).getAvailableCopies());
+    }
+
+    @Test
+    void laggingReplicasAreSkippedAndPrimaryIsTheLastResort() {
+        replicaJdbc("ROUTING_REPLICA_B").update("UPDATE replica_lag SET lag_ms = 60000");
+        router.checkHealth();
+
+        assertEquals(List.of("ROUTING_REPLICA_A", "ROUTING_REPLICA_A", "ROUTING_REPLICA_A"), readOnlyDatabases(3));
+
+        replicaJdbc("ROUTING_REPLICA_A").update("UPDATE replica_lag SET lag_ms = 60000");
+        router.checkHealth();
+
+        assertEquals(List.of("ROUTING_PRIMARY", "ROUTING_PRIMARY"), readOnlyDatabases(2));
+        assertTrue(router.replicas().stream().noneMatch(ReplicaRouter.Replica::available));
+        assertEquals(60000, router.replicas().get(0).lagMillis());
+    }
+
+    private List<String> readOnlyDatabases(int reads) {
+        List<String> databases = new ArrayList<>();
+        for (int i = 0; i < reads; i++) {
+            databases.add(readOnly().execute(status -> currentDatabase()));
+        }
+        return databases;
+    }
+
+    private TransactionTemplate readOnly() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    private String currentDatabase() {
+        return jdbcTemplate.queryForObject(CURRENT_DATABASE, String.class);
+    }
+
+    private JdbcTemplate replicaJdbc(String database) {
+        return router.replicas().stream()
+                .map(replica -> new JdbcTemplate(replica.dataSource()))
+                .filter(template -> database.equals(template.queryForObject(CURRENT_DATABASE, String.class)))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.libreria.instrumentation;
+
+import com.example.libreria.event.BookReturnedEvent;
+import com.example.libreria.event.ReservationCreatedEvent;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LibreriaMetricsTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    private SimpleMeterRegistry registry;
+    private LibreriaMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new LibreriaMetrics(registry, bookRepository, reservationRepository);
+    }
+
+    @Test
+    void testRefreshGauges_ReadsTotalsFromDatabase() {
+        when(bookRepository.sumAvailableQuantity()).thenReturn(42L);
+        when(reservationRepository.countByStatus(Reservation.ReservationStatus.ACTIVE)).thenReturn(7L);
+
+        metrics.refreshGauges();
+
+        assertEquals(42.0, registry.get("libreria.books.available.stock").gauge().value());
+        assertEquals(7.0, registry.get("libreria.reservations.active").gauge().value());
+    }
+
+    @Test
+    void testEvents_UpdateCountersAndGauges() {
+        when(bookRepository.sumAvailableQuantity()).thenReturn(10L);
+        when(reservationRepository.countByStatus(Reservation.ReservationStatus.ACTIVE)).thenReturn(0L);
+        metrics.refreshGauges();
+
+        metrics.onReservationCreated(new ReservationCreatedEvent(1L, 1L, 258027L, LocalDate.now(), LocalDate.now().plusDays(7), -1));
+        metrics.onReservationCreated(new ReservationCreatedEvent(2L, 2L, 258027L, LocalDate.now(), LocalDate.now().plusDays(7), -1));
+        metrics.onBookReturned(new BookReturnedEvent(1L, 1L, 258027L, LocalDate.now(), new BigDecimal("4.50"), 1));
+        metrics.onBookReturned(new BookReturnedEvent(2L, 2L, 258027L, LocalDate.now(), BigDecimal.ZERO, 1));
+
+        assertEquals(2.0, registry.get("libreria.reservations.placed").counter().count());
+        assertEquals(1.0, registry.get("libreria.reservations.late.returns").counter().count());
+        assertEquals(4.5, registry.get("libreria.late.fees.charged").counter().count());
+        assertEquals(10.0, registry.get("libreria.books.available.stock").gauge().value());
+        assertEquals(0.0, registry.get("libreria.reservations.active").gauge().value());
+    }
+
+    @Test
+    void testEvents_NonOverlappingReservationKeepsAvailableStock() {
+        when(bookRepository.sumAvailableQuantity()).thenReturn(10L);
+        when(reservationRepository.countByStatus(Reservation.ReservationStatus.ACTIVE)).thenReturn(0L);
+        metrics.refreshGauges();
+
+        // La segunda reserva no se superpone con la primera: comparte su ejemplar
+        metrics.onReservationCreated(new ReservationCreatedEvent(1L, 1L, 258027L, LocalDate.now(), LocalDate.now().plusDays(7), -1));
+        metrics.onReservationCreated(new ReservationCreatedEvent(2L, 2L, 258027L, LocalDate.now().plusDays(14), LocalDate.now().plusDays(21), 0));
+        assertEquals(9.0, registry.get("libreria.books.available.stock").gauge().value());
+        assertEquals(2.0, registry.get("libreria.reservations.active").gauge().value());
+
+        metrics.onBookReturned(new BookReturnedEvent(2L, 2L, 258027L, LocalDate.now(), BigDecimal.ZERO, 0));
+        assertEquals(9.0, registry.get("libreria.books.available.stock").gauge().value());
+    }
+
+    @Test
+    void testReservationRejected_TaggedByReason() {
+        metrics.reservationRejected("not_available");
+        metrics.reservationRejected("not_available");
+        metrics.reservationRejected("book_not_found");
+
+        assertEquals(2.0, registry.get("libreria.reservations.rejected").tag("reason", "not_available").counter().count());
+        assertEquals(1.0, registry.get("libreria.reservations.rejected").tag("reason", "book_not_found").counter().count());
+    }
+
+    @Test
+    void testRecordSync() {
+        metrics.recordSync(Duration.ofMillis(250), 12);
+
+        assertEquals(1, registry.get("libreria.books.sync.duration").timer().count());
+        assertEquals(12.0, registry.get("libreria.books.sync.size").summary().totalAmount());
+    }
+
+    @Test
+    void testRefreshGauges_DatabaseErrorKeepsLastValues() {
+        when(bookRepository.sumAvailableQuantity()).thenThrow(new RuntimeException("sin conexión"));
+
+        metrics.refreshGauges();
+
+        assertEquals(0.0, registry.get("libreria.books.available.stock").gauge().value());
+    }
+}
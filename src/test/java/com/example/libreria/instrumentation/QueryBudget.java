@@ -0,0 +1,29 @@
+package com.example.libreria.instrumentation;
+
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica el presupuesto de sentencias SQL de una petición a partir de los encabezados
+ * de {@link QueryStatsFilter}. Requiere el perfil {@code debug}.
+ */
+public final class QueryBudget {
+
+    private QueryBudget() {
+    }
+
+    public static ResultMatcher atMost(int maxStatements) {
+        return result -> {
+            String statements = result.getResponse().getHeader(QueryStatsFilter.STATEMENTS_HEADER);
+            assertNotNull(statements, "La respuesta no tiene " + QueryStatsFilter.STATEMENTS_HEADER
+                    + "; ¿está activo el perfil debug?");
+            long count = Long.parseLong(statements);
+            assertTrue(count <= maxStatements, () -> String.format("%s %s ejecutó %d sentencias (%s filas, %s ms); presupuesto: %d",
+                    result.getRequest().getMethod(), result.getRequest().getRequestURI(), count,
+                    result.getResponse().getHeader(QueryStatsFilter.ROWS_HEADER),
+                    result.getResponse().getHeader(QueryStatsFilter.TIME_HEADER), maxStatements));
+        };
+    }
+}
@@ -0,0 +1,499 @@
+package com.example.libreria.instrumentation;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.ExternalBookService;
+import com.example.libreria.service.ReservationService;
+import com.example.libreria.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Conciliación en 4 tramos: su presupuesto es una consulta del rango más una por tramo
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:query_budget",
+        "reconciliation.partitions=4"})
+@AutoConfigureMockMvc
+@ActiveProfiles("debug")
+class QueryBudgetTests {
+
+    private static final AtomicInteger USERS = new AtomicInteger();
+    private static final AtomicLong ARCHIVED_IDS = new AtomicLong(9_000_000L);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @MockitoBean
+    private ExternalBookService externalBookService;
+
+    @BeforeEach
+    void setUp() {
+        when(externalBookService.fetchAllBooks()).thenAnswer(invocation -> List.of(
+                externalBook(258027L, "The Lord of the Rings"),
+                externalBook(140081L, "The Hitchhiker's Guide to the Galaxy"),
+                externalBook(90150L, "One Hundred Years of Solitude")));
+        bookService.syncBooksFromExternalApi();
+        bookService.updateStock(258027L, 1000);
+        bookService.updateStock(140081L, 1000);
+    }
+
+    // Libros
+
+    @Test
+    void syncBooks() throws Exception {
+        mockMvc.perform(post("/api/books/sync"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(8));
+    }
+
+    // Los listados con ETag suman la consulta de versión
+    @Test
+    void getAllBooks() throws Exception {
+        mockMvc.perform(get("/api/books"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(3));
+    }
+
+    // If-None-Match con la versión vigente: solo se lee la versión, no los libros
+    @Test
+    void getAllBooks_NotModified() throws Exception {
+        String etag = mockMvc.perform(get("/api/books"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/books").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    @Test
+    void getTrendingBooks() throws Exception {
+        mockMvc.perform(get("/api/books/trending"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(2));
+    }
+
+    @Test
+    void getBookByExternalId() throws Exception {
+        mockMvc.perform(get("/api/books/258027"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(2));
+    }
+
+    @Test
+    void updateStock() throws Exception {
+        mockMvc.perform(put("/api/books/90150/stock").param("stockQuantity", "5"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(3));
+    }
+
+    @Test
+    void getAllBooks_Fields() throws Exception {
+        mockMvc.perform(get("/api/books").param("fields", "externalId,title,availableQuantity"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(2));
+    }
+
+    // authorName sale de la tabla de autores: una consulta más para todos los libros
+    @Test
+    void getAllBooks_FieldsWithAuthors() throws Exception {
+        mockMvc.perform(get("/api/books").param("fields", "title,authorName"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(3));
+    }
+
+    @Test
+    void getBookByExternalId_Fields() throws Exception {
+        mockMvc.perform(get("/api/books/258027").param("fields", "title,availableQuantity"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    // Las consultas a la API externa van en paralelo; los libros se actualizan en un solo lote
+    @Test
+    void refreshBooks() throws Exception {
+        when(externalBookService.fetchBookById(258027L)).thenReturn(externalBook(258027L, "The Lord of the Rings"));
+        when(externalBookService.fetchBookById(140081L)).thenReturn(externalBook(140081L, "The Hitchhiker's Guide to the Galaxy"));
+        when(externalBookService.fetchBookById(90150L)).thenReturn(externalBook(90150L, "One Hundred Years of Solitude"));
+        mockMvc.perform(post("/api/books/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[258027,140081,90150]"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(6));
+    }
+
+    @Test
+    void getRelatedBooks() throws Exception {
+        mockMvc.perform(post("/api/books/related/rebuild"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/books/258027/related"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(2));
+    }
+
+    // Reservas y archivo: una consulta de pares por tabla, sin importar cuántos usuarios haya
+    @Test
+    void rebuildRelatedBooks() throws Exception {
+        newReservation(newUser());
+        mockMvc.perform(post("/api/books/related/rebuild"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(2));
+    }
+
+    // Libro nuevo: el presupuesto incluye armar su calendario, que después queda en memoria
+    @Test
+    void getAvailability() throws Exception {
+        jdbcTemplate.update("INSERT INTO books (external_id, title, price, stock_quantity, available_quantity) " +
+                "VALUES (990601, 'Calendario', 10.00, 1, 1)");
+        mockMvc.perform(get("/api/books/990601/availability"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(2));
+        mockMvc.perform(get("/api/books/990601/availability"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    // Un lote JDBC con todos los ajustes y una lectura de los libros resultantes
+    @Test
+    void adjustInventory() throws Exception {
+        mockMvc.perform(post("/api/books/inventory")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"externalId\":258027,\"stockDelta\":5}," +
+                                "{\"externalId\":140081,\"stockQuantity\":1200}," +
+                                "{\"externalId\":90150,\"price\":12.50}]"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(2));
+    }
+
+    @Test
+    void reconcileStock() throws Exception {
+        mockMvc.perform(post("/api/books/reconcile"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(5));
+    }
+
+    // Cada tramo con diferencias corrige en un lote JDBC
+    @Test
+    void reconcileStock_Apply() throws Exception {
+        jdbcTemplate.update("UPDATE books SET available_quantity = 0 WHERE external_id = 90150");
+        mockMvc.perform(post("/api/books/reconcile").param("apply", "true"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(6));
+    }
+
+    @Test
+    void checkExternalApiAvailability() throws Exception {
+        mockMvc.perform(get("/api/books/external/availability"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(0));
+    }
+
+    // Usuarios
+
+    @Test
+    void createUser() throws Exception {
+        mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(userJson(nextEmail())))
+                .andExpect(status().isCreated())
+                .andExpect(QueryBudget.atMost(2));
+    }
+
+    @Test
+    void importUsers() throws Exception {
+        mockMvc.perform(post("/api/users/import")
+                        .contentType("text/csv")
+                        .content("name,email\nUno,uno." + nextEmail() + "\nDos,dos." + nextEmail() + "\n"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(2));
+    }
+
+    @Test
+    void getEmailFilterStats() throws Exception {
+        mockMvc.perform(get("/api/users/email-filter/stats"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(0));
+    }
+
+    @Test
+    void getUserById() throws Exception {
+        UserResponseDTO user = newUser();
+        mockMvc.perform(get("/api/users/" + user.getId()))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    @Test
+    void getAllUsers() throws Exception {
+        mockMvc.perform(get("/api/users"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    @Test
+    void updateUser() throws Exception {
+        UserResponseDTO user = newUser();
+        mockMvc.perform(put("/api/users/" + user.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(userJson(nextEmail())))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(3));
+    }
+
+    @Test
+    void deleteUser() throws Exception {
+        UserResponseDTO user = newUser();
+        mockMvc.perform(delete("/api/users/" + user.getId()))
+                .andExpect(status().isNoContent())
+                .andExpect(QueryBudget.atMost(5));
+    }
+
+    // Con la matriz de recomendaciones armada se restan los pares del usuario en memoria: ni el borrado
+    // ni la consulta siguiente vuelven a leer el historial
+    @Test
+    void deleteUser_WithRelatedBooksLoaded() throws Exception {
+        UserResponseDTO user = newUser();
+        newReservation(user);
+        mockMvc.perform(post("/api/books/related/rebuild"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/users/" + user.getId()))
+                .andExpect(status().isNoContent())
+                .andExpect(QueryBudget.atMost(5));
+        mockMvc.perform(get("/api/books/140081/related"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(2));
+    }
+
+    // Reservas
+
+    // getUserById y getUserEntityById comparten el contexto de persistencia: una sola consulta de usuario.
+    // El libro se lee bloqueado, sin caché, y el calendario se arma desde la base en cada reserva
+    @Test
+    void createReservation() throws Exception {
+        UserResponseDTO user = newUser();
+        mockMvc.perform(post("/api/reservations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("{\"userId\":%d,\"bookExternalId\":258027,\"rentalDays\":7,\"startDate\":\"%s\"}",
+                                user.getId(), LocalDate.now())))
+                .andExpect(status().isCreated())
+                .andExpect(QueryBudget.atMost(6));
+    }
+
+    // Con la matriz de recomendaciones armada, la reserva la actualiza con los libros del usuario en
+    // memoria. El usuario ya está en la caché de segundo nivel
+    @Test
+    void createReservation_WithRelatedBooksLoaded() throws Exception {
+        UserResponseDTO user = newUser();
+        newReservation(user);
+        mockMvc.perform(post("/api/books/related/rebuild"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/reservations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("{\"userId\":%d,\"bookExternalId\":258027,\"rentalDays\":7,\"startDate\":\"%s\"}",
+                                user.getId(), LocalDate.now())))
+                .andExpect(status().isCreated())
+                .andExpect(QueryBudget.atMost(5));
+    }
+
+    @Test
+    void getReservationById() throws Exception {
+        ReservationResponseDTO reservation = newReservation(newUser());
+        mockMvc.perform(get("/api/reservations/" + reservation.getId()))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    @Test
+    void getAllReservations() throws Exception {
+        newReservation(newUser());
+        mockMvc.perform(get("/api/reservations"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    @Test
+    void getReservationsByUserId() throws Exception {
+        UserResponseDTO user = newUser();
+        newReservation(user);
+        mockMvc.perform(get("/api/reservations/user/" + user.getId()))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(3));
+    }
+
+    // El historial archivado trae usuario y libro en la misma consulta, aunque no estén en la caché
+    @Test
+    void getReservationsByUserId_WithArchivedReservations() throws Exception {
+        UserResponseDTO user = newUser();
+        newReservation(user);
+        for (long bookId : List.of(258027L, 140081L, 90150L)) {
+            jdbcTemplate.update("INSERT INTO reservations_archive (id, user_id, book_external_id, rental_days, start_date, " +
+                            "expected_return_date, actual_return_date, daily_rate, total_fee, late_fee, status, created_at, archived_at) " +
+                            "VALUES (?, ?, ?, 7, DATE '2020-01-01', DATE '2020-01-08', DATE '2020-01-08', 1.00, 7.00, 0, 'RETURNED', " +
+                            "CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)",
+                    ARCHIVED_IDS.incrementAndGet(), user.getId(), bookId);
+        }
+        entityManagerFactory.getCache().evictAll();
+        mockMvc.perform(get("/api/reservations/user/" + user.getId()))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(3));
+    }
+
+    @Test
+    void getReservationsByUserId_NotModified() throws Exception {
+        UserResponseDTO user = newUser();
+        newReservation(user);
+        String etag = mockMvc.perform(get("/api/reservations/user/" + user.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/reservations/user/" + user.getId()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    @Test
+    void getActiveReservations() throws Exception {
+        newReservation(newUser());
+        mockMvc.perform(get("/api/reservations/active"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    @Test
+    void getOverdueReservations() throws Exception {
+        mockMvc.perform(get("/api/reservations/overdue"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    @Test
+    void getReservationById_Fields() throws Exception {
+        ReservationResponseDTO reservation = newReservation(newUser());
+        mockMvc.perform(get("/api/reservations/" + reservation.getId()).param("fields", "id,userName,bookTitle"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    @Test
+    void getAllReservations_Fields() throws Exception {
+        newReservation(newUser());
+        mockMvc.perform(get("/api/reservations").param("fields", "id,status,totalFee"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    @Test
+    void getReservationsByUserId_Fields() throws Exception {
+        UserResponseDTO user = newUser();
+        newReservation(user);
+        mockMvc.perform(get("/api/reservations/user/" + user.getId()).param("fields", "status,totalFee,bookExternalId"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(3));
+    }
+
+    @Test
+    void getActiveReservations_Fields() throws Exception {
+        newReservation(newUser());
+        mockMvc.perform(get("/api/reservations/active").param("fields", "id,bookTitle"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    @Test
+    void getOverdueReservations_Fields() throws Exception {
+        mockMvc.perform(get("/api/reservations/overdue").param("fields", "id,expectedReturnDate"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    // Como al reservar, el libro se lee bloqueado y el calendario se arma desde la base
+    @Test
+    void returnBook() throws Exception {
+        ReservationResponseDTO reservation = newReservation(newUser());
+        mockMvc.perform(post("/api/reservations/" + reservation.getId() + "/return")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"returnDate\":\"" + LocalDate.now().plusDays(7) + "\"}"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(5));
+    }
+
+    @Test
+    void archiveReturnedReservations() throws Exception {
+        mockMvc.perform(post("/api/reservations/archive"))
+                .andExpect(status().isOk())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    // Caché
+
+    @Test
+    void getCacheStats() throws Exception {
+        mockMvc.perform(get("/api/cache/stats"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(QueryStatsFilter.ROWS_HEADER))
+                .andExpect(header().exists(QueryStatsFilter.TIME_HEADER))
+                .andExpect(QueryBudget.atMost(0));
+    }
+
+    private UserResponseDTO newUser() {
+        return userService.createUser(new UserRequestDTO("Usuario Presupuesto", nextEmail(), null));
+    }
+
+    private ReservationResponseDTO newReservation(UserResponseDTO user) {
+        ReservationRequestDTO request = new ReservationRequestDTO();
+        request.setUserId(user.getId());
+        request.setBookExternalId(140081L);
+        request.setRentalDays(7);
+        request.setStartDate(LocalDate.now());
+        return reservationService.createReservation(request);
+    }
+
+    private static String nextEmail() {
+        return "presupuesto" + USERS.incrementAndGet() + "@example.com";
+    }
+
+    private static String userJson(String email) {
+        return "{\"name\":\"Usuario Presupuesto\",\"email\":\"" + email + "\"}";
+    }
+
+    private static ExternalBookDTO externalBook(Long id, String title) {
+        return new ExternalBookDTO(id, true, 10, title, new ArrayList<>(List.of("Autor")), 1950, new BigDecimal("15.99"));
+    }
+}
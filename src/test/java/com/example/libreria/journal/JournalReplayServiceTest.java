@@ -0,0 +1,100 @@
+package com.example.libreria.journal;
+
+import com.example.libreria.dto.JournalReplayResultDTO;
+import com.example.libreria.event.StockAdjustedEvent;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static com.example.libreria.journal.JournalEntry.NONE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JournalReplayServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private ReservationJournal journal;
+    private JournalReplayService journalReplayService;
+    private Book testBook;
+
+    @BeforeEach
+    void setUp() {
+        journal = new ReservationJournal(directory, 4096, 16);
+        journalReplayService = new JournalReplayService(journal, bookRepository, eventPublisher);
+
+        testBook = new Book();
+        testBook.setExternalId(258027L);
+        testBook.setStockQuantity(10);
+        testBook.setAvailableQuantity(10);
+
+        journal.append(JournalEntry.Type.BOOK_SYNCED, 1L, 258027L, NONE, NONE, 10, 10);
+        journal.append(JournalEntry.Type.RESERVATION_CREATED, 2L, 258027L, 1L, 1L, 0, -1);
+        journal.append(JournalEntry.Type.RESERVATION_CREATED, 3L, 258027L, 2L, 2L, 0, -1);
+        journal.append(JournalEntry.Type.BOOK_RETURNED, 4L, 258027L, 1L, 1L, 0, 1);
+        journal.append(JournalEntry.Type.RESERVATION_CREATED, 5L, 140081L, 3L, 1L, 0, -1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    void replay_ReportsDiscrepancies() {
+        when(bookRepository.findAllById(anyCollection())).thenReturn(Arrays.asList(testBook));
+
+        JournalReplayResultDTO result = journalReplayService.replay(false);
+
+        assertEquals(5, result.getEventsReplayed());
+        assertEquals(1, result.getBooksRebuilt());
+        assertEquals(Arrays.asList(140081L), result.getBooksWithoutBaseline());
+        assertEquals(1, result.getDiscrepancies().size());
+        assertEquals(9, result.getDiscrepancies().get(0).getExpectedAvailableQuantity());
+        assertEquals(10, result.getDiscrepancies().get(0).getStoredAvailableQuantity());
+        verify(bookRepository, never()).save(any(Book.class));
+    }
+
+    @Test
+    void replay_AppliesRebuiltAvailability() {
+        when(bookRepository.findAllById(anyCollection())).thenReturn(Arrays.asList(testBook));
+
+        JournalReplayResultDTO result = journalReplayService.replay(true);
+
+        assertTrue(result.isApplied());
+        assertEquals(9, testBook.getAvailableQuantity());
+        verify(bookRepository).save(testBook);
+        verify(eventPublisher).publishEvent(any(StockAdjustedEvent.class));
+    }
+
+    @Test
+    void replay_NoDiscrepancies() {
+        testBook.setAvailableQuantity(9);
+        when(bookRepository.findAllById(anyCollection())).thenReturn(Arrays.asList(testBook));
+
+        JournalReplayResultDTO result = journalReplayService.replay(true);
+
+        assertTrue(result.getDiscrepancies().isEmpty());
+        verify(bookRepository, never()).save(any(Book.class));
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.libreria.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReservationJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void append_ReadsBackInOrder() {
+        try (ReservationJournal journal = new ReservationJournal(directory, 4096, 10)) {
+            journal.append(JournalEntry.Type.BOOK_SYNCED, 1L, 258027L, JournalEntry.NONE, JournalEntry.NONE, 10, 10);
+            journal.append(JournalEntry.Type.RESERVATION_CREATED, 2L, 258027L, 1L, 1L, 0, -1);
+
+            List<JournalEntry> entries = readAll(journal);
+
+            assertEquals(2, entries.size());
+            assertEquals(JournalEntry.Type.BOOK_SYNCED, entries.get(0).type());
+            assertEquals(10, entries.get(0).availableQuantity());
+            assertEquals(JournalEntry.Type.RESERVATION_CREATED, entries.get(1).type());
+            assertEquals(1L, entries.get(1).sequence());
+            assertEquals(-1, entries.get(1).availableQuantity());
+        }
+    }
+
+    @Test
+    void append_RollsSegmentsAndRecoversOnReopen() throws Exception {
+        int segmentSize = ReservationJournal.RECORD_SIZE * 4;
+        try (ReservationJournal journal = new ReservationJournal(directory, segmentSize, 1)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(JournalEntry.Type.STOCK_ADJUSTED, i, 258027L, JournalEntry.NONE, JournalEntry.NONE, i, i);
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(3, files.count());
+        }
+
+        try (ReservationJournal reopened = new ReservationJournal(directory, segmentSize, 1)) {
+            assertEquals(10, reopened.size());
+            long sequence = reopened.append(JournalEntry.Type.BOOK_RETURNED, 10L, 258027L, 1L, 1L, 0, 1);
+
+            List<JournalEntry> entries = readAll(reopened);
+
+            assertEquals(10L, sequence);
+            assertEquals(11, entries.size());
+            assertEquals(JournalEntry.Type.BOOK_RETURNED, entries.get(10).type());
+        }
+    }
+
+    @Test
+    void flush_BatchesForces() {
+        try (ReservationJournal journal = new ReservationJournal(directory, 1024 * 1024, 100)) {
+            for (int i = 0; i < 1000; i++) {
+                journal.append(JournalEntry.Type.RESERVATION_CREATED, i, 258027L, i, 1L, 0, -1);
+            }
+
+            assertEquals(10, journal.forceCount());
+        }
+    }
+
+    private List<JournalEntry> readAll(ReservationJournal journal) {
+        List<JournalEntry> entries = new ArrayList<>();
+        journal.forEach(entries::add);
+        return entries;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.libreria.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generador de carga de lazo abierto: las peticiones salen a intervalos fijos según la tasa
+ * configurada, sin esperar a que terminen las anteriores. Si el servidor se atrasa, las
+ * latencias lo reflejan en lugar de bajar la tasa (se evita la omisión coordinada).
+ */
+final class LoadGenerator {
+
+    interface Operation {
+
+        String name();
+
+        int weight();
+
+        /**
+         * Petición a enviar. Puede delegar en otra operación (por ejemplo, una devolución sin
+         * reservas activas se envía como reserva) devolviendo su {@link Call}.
+         */
+        Call next(Random random);
+    }
+
+    record Call(String endpoint, HttpRequest request, ResponseHandler handler) {
+    }
+
+    interface ResponseHandler {
+        void onResponse(HttpResponse<String> response);
+    }
+
+    private final HttpClient client;
+    private final List<Operation> operations;
+    private final int totalWeight;
+    private final Random random;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    LoadGenerator(HttpClient client, List<Operation> operations, long seed, int maxInFlight) {
+        this.client = client;
+        this.operations = operations;
+        this.totalWeight = operations.stream().mapToInt(Operation::weight).sum();
+        this.random = new Random(seed);
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    LoadReport run(double ratePerSecond, long durationSeconds) throws InterruptedException {
+        LoadReport report = new LoadReport(ratePerSecond);
+        long intervalNanos = (long) (1e9 / ratePerSecond);
+        long total = (long) (ratePerSecond * durationSeconds);
+        long start = System.nanoTime();
+
+        for (long i = 0; i < total; i++) {
+            long intendedStart = start + i * intervalNanos;
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            // Tope de seguridad para no agotar la memoria si el servidor deja de responder
+            if (!inFlight.tryAcquire()) {
+                report.recordDropped();
+                continue;
+            }
+            Call call = pick().next(random);
+            client.sendAsync(call.request(), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, error) -> {
+                        long latency = System.nanoTime() - intendedStart;
+                        try {
+                            report.record(call.endpoint(), latency, error == null && response.statusCode() < 400);
+                            if (response != null) {
+                                call.handler().onResponse(response);
+                            }
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+        }
+
+        // Se espera a las peticiones en curso antes de cerrar la medición
+        if (!inFlight.tryAcquire(maxInFlight, 60, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Quedaron peticiones sin respuesta después de 60 s");
+        }
+        inFlight.release(maxInFlight);
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+
+    private Operation pick() {
+        int ticket = random.nextInt(totalWeight);
+        for (Operation operation : operations) {
+            ticket -= operation.weight();
+            if (ticket < 0) {
+                return operation;
+            }
+        }
+        return operations.get(operations.size() - 1);
+    }
+}
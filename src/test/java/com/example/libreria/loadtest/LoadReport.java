@@ -0,0 +1,99 @@
+package com.example.libreria.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencias por endpoint, medidas desde el instante en que la petición debía salir
+ * según la tasa de llegada (no desde que salió), para no ocultar la espera en cola.
+ */
+final class LoadReport {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final double targetRate;
+    private volatile long durationNanos;
+
+    LoadReport(double targetRate) {
+        this.targetRate = targetRate;
+    }
+
+    void record(String endpoint, long latencyNanos, boolean success) {
+        EndpointStats stats = endpoints.computeIfAbsent(endpoint, name -> new EndpointStats());
+        stats.histogram.recordValue(Math.min(latencyNanos, MAX_LATENCY_NANOS));
+        if (!success) {
+            stats.errors.increment();
+        }
+    }
+
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    void finish(long durationNanos) {
+        this.durationNanos = durationNanos;
+    }
+
+    long totalRequests() {
+        return endpoints.values().stream().mapToLong(stats -> stats.histogram.getTotalCount()).sum();
+    }
+
+    long totalErrors() {
+        return endpoints.values().stream().mapToLong(stats -> stats.errors.sum()).sum();
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    double throughput() {
+        return totalRequests() / (durationNanos / 1e9);
+    }
+
+    void print(PrintStream out) {
+        double seconds = durationNanos / 1e9;
+        out.printf(Locale.ROOT, "%nPrueba de carga: %.1f s, tasa objetivo %.0f req/s, lograda %.1f req/s, descartadas %d%n",
+                seconds, targetRate, throughput(), dropped());
+        out.printf(Locale.ROOT, "%-36s %8s %7s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        endpoints.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(entry -> {
+            Histogram h = entry.getValue().histogram;
+            out.printf(Locale.ROOT, "%-36s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey(), h.getTotalCount(), entry.getValue().errors.sum(), h.getTotalCount() / seconds,
+                    millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+                    millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)), millis(h.getMaxValue()));
+        });
+    }
+
+    // Un archivo .hgrm por endpoint, compatible con el graficador de HdrHistogram
+    void writeHistograms(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<String, EndpointStats> entry : endpoints.entrySet()) {
+            Path file = directory.resolve(entry.getKey().replaceAll("[^A-Za-z0-9_-]", "_") + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+                entry.getValue().histogram.outputPercentileDistribution(out, 1_000_000.0);
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static final class EndpointStats {
+        private final Histogram histogram = new ConcurrentHistogram(MAX_LATENCY_NANOS, 3);
+        private final LongAdder errors = new LongAdder();
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.libreria.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba de carga HTTP. Solo corre con {@code mvn -Pload-test test}; se configura con
+ * propiedades de sistema:
+ * <ul>
+ *   <li>{@code load.rate} peticiones por segundo (200)</li>
+ *   <li>{@code load.duration-seconds} duración de la medición (30)</li>
+ *   <li>{@code load.warmup-seconds} calentamiento previo, no se reporta (10)</li>
+ *   <li>{@code load.mix} pesos por operación ({@code books:60,reserve:25,return:15})</li>
+ *   <li>{@code load.users} / {@code load.books} datos sembrados (2000 / 50)</li>
+ *   <li>{@code load.seed} semilla del generador (42)</li>
+ * </ul>
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest",
+        "spring.jpa.show-sql=false",
+        "logging.level.root=WARN",
+        "logging.level.com.example.libreria=WARN"
+})
+class ReservationLoadTest {
+
+    private static final double RATE = Double.parseDouble(System.getProperty("load.rate", "200"));
+    private static final long DURATION_SECONDS = Long.getLong("load.duration-seconds", 30);
+    private static final long WARMUP_SECONDS = Long.getLong("load.warmup-seconds", 10);
+    private static final String MIX = System.getProperty("load.mix", "books:60,reserve:25,return:15");
+    private static final int USERS = Integer.getInteger("load.users", 2000);
+    private static final int BOOKS = Integer.getInteger("load.books", 50);
+    private static final long SEED = Long.getLong("load.seed", 42);
+
+    private static final long FIRST_BOOK_ID = 700_000L;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<Long> userIds = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Long> activeReservations = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nextUser = new AtomicInteger();
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO books (external_id, title, first_publish_year, edition_count, has_fulltext, price, " +
+                        "stock_quantity, available_quantity) VALUES (?, ?, 1954, 10, true, 15.99, 1000000, 1000000)",
+                LongStream.range(0, BOOKS)
+                        .mapToObj(i -> new Object[]{FIRST_BOOK_ID + i, "Libro de carga " + i})
+                        .collect(Collectors.toList()));
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO users (name, email, phone_number, created_at) VALUES (?, ?, NULL, CURRENT_TIMESTAMP)",
+                IntStream.range(0, USERS)
+                        .mapToObj(i -> new Object[]{"Usuario de carga " + i, "carga" + i + "@example.com"})
+                        .collect(Collectors.toList()));
+        userIds.addAll(jdbcTemplate.queryForList(
+                "SELECT id FROM users WHERE email LIKE 'carga%@example.com' ORDER BY id", Long.class));
+    }
+
+    @Test
+    void sustainedReservationTraffic() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(executor)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            List<LoadGenerator.Operation> operations = operations();
+
+            if (WARMUP_SECONDS > 0) {
+                new LoadGenerator(client, operations, SEED, 10_000).run(RATE, WARMUP_SECONDS);
+            }
+            LoadReport report = new LoadGenerator(client, operations, SEED + 1, 10_000).run(RATE, DURATION_SECONDS);
+
+            report.print(System.out);
+            report.writeHistograms(Path.of("target", "loadtest"));
+
+            assertTrue(report.totalRequests() > 0);
+            assertEquals(0, report.dropped(), "El servidor no pudo absorber la tasa objetivo");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<LoadGenerator.Operation> operations() {
+        Map<String, Integer> weights = parseMix(MIX);
+        List<LoadGenerator.Operation> operations = new ArrayList<>();
+        addIfWeighted(operations, weights, "books", random -> listBooks());
+        addIfWeighted(operations, weights, "reserve", this::reserve);
+        addIfWeighted(operations, weights, "return", random -> {
+            Long reservationId = activeReservations.poll();
+            // Sin reservas activas todavía, la llegada se usa para crear una
+            return reservationId != null ? giveBack(reservationId) : reserve(random);
+        });
+        return operations;
+    }
+
+    private LoadGenerator.Call listBooks() {
+        return new LoadGenerator.Call("GET /api/books",
+                HttpRequest.newBuilder(uri("/api/books")).GET().build(),
+                response -> { });
+    }
+
+    private LoadGenerator.Call reserve(Random random) {
+        // Usuarios en ronda y libros al azar: con suficientes usuarios casi no hay reservas repetidas
+        long userId = userIds.get(Math.floorMod(nextUser.getAndIncrement(), userIds.size()));
+        long bookId = FIRST_BOOK_ID + random.nextInt(BOOKS);
+        String body = String.format("{\"userId\":%d,\"bookExternalId\":%d,\"rentalDays\":7,\"startDate\":\"%s\"}",
+                userId, bookId, LocalDate.now());
+        return new LoadGenerator.Call("POST /api/reservations",
+                HttpRequest.newBuilder(uri("/api/reservations"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                response -> {
+                    if (response.statusCode() == 201) {
+                        try {
+                            activeReservations.add(objectMapper.readTree(response.body()).get("id").asLong());
+                        } catch (Exception ignored) {
+                            // la latencia ya quedó registrada
+                        }
+                    }
+                });
+    }
+
+    private LoadGenerator.Call giveBack(long reservationId) {
+        String body = "{\"returnDate\":\"" + LocalDate.now().plusDays(7) + "\"}";
+        return new LoadGenerator.Call("POST /api/reservations/{id}/return",
+                HttpRequest.newBuilder(uri("/api/reservations/" + reservationId + "/return"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                response -> { });
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static void addIfWeighted(List<LoadGenerator.Operation> operations, Map<String, Integer> weights,
+                                      String name, Function<Random, LoadGenerator.Call> next) {
+        int weight = weights.getOrDefault(name, 0);
+        if (weight <= 0) {
+            return;
+        }
+        operations.add(new LoadGenerator.Operation() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public int weight() {
+                return weight;
+            }
+
+            @Override
+            public LoadGenerator.Call next(Random random) {
+                return next.apply(random);
+            }
+        });
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        return Arrays.stream(mix.split(","))
+                .map(part -> part.trim().split(":"))
+                .collect(Collectors.toMap(part -> part[0], part -> Integer.parseInt(part[1])));
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.libreria.loadtest;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Mide el tiempo desde que arranca el proceso hasta la primera respuesta 200 de
+ * {@code /api/books}, con el jar empaquetado en un proceso aparte. Compara el arranque normal,
+ * con Spring AOT y con AOT más el archivo AppCDS; los dos últimos solo si el jar se generó con
+ * el perfil fast-start ({@code mvn -Pfast-start package -DskipTests} y luego
+ * {@code mvn -Pload-test test -Dtest=StartupTimeTest}). Propiedades de sistema:
+ * <ul>
+ *   <li>{@code startup.runs} arranques por modo (3)</li>
+ *   <li>{@code startup.max-seconds} tope para la mediana de cada modo (60)</li>
+ * </ul>
+ */
+@Tag("load")
+class StartupTimeTest {
+
+    private static final int RUNS = Integer.getInteger("startup.runs", 3);
+    private static final long MAX_SECONDS = Long.getLong("startup.max-seconds", 60);
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(3);
+
+    private static final Path JAR = Paths.get("target", "libreria-0.0.1-SNAPSHOT.jar");
+    private static final Path WORK_DIR = Paths.get("target", "startup");
+    private static final String AOT_INITIALIZER =
+            "BOOT-INF/classes/com/example/libreria/LibreriaApplication__ApplicationContextInitializer.class";
+    private static final String JAVA = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+    private static final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    private static boolean aotProcessed;
+
+    @BeforeAll
+    static void checkJar() throws IOException {
+        assumeTrue(Files.exists(JAR), "Falta el jar: ejecutar antes mvn package");
+        try (ZipFile zip = new ZipFile(JAR.toFile())) {
+            aotProcessed = zip.getEntry(AOT_INITIALIZER) != null;
+        }
+        Files.createDirectories(WORK_DIR);
+    }
+
+    @Test
+    void firstBooksResponseWithinBudget() throws Exception {
+        Map<String, long[]> results = new LinkedHashMap<>();
+        results.put("normal", measure("normal", JAR, List.of()));
+        if (aotProcessed) {
+            results.put("aot", measure("aot", JAR, List.of("-Dspring.aot.enabled=true")));
+            Path cdsJar = trainCdsArchive();
+            results.put("aot+cds", measure("aot-cds", cdsJar, List.of(
+                    "-XX:SharedArchiveFile=" + cdsJar.resolveSibling("application.jsa"),
+                    "-Dspring.aot.enabled=true")));
+        } else {
+            System.out.println("El jar no tiene procesamiento AOT: solo se mide el arranque normal");
+        }
+
+        System.out.printf(Locale.ROOT, "%nTiempo hasta la primera respuesta de /api/books (%d arranques por modo)%n", RUNS);
+        System.out.printf(Locale.ROOT, "%-9s %9s %9s %9s%n", "modo", "min ms", "p50 ms", "max ms");
+        results.forEach((mode, millis) -> System.out.printf(Locale.ROOT, "%-9s %9d %9d %9d%n",
+                mode, millis[0], median(millis), millis[millis.length - 1]));
+
+        results.forEach((mode, millis) -> assertTrue(median(millis) <= TimeUnit.SECONDS.toMillis(MAX_SECONDS),
+                "Arranque " + mode + " por encima de " + MAX_SECONDS + " s: " + Arrays.toString(millis)));
+    }
+
+    private static long[] measure(String mode, Path jar, List<String> jvmOptions) throws Exception {
+        long[] millis = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            int port = freePort();
+            List<String> command = new ArrayList<>();
+            command.add(JAVA);
+            command.addAll(jvmOptions);
+            command.addAll(List.of("-jar", jar.toString(),
+                    "--server.port=" + port,
+                    "--spring.jpa.show-sql=false",
+                    "--logging.level.root=WARN"));
+
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(WORK_DIR.resolve(mode + "-" + run + ".log").toFile())
+                    .start();
+            try {
+                awaitBooks(process, port, start);
+                millis[run] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            } finally {
+                stop(process);
+            }
+        }
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    /**
+     * Extrae el jar (el archivo CDS necesita los jars de dependencias sueltos) y hace la corrida
+     * de entrenamiento igual que el Dockerfile.
+     */
+    private static Path trainCdsArchive() throws Exception {
+        Path dir = WORK_DIR.resolve("cds");
+        Path extractedJar = dir.resolve(JAR.getFileName());
+        Path archive = dir.resolve("application.jsa");
+        run(new ProcessBuilder(JAVA, "-Djarmode=tools", "-jar", JAR.toString(), "extract", "--force",
+                "--destination", dir.toString()), "cds-extract");
+        Files.deleteIfExists(archive);
+        run(new ProcessBuilder(JAVA, "-XX:ArchiveClassesAtExit=" + archive, "-Xlog:cds=off",
+                "-Dspring.aot.enabled=true", "-Dspring.context.exit=onRefresh",
+                "-Dspring.datasource.url=jdbc:h2:mem:cds", "-Dlogging.level.root=WARN",
+                "-jar", extractedJar.toString()), "cds-training");
+        assertTrue(Files.exists(archive), "No se generó el archivo CDS");
+        return extractedJar;
+    }
+
+    private static void run(ProcessBuilder builder, String name) throws Exception {
+        File log = WORK_DIR.resolve(name + ".log").toFile();
+        Process process = builder.redirectErrorStream(true).redirectOutput(log).start();
+        assertTrue(process.waitFor(START_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS), name + " no terminó");
+        assertEquals(0, process.exitValue(), name + " falló, ver " + log);
+    }
+
+    private static void awaitBooks(Process process, int port, long start) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/books"))
+                .timeout(Duration.ofSeconds(5))
+                .GET()
+                .build();
+        while (true) {
+            assertTrue(process.isAlive(), "La aplicación terminó antes de responder");
+            assertTrue(System.nanoTime() - start < START_TIMEOUT.toNanos(), "La aplicación no respondió a tiempo");
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Todavía no escucha
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(long[] sorted) {
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.libreria.loadtest;
+
+import com.example.libreria.dto.StockReconciliationResultDTO;
+import com.example.libreria.service.StockReconciliationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Conciliación de stock sobre un catálogo grande. Solo corre con
+ * {@code mvn -Pload-test test -Dtest=StockReconciliationLoadTest}; propiedades de sistema:
+ * <ul>
+ *   <li>{@code reconciliation.books} libros sembrados (1000000)</li>
+ *   <li>{@code reconciliation.reservations} reservas activas, repartidas entre los libros (200000)</li>
+ *   <li>{@code reconciliation.drift} libros con availableQuantity incorrecto (5000)</li>
+ *   <li>{@code reconciliation.max-seconds} tope para cada corrida (10)</li>
+ * </ul>
+ */
+@Tag("load")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reconciliation_load",
+        "spring.jpa.show-sql=false",
+        "logging.level.root=WARN",
+        "logging.level.com.example.libreria=WARN"
+})
+class StockReconciliationLoadTest {
+
+    private static final int BOOKS = Integer.getInteger("reconciliation.books", 1_000_000);
+    private static final int RESERVATIONS = Integer.getInteger("reconciliation.reservations", 200_000);
+    private static final int DRIFT = Integer.getInteger("reconciliation.drift", 5000);
+    private static final long MAX_SECONDS = Long.getLong("reconciliation.max-seconds", 10);
+
+    private static final long FIRST_BOOK_ID = 10_000_000L;
+    private static final int BATCH = 10_000;
+    private static final int STOCK = 5;
+
+    @Autowired
+    private StockReconciliationService stockReconciliationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        long start = System.nanoTime();
+        // Con las reservas activas ya descontadas, salvo los libros "desviados"
+        insert("INSERT INTO books (external_id, title, price, stock_quantity, available_quantity) VALUES (?, ?, 10.00, ?, ?)",
+                BOOKS, i -> new Object[]{FIRST_BOOK_ID + i, "Libro " + i, STOCK,
+                        STOCK - reservationsOf(i) + (i < DRIFT ? 1 : 0)});
+        jdbcTemplate.update("INSERT INTO users (name, email, created_at) VALUES ('Conciliación', 'conciliacion@example.com', CURRENT_TIMESTAMP)");
+        Long userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = 'conciliacion@example.com'", Long.class);
+        insert("INSERT INTO reservations (user_id, book_external_id, rental_days, start_date, expected_return_date, " +
+                        "daily_rate, late_fee, status, created_at) " +
+                        "VALUES (?, ?, 7, CURRENT_DATE, DATEADD(DAY, 7, CURRENT_DATE), 1.00, 0, 'ACTIVE', CURRENT_TIMESTAMP)",
+                RESERVATIONS, i -> new Object[]{userId, FIRST_BOOK_ID + bookOf(i)});
+        System.out.printf(Locale.ROOT, "Sembrados %d libros y %d reservas en %d ms%n",
+                BOOKS, RESERVATIONS, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Test
+    void reconcileLargeCatalogWithinBudget() {
+        StockReconciliationResultDTO report = stockReconciliationService.reconcile(false);
+        print("informe", report);
+        assertEquals(BOOKS, report.getBooksChecked());
+        assertEquals(DRIFT, report.getDiscrepancyCount());
+
+        StockReconciliationResultDTO fix = stockReconciliationService.reconcile(true);
+        print("corrección", fix);
+        assertEquals(DRIFT, fix.getFixed());
+
+        StockReconciliationResultDTO check = stockReconciliationService.reconcile(false);
+        print("verificación", check);
+        assertEquals(0, check.getDiscrepancyCount());
+
+        for (StockReconciliationResultDTO result : List.of(report, fix, check)) {
+            assertTrue(result.getDurationMillis() <= TimeUnit.SECONDS.toMillis(MAX_SECONDS),
+                    "Conciliación por encima de " + MAX_SECONDS + " s: " + result.getDurationMillis() + " ms");
+        }
+    }
+
+    // Las reservas se reparten en ronda entre los primeros libros
+    private static int bookOf(int reservation) {
+        return reservation % Math.min(BOOKS, RESERVATIONS);
+    }
+
+    private static int reservationsOf(int book) {
+        int covered = Math.min(BOOKS, RESERVATIONS);
+        return book < covered ? RESERVATIONS / covered + (book < RESERVATIONS % covered ? 1 : 0) : 0;
+    }
+
+    private void insert(String sql, int rows, IntFunction<Object[]> row) {
+        for (int from = 0; from < rows; from += BATCH) {
+            List<Object[]> batch = new ArrayList<>(BATCH);
+            for (int i = from; i < Math.min(rows, from + BATCH); i++) {
+                batch.add(row.apply(i));
+            }
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+    }
+
+    private static void print(String run, StockReconciliationResultDTO result) {
+        System.out.printf(Locale.ROOT, "%-13s %8d libros  %3d tramos  %6d diferencias  %6d corregidos  %6d ms%n",
+                run, result.getBooksChecked(), result.getPartitions(), result.getDiscrepancyCount(),
+                result.getFixed(), result.getDurationMillis());
+    }
+}
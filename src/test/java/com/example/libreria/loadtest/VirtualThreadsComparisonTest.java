@@ -0,0 +1,186 @@
+package com.example.libreria.loadtest;
+
+import com.example.libreria.LibreriaApplication;
+import com.sun.net.httpserver.HttpServer;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compara el throughput de la aplicación con hilos de plataforma y con el perfil
+ * {@code virtual-threads} cuando cada petición queda bloqueada en una llamada lenta a la
+ * API externa. Usa un lazo cerrado: {@code load.concurrency} clientes que envían la siguiente
+ * petición apenas reciben la respuesta. Requiere Java 21 ({@code mvn -Pjava21,load-test test
+ * -Dtest=VirtualThreadsComparisonTest}); propiedades de sistema:
+ * <ul>
+ *   <li>{@code load.concurrency} clientes simultáneos (1000)</li>
+ *   <li>{@code load.external-delay-ms} demora de la API externa simulada (1000)</li>
+ *   <li>{@code load.duration-seconds} / {@code load.warmup-seconds} medición y calentamiento por modo (20 / 5)</li>
+ *   <li>{@code load.platform-threads} hilos de Tomcat en el modo de plataforma (200)</li>
+ * </ul>
+ */
+@Tag("load")
+class VirtualThreadsComparisonTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 1000);
+    private static final long EXTERNAL_DELAY_MS = Long.getLong("load.external-delay-ms", 1000);
+    private static final long DURATION_SECONDS = Long.getLong("load.duration-seconds", 20);
+    private static final long WARMUP_SECONDS = Long.getLong("load.warmup-seconds", 5);
+    private static final int PLATFORM_THREADS = Integer.getInteger("load.platform-threads", 200);
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private HttpServer externalApi;
+    private ExecutorService externalApiExecutor;
+
+    @BeforeEach
+    void startExternalApi() throws IOException {
+        externalApiExecutor = Executors.newCachedThreadPool();
+        externalApi = HttpServer.create(new InetSocketAddress("localhost", 0), CONCURRENCY);
+        externalApi.setExecutor(externalApiExecutor);
+        externalApi.createContext("/books", exchange -> {
+            try {
+                Thread.sleep(EXTERNAL_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "[]".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        externalApi.start();
+    }
+
+    @AfterEach
+    void stopExternalApi() {
+        externalApi.stop(0);
+        externalApiExecutor.shutdownNow();
+    }
+
+    @Test
+    void virtualThreadsSustainMoreBlockingRequests() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "Los hilos virtuales requieren Java 21");
+
+        Result platform = measure("plataforma", false);
+        Result virtual = measure("virtuales", true);
+
+        System.out.printf(Locale.ROOT, "%nHilos de plataforma vs. virtuales: %d clientes, API externa con %d ms de demora%n",
+                CONCURRENCY, EXTERNAL_DELAY_MS);
+        System.out.printf(Locale.ROOT, "%-12s %9s %7s %9s %9s %9s %9s%n",
+                "hilos", "count", "errors", "req/s", "p50 ms", "p99 ms", "max ms");
+        platform.print();
+        virtual.print();
+
+        assertTrue(platform.count() > 0 && virtual.count() > 0);
+        assertEquals(0, platform.errors(), "Errores con hilos de plataforma");
+        assertEquals(0, virtual.errors(), "Errores con hilos virtuales");
+    }
+
+    private Result measure(String mode, boolean virtualThreads) throws Exception {
+        String externalUrl = "http://localhost:" + externalApi.getAddress().getPort() + "/books";
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(LibreriaApplication.class)
+                .run(
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:virtual_threads_" + virtualThreads,
+                        "--spring.jpa.show-sql=false",
+                        "--spring.profiles.active=" + (virtualThreads ? "virtual-threads" : "default"),
+                        "--server.tomcat.threads.max=" + PLATFORM_THREADS,
+                        "--server.tomcat.max-connections=" + (CONCURRENCY * 2),
+                        "--external.api.books.url=" + externalUrl,
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.example.libreria=WARN")) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + "/api/books/external/availability");
+            ExecutorService clientExecutor = Executors.newFixedThreadPool(8);
+            try {
+                HttpClient client = HttpClient.newBuilder()
+                        .executor(clientExecutor)
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(10))
+                        .build();
+                if (WARMUP_SECONDS > 0) {
+                    run(mode, client, uri, WARMUP_SECONDS);
+                }
+                return run(mode, client, uri, DURATION_SECONDS);
+            } finally {
+                clientExecutor.shutdownNow();
+            }
+        }
+    }
+
+    // Cada cliente encadena su siguiente petición en el callback de la anterior, sin ocupar un hilo mientras espera
+    private Result run(String mode, HttpClient client, URI uri, long seconds) throws InterruptedException {
+        Histogram histogram = new ConcurrentHistogram(MAX_LATENCY_NANOS, 3);
+        LongAdder errors = new LongAdder();
+        CountDownLatch finished = new CountDownLatch(CONCURRENCY);
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).GET().build();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+
+        for (int i = 0; i < CONCURRENCY; i++) {
+            new Runnable() {
+                @Override
+                public void run() {
+                    long sent = System.nanoTime();
+                    if (sent >= deadline) {
+                        finished.countDown();
+                        return;
+                    }
+                    client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, failure) -> {
+                        histogram.recordValue(Math.min(System.nanoTime() - sent, MAX_LATENCY_NANOS));
+                        // La API externa siempre responde: un "false" indica que la llamada no llegó a tiempo
+                        if (failure != null || response.statusCode() != 200 || !response.body().contains("\"available\":true")) {
+                            errors.increment();
+                        }
+                        this.run();
+                    });
+                }
+            }.run();
+        }
+
+        assertTrue(finished.await(seconds + 120, TimeUnit.SECONDS), "Los clientes no terminaron a tiempo");
+        return new Result(mode, histogram, errors.sum(), System.nanoTime() - start);
+    }
+
+    private record Result(String mode, Histogram histogram, long errors, long durationNanos) {
+
+        long count() {
+            return histogram.getTotalCount();
+        }
+
+        void print() {
+            System.out.printf(Locale.ROOT, "%-12s %9d %7d %9.1f %9.2f %9.2f %9.2f%n",
+                    mode, count(), errors, count() / (durationNanos / 1e9),
+                    histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                    histogram.getMaxValue() / 1e6);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.libreria.partition;
+
+import com.example.libreria.dto.ClusterMemberDTO;
+import com.example.libreria.dto.ClusterViewDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterMembershipTest {
+
+    private ClusterMembership membership;
+
+    @BeforeEach
+    void setUp() {
+        membership = new ClusterMembership(new RestTemplate(), "node-a", "http://localhost:8081",
+                new String[0], 16, 60_000);
+        membership.onHeartbeat(new ClusterViewDTO("node-b",
+                List.of(new ClusterMemberDTO("node-b", "http://127.0.0.1:8082/", System.currentTimeMillis())),
+                Map.of()));
+    }
+
+    @Test
+    void isMemberAddress_MatchesAddressOfKnownMember() {
+        assertTrue(membership.isMemberAddress("node-b", "127.0.0.1"));
+    }
+
+    @Test
+    void isMemberAddress_RejectsOtherAddressOrUnknownMember() {
+        assertFalse(membership.isMemberAddress("node-b", "10.1.2.3"));
+        assertFalse(membership.isMemberAddress("node-c", "127.0.0.1"));
+        assertFalse(membership.isMemberAddress("node-b", null));
+    }
+
+    @Test
+    void view_ListsOnlyMembersTheRingDistributes() {
+        ClusterViewDTO view = membership.view();
+
+        assertEquals(2, view.getMembers().size());
+        assertEquals(view.getOwnershipShares().keySet(),
+                Set.copyOf(view.getMembers().stream().map(ClusterMemberDTO::getNodeId).toList()));
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.libreria.partition;
+
+import com.example.libreria.LibreriaApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Dos instancias en puertos locales sobre la misma base H2: node-a reenvía a la dueña y
+ * node-b redirige con 307. node-b conoce a node-a solo como semilla.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class PartitionedClusterTests {
+
+    private static final long FIRST_BOOK_ID = 910_000L;
+    private static final int BOOKS = 20;
+    private static final String SECRET = "secreto-del-cluster";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+    private static long userId;
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = start("node-a", "forward", "", true);
+        nodeB = start("node-b", "redirect", url(nodeA), false);
+
+        JdbcTemplate jdbcTemplate = nodeA.getBean(JdbcTemplate.class);
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO books (external_id, title, first_publish_year, edition_count, has_fulltext, price, " +
+                        "stock_quantity, available_quantity) VALUES (?, ?, 1954, 10, true, 15.99, 100, 100)",
+                LongStream.range(0, BOOKS)
+                        .mapToObj(i -> new Object[]{FIRST_BOOK_ID + i, "Libro particionado " + i})
+                        .collect(Collectors.toList()));
+        userId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Long.class);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeB != null && nodeB.isActive()) {
+            nodeB.close();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+    }
+
+    @Test
+    @Order(1)
+    void membershipConvergesAndNodesAgreeOnOwners() throws Exception {
+        await(() -> membership(nodeA).view().getMembers().size() == 2
+                && membership(nodeB).view().getMembers().size() == 2);
+
+        JsonNode view = objectMapper.readTree(get(nodeA, "/api/cluster/members").body());
+        assertEquals(2, view.get("members").size());
+        assertEquals(1.0, view.get("ownershipShares").get("node-a").asDouble()
+                + view.get("ownershipShares").get("node-b").asDouble(), 1e-9);
+
+        for (long id = FIRST_BOOK_ID; id < FIRST_BOOK_ID + BOOKS; id++) {
+            assertEquals(membership(nodeA).owner(id).getNodeId(), membership(nodeB).owner(id).getNodeId());
+        }
+        assertFalse(booksOwnedBy("node-a").isEmpty());
+        assertFalse(booksOwnedBy("node-b").isEmpty());
+        // Ninguna instancia guarda libros en una caché que no ve las escrituras de la otra
+        for (ConfigurableApplicationContext node : List.of(nodeA, nodeB)) {
+            assertFalse(node.getBean(EntityManagerFactory.class).unwrap(SessionFactoryImplementor.class)
+                    .getSessionFactoryOptions().isSecondLevelCacheEnabled());
+        }
+    }
+
+    @Test
+    @Order(2)
+    void nonOwnerForwardsReserveAndReturnToOwner() throws Exception {
+        long remoteBook = booksOwnedBy("node-b").get(0);
+        double admittedByA = admitted(nodeA);
+        double admittedByB = admitted(nodeB);
+
+        HttpResponse<String> created = post(nodeA, "/api/reservations", reservation(remoteBook));
+        assertEquals(201, created.statusCode(), created.body());
+        assertEquals("node-b", created.headers().firstValue(PartitionRoutingFilter.OWNER_HEADER).orElseThrow());
+        // El control de admisión se aplica solo en la dueña
+        assertEquals(admittedByA, admitted(nodeA));
+        assertEquals(admittedByB + 1, admitted(nodeB));
+
+        long reservationId = objectMapper.readTree(created.body()).get("id").asLong();
+        HttpResponse<String> returned = post(nodeA, "/api/reservations/" + reservationId + "/return",
+                "{\"returnDate\":\"" + LocalDate.now().plusDays(3) + "\"}");
+        assertEquals(200, returned.statusCode(), returned.body());
+        assertEquals("node-b", returned.headers().firstValue(PartitionRoutingFilter.OWNER_HEADER).orElseThrow());
+
+        // Los errores de la dueña llegan tal cual
+        HttpResponse<String> rejected = post(nodeA, "/api/reservations/" + reservationId + "/return",
+                "{\"returnDate\":\"" + LocalDate.now().plusDays(3) + "\"}");
+        assertEquals(409, rejected.statusCode());
+        assertTrue(rejected.body().contains("ya fue devuelta"));
+    }
+
+    @Test
+    @Order(3)
+    void forwardedResponseKeepsEncodingHeaders() throws Exception {
+        long remoteBook = booksOwnedBy("node-b").get(0);
+        String path = "/api/books/" + remoteBook + "/availability?from=" + LocalDate.now()
+                + "&to=" + LocalDate.now().plusDays(200);
+
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(url(nodeA) + path))
+                        .header("Accept-Encoding", "gzip")
+                        .GET()
+                        .build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(200, response.statusCode());
+        assertEquals("node-b", response.headers().firstValue(PartitionRoutingFilter.OWNER_HEADER).orElseThrow());
+        // El cuerpo se decodifica según el Content-Encoding que llega al cliente, sea cual sea
+        byte[] body = response.body();
+        if ("gzip".equals(response.headers().firstValue("Content-Encoding").orElse(null))) {
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = gzip.readAllBytes();
+            }
+        }
+        assertEquals(remoteBook, objectMapper.readTree(body).get("externalId").asLong());
+    }
+
+    @Test
+    @Order(4)
+    void ownerHandlesItsBooksLocallyAndRedirectModeAnswers307() throws Exception {
+        long localBook = booksOwnedBy("node-a").get(0);
+
+        HttpResponse<String> local = post(nodeA, "/api/reservations", reservation(localBook));
+        assertEquals(201, local.statusCode(), local.body());
+        assertEquals("node-a", local.headers().firstValue(PartitionRoutingFilter.OWNER_HEADER).orElseThrow());
+
+        long otherLocalBook = booksOwnedBy("node-a").get(1);
+        HttpResponse<String> redirected = post(nodeB, "/api/reservations", reservation(otherLocalBook));
+        assertEquals(307, redirected.statusCode());
+        assertEquals(url(nodeA) + "/api/reservations", redirected.headers().firstValue("Location").orElseThrow());
+    }
+
+    @Test
+    @Order(5)
+    void clientCannotSkipRoutingWithForwardedHeader() throws Exception {
+        long remoteBook = booksOwnedBy("node-a").get(2);
+
+        HttpResponse<String> spoofed = client.send(HttpRequest.newBuilder(URI.create(url(nodeB) + "/api/reservations"))
+                        .header("Content-Type", "application/json")
+                        .header(PartitionRoutingFilter.FORWARDED_BY_HEADER, "node-a")
+                        .header(PartitionRoutingFilter.SECRET_HEADER, "adivinado")
+                        .POST(HttpRequest.BodyPublishers.ofString(reservation(remoteBook)))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        // Sin el secreto la marca no cuenta: node-b no escribe un libro de node-a
+        assertEquals(307, spoofed.statusCode(), spoofed.body());
+        assertEquals("node-a", spoofed.headers().firstValue(PartitionRoutingFilter.OWNER_HEADER).orElseThrow());
+    }
+
+    @Test
+    @Order(6)
+    void ownershipRebalancesWhenNodeLeaves() {
+        nodeB.close();
+
+        await(() -> membership(nodeA).view().getMembers().size() == 1);
+        for (long id = FIRST_BOOK_ID; id < FIRST_BOOK_ID + BOOKS; id++) {
+            assertTrue(membership(nodeA).isLocal(id));
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String nodeId, String routing, String seeds, boolean initData) {
+        return new SpringApplicationBuilder(LibreriaApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:partitioned;DB_CLOSE_DELAY=-1",
+                "--spring.sql.init.mode=" + (initData ? "always" : "never"),
+                "--spring.jpa.show-sql=false",
+                "--partitioning.enabled=true",
+                "--partitioning.node-id=" + nodeId,
+                "--partitioning.routing=" + routing,
+                "--partitioning.seeds=" + seeds,
+                "--partitioning.heartbeat-interval-ms=200",
+                "--partitioning.failure-timeout-ms=1500",
+                "--partitioning.secret=" + SECRET,
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.libreria=WARN");
+    }
+
+    private static ClusterMembership membership(ConfigurableApplicationContext node) {
+        return node.getBean(ClusterMembership.class);
+    }
+
+    private static double admitted(ConfigurableApplicationContext node) {
+        return node.getBean(MeterRegistry.class).counter("libreria.admission.admitted").count();
+    }
+
+    private static List<Long> booksOwnedBy(String nodeId) {
+        List<Long> owned = new ArrayList<>();
+        for (long id = FIRST_BOOK_ID; id < FIRST_BOOK_ID + BOOKS; id++) {
+            if (membership(nodeA).owner(id).getNodeId().equals(nodeId)) {
+                owned.add(id);
+            }
+        }
+        return owned;
+    }
+
+    private static String reservation(long bookExternalId) {
+        return String.format("{\"userId\":%d,\"bookExternalId\":%d,\"rentalDays\":7,\"startDate\":\"%s\"}",
+                userId, bookExternalId, LocalDate.now());
+    }
+
+    private static String url(ConfigurableApplicationContext node) {
+        return "http://localhost:" + ((WebServerApplicationContext) node).getWebServer().getPort();
+    }
+
+    private static HttpResponse<String> get(ConfigurableApplicationContext node, String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(url(node) + path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<String> post(ConfigurableApplicationContext node, String path, String body)
+            throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(url(node) + path))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "La condición no se cumplió a tiempo");
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookAvailabilityDTO;
+import com.example.libreria.event.UserDeletedEvent;
+import com.example.libreria.exception.BusinessRuleException;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvailabilityCalendarServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 1, 15);
+    private static final long BOOK_ID = 258027L;
+    private static final long TTL_MILLIS = 30_000;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    // Reservas activas confirmadas en la base, vistas por cualquier instancia
+    private final List<Object[]> committed = new ArrayList<>();
+    private final MutableClock clock = new MutableClock(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC));
+    private AvailabilityCalendarService calendarService;
+
+    @BeforeEach
+    void setUp() {
+        calendarService = calendarService();
+        lenient().when(reservationRepository.findActivePeriodsByBookExternalId(BOOK_ID))
+                .thenAnswer(invocation -> new ArrayList<>(committed));
+    }
+
+    @Test
+    void reserve_FutureReservationDoesNotBlockEarlierDays() {
+        commit(TODAY.plusDays(30), TODAY.plusDays(37));
+
+        assertTrue(reserve(1, TODAY, TODAY.plusDays(7)));
+        // El único ejemplar ya está tomado las dos semanas
+        assertFalse(reserve(1, TODAY.plusDays(5), TODAY.plusDays(12)));
+        assertFalse(reserve(1, TODAY.plusDays(20), TODAY.plusDays(31)));
+        assertTrue(reserve(1, TODAY.plusDays(7), TODAY.plusDays(30)));
+    }
+
+    @Test
+    void reserve_ReturnsCopiesReservedFromToday() {
+        commit(TODAY, TODAY.plusDays(7));
+
+        assertEquals(1, calendarService.reserve(BOOK_ID, 2, TODAY.plusDays(14), TODAY.plusDays(21)).getAsInt());
+        assertEquals(2, calendarService.reserve(BOOK_ID, 2, TODAY.plusDays(3), TODAY.plusDays(10)).getAsInt());
+    }
+
+    @Test
+    void reserve_SeesReservationsCommittedByOtherInstances() {
+        AvailabilityCalendarService otherInstance = calendarService();
+        assertTrue(calendarService.reserve(BOOK_ID, 1, TODAY.plusDays(3), TODAY.plusDays(10)).isPresent());
+
+        // La reserva no está confirmada todavía; cuando lo está, la otra instancia la ve
+        assertTrue(otherInstance.reserve(BOOK_ID, 1, TODAY.plusDays(5), TODAY.plusDays(8)).isPresent());
+        commit(TODAY.plusDays(3), TODAY.plusDays(10));
+        assertTrue(otherInstance.reserve(BOOK_ID, 1, TODAY.plusDays(5), TODAY.plusDays(8)).isEmpty());
+    }
+
+    @Test
+    void release_FreesTheReservedDays() {
+        assertTrue(reserve(1, TODAY.plusDays(3), TODAY.plusDays(10)));
+
+        calendarService.release(BOOK_ID, TODAY.plusDays(3), TODAY.plusDays(10));
+        committed.clear();
+
+        assertTrue(reserve(1, TODAY.plusDays(5), TODAY.plusDays(8)));
+    }
+
+    @Test
+    void reserve_OverdueReservationKeepsCopyOccupied() {
+        // Debía volver ayer y sigue sin devolverse
+        commit(TODAY.minusDays(10), TODAY.minusDays(1));
+
+        assertFalse(reserve(1, TODAY.plusDays(60), TODAY.plusDays(67)));
+        assertTrue(reserve(2, TODAY.plusDays(60), TODAY.plusDays(67)));
+    }
+
+    @Test
+    void reserved_IsPeakOccupancyFromToday() {
+        commit(TODAY.minusDays(10), TODAY.minusDays(1));
+        commit(TODAY, TODAY.plusDays(7));
+        commit(TODAY.plusDays(14), TODAY.plusDays(21));
+
+        // La vencida más una de las dos que no se superponen
+        assertEquals(2, calendarService.reserved(BOOK_ID));
+        assertEquals(1, calendarService.release(BOOK_ID, TODAY.minusDays(10), TODAY.minusDays(1)));
+    }
+
+    @Test
+    void onUserDeleted_ReloadsCalendarOfItsActiveReservations() {
+        commit(TODAY, TODAY.plusDays(7));
+        when(bookRepository.findByExternalId(BOOK_ID)).thenReturn(Optional.of(book(1)));
+        assertEquals(0, calendarService.getAvailability(BOOK_ID, TODAY, TODAY.plusDays(3)).getAvailableCopies());
+
+        committed.clear();
+        calendarService.onUserDeleted(new UserDeletedEvent(1L, Set.of(BOOK_ID)));
+
+        assertEquals(1, calendarService.getAvailability(BOOK_ID, TODAY, TODAY.plusDays(3)).getAvailableCopies());
+    }
+
+    @Test
+    void getAvailability_ReloadsCalendarAfterTtl() {
+        when(bookRepository.findByExternalId(BOOK_ID)).thenReturn(Optional.of(book(1)));
+        assertEquals(1, calendarService.getAvailability(BOOK_ID, TODAY, TODAY.plusDays(3)).getAvailableCopies());
+
+        // Reservada por otra instancia: se ve cuando vence el calendario en memoria
+        commit(TODAY, TODAY.plusDays(7));
+        assertEquals(1, calendarService.getAvailability(BOOK_ID, TODAY, TODAY.plusDays(3)).getAvailableCopies());
+        clock.advance(TTL_MILLIS);
+        assertEquals(0, calendarService.getAvailability(BOOK_ID, TODAY, TODAY.plusDays(3)).getAvailableCopies());
+    }
+
+    @Test
+    void getAvailability_ReportsFreeCopiesPerDay() {
+        commit(TODAY.plusDays(1), TODAY.plusDays(3));
+        commit(TODAY.plusDays(2), TODAY.plusDays(4));
+        when(bookRepository.findByExternalId(BOOK_ID)).thenReturn(Optional.of(book(2)));
+
+        BookAvailabilityDTO availability = calendarService.getAvailability(BOOK_ID, TODAY, TODAY.plusDays(4));
+
+        assertEquals(2, availability.getStockQuantity());
+        assertEquals(0, availability.getAvailableCopies());
+        assertEquals(List.of(2, 1, 0, 1, 2), availability.getDays().stream()
+                .map(day -> day.getAvailableCopies())
+                .toList());
+        assertEquals(TODAY.plusDays(4), availability.getDays().get(4).getDate());
+    }
+
+    @Test
+    void getAvailability_RejectsInvalidRanges() {
+        when(bookRepository.findByExternalId(BOOK_ID)).thenReturn(Optional.of(book(1)));
+
+        assertThrows(BusinessRuleException.class,
+                () -> calendarService.getAvailability(BOOK_ID, TODAY.minusDays(1), TODAY));
+        assertThrows(BusinessRuleException.class,
+                () -> calendarService.getAvailability(BOOK_ID, TODAY.plusDays(2), TODAY));
+        assertThrows(BusinessRuleException.class,
+                () -> calendarService.getAvailability(BOOK_ID, TODAY, TODAY.plusDays(366)));
+    }
+
+    private AvailabilityCalendarService calendarService() {
+        return new AvailabilityCalendarService(reservationRepository, bookRepository, clock, 366, TTL_MILLIS);
+    }
+
+    // Reserva y, si hay lugar, la confirma como lo haría la transacción del llamador
+    private boolean reserve(int stock, LocalDate start, LocalDate expectedReturn) {
+        boolean reserved = calendarService.reserve(BOOK_ID, stock, start, expectedReturn).isPresent();
+        if (reserved) {
+            commit(start, expectedReturn);
+        }
+        return reserved;
+    }
+
+    private void commit(LocalDate start, LocalDate expectedReturn) {
+        committed.add(new Object[]{start, expectedReturn});
+    }
+
+    private static Book book(int stock) {
+        Book book = new Book();
+        book.setExternalId(BOOK_ID);
+        book.setStockQuantity(stock);
+        return book;
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(long millis) {
+            instant = instant.plusMillis(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
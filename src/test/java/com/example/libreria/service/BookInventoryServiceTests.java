@@ -0,0 +1,140 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.InventoryAdjustmentDTO;
+import com.example.libreria.dto.InventoryAdjustmentItemDTO;
+import com.example.libreria.dto.InventoryAdjustmentResultDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class BookInventoryServiceTests {
+
+    private static final Long SHIPPED_ID = 990101L;
+    private static final Long RESERVED_ID = 990102L;
+    private static final Long MISSING_ID = 990199L;
+
+    @Autowired
+    private BookInventoryService bookInventoryService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @BeforeEach
+    void setUp() {
+        bookRepository.save(book(SHIPPED_ID, 5, 5));
+        // 3 ejemplares reservados
+        bookRepository.save(book(RESERVED_ID, 5, 2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAllById(List.of(SHIPPED_ID, RESERVED_ID));
+    }
+
+    @Test
+    void adjust_AppliesAbsoluteAndDeltaChangesKeepingReservations() {
+        InventoryAdjustmentResultDTO result = bookInventoryService.adjust(List.of(
+                new InventoryAdjustmentDTO(SHIPPED_ID, null, 20, new BigDecimal("12.50")),
+                new InventoryAdjustmentDTO(RESERVED_ID, 8, null, null)));
+
+        assertEquals(2, result.getUpdated());
+        assertEquals(0, result.getRejected());
+        assertItem(result.getResults().get(0), InventoryAdjustmentItemDTO.Status.UPDATED, 25, 25);
+        assertEquals(new BigDecimal("12.50"), result.getResults().get(0).getPrice());
+        assertItem(result.getResults().get(1), InventoryAdjustmentItemDTO.Status.UPDATED, 8, 5);
+
+        Book reserved = bookRepository.findById(RESERVED_ID).orElseThrow();
+        assertEquals(8, reserved.getStockQuantity());
+        assertEquals(5, reserved.getAvailableQuantity());
+    }
+
+    @Test
+    void adjust_RejectsStockBelowReservedWithoutAffectingOthers() {
+        InventoryAdjustmentResultDTO result = bookInventoryService.adjust(List.of(
+                new InventoryAdjustmentDTO(RESERVED_ID, 2, null, null),
+                new InventoryAdjustmentDTO(RESERVED_ID, null, -3, null),
+                new InventoryAdjustmentDTO(SHIPPED_ID, null, -5, null)));
+
+        assertEquals(1, result.getUpdated());
+        assertEquals(2, result.getRejected());
+        assertItem(result.getResults().get(0), InventoryAdjustmentItemDTO.Status.REJECTED, 5, 2);
+        assertEquals("No se puede reducir el stock por debajo de los libros reservados: 3",
+                result.getResults().get(0).getMessage());
+        assertItem(result.getResults().get(1), InventoryAdjustmentItemDTO.Status.REJECTED, 5, 2);
+        assertItem(result.getResults().get(2), InventoryAdjustmentItemDTO.Status.UPDATED, 0, 0);
+    }
+
+    @Test
+    void adjust_ReportsInvalidAndUnknownBooks() {
+        InventoryAdjustmentResultDTO result = bookInventoryService.adjust(Arrays.asList(
+                new InventoryAdjustmentDTO(MISSING_ID, 3, null, null),
+                new InventoryAdjustmentDTO(SHIPPED_ID, 3, 1, null),
+                new InventoryAdjustmentDTO(SHIPPED_ID, -1, null, null),
+                new InventoryAdjustmentDTO(SHIPPED_ID, null, null, null),
+                new InventoryAdjustmentDTO(null, 3, null, null)));
+
+        assertEquals(0, result.getUpdated());
+        assertEquals(5, result.getRejected());
+        assertEquals(InventoryAdjustmentItemDTO.Status.NOT_FOUND, result.getResults().get(0).getStatus());
+        assertEquals("Indicar stockQuantity o stockDelta, no ambos", result.getResults().get(1).getMessage());
+        assertEquals("El stock no puede ser negativo", result.getResults().get(2).getMessage());
+        assertEquals("El ajuste no modifica stock ni precio", result.getResults().get(3).getMessage());
+        assertEquals("El ID externo del libro es obligatorio", result.getResults().get(4).getMessage());
+    }
+
+    @Test
+    void adjust_EvictsUpdatedBooksFromSecondLevelCache() {
+        assertEquals(5, bookService.getBookByExternalId(SHIPPED_ID).getStockQuantity());
+
+        bookInventoryService.adjust(List.of(new InventoryAdjustmentDTO(SHIPPED_ID, 9, null, null)));
+
+        assertEquals(9, bookService.getBookByExternalId(SHIPPED_ID).getStockQuantity());
+        assertEquals(9, bookService.getBookByExternalId(SHIPPED_ID).getAvailableQuantity());
+    }
+
+    @Test
+    void adjust_StaleEntityWriteFailsInsteadOfRevertingIt() {
+        Book stale = bookRepository.findById(SHIPPED_ID).orElseThrow();
+
+        bookInventoryService.adjust(List.of(new InventoryAdjustmentDTO(SHIPPED_ID, 9, null, null)));
+        stale.setPrice(new BigDecimal("11.00"));
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> bookRepository.save(stale));
+        Book current = bookRepository.findById(SHIPPED_ID).orElseThrow();
+        assertEquals(9, current.getStockQuantity());
+        assertEquals(new BigDecimal("10.00"), current.getPrice());
+    }
+
+    private static void assertItem(InventoryAdjustmentItemDTO item, InventoryAdjustmentItemDTO.Status status,
+                                   int stockQuantity, int availableQuantity) {
+        assertEquals(status, item.getStatus());
+        assertEquals(stockQuantity, item.getStockQuantity());
+        assertEquals(availableQuantity, item.getAvailableQuantity());
+    }
+
+    private static Book book(Long externalId, int stockQuantity, int availableQuantity) {
+        Book book = new Book();
+        book.setExternalId(externalId);
+        book.setTitle("Inventario " + externalId);
+        book.setAuthorName(List.of("Autor"));
+        book.setPrice(new BigDecimal("10.00"));
+        book.setStockQuantity(stockQuantity);
+        book.setAvailableQuantity(availableQuantity);
+        return book;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookRefreshResultDTO;
+import com.example.libreria.dto.ExternalBookDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.task.SimpleAsyncTaskExecutorBuilder;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookRefreshServiceTest {
+
+    @Mock
+    private ExternalBookService externalBookService;
+
+    @Mock
+    private BookService bookService;
+
+    @Test
+    void fetchesConcurrentlyInsteadOfSequentially() {
+        when(externalBookService.fetchBookById(anyLong())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return book(invocation.getArgument(0));
+        });
+        when(bookService.upsertExternalBooks(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+
+        BookRefreshResultDTO result = service(100, 10_000).refresh(ids(100));
+
+        // En secuencia serían 20 s
+        assertTrue(result.getElapsedMillis() < 5_000, "Demoró " + result.getElapsedMillis() + " ms");
+        assertEquals(100, result.getRefreshed());
+        assertEquals(100, result.getCreated());
+        assertTrue(result.getErrors().isEmpty());
+    }
+
+    @Test
+    void neverExceedsConfiguredParallelism() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(externalBookService.fetchBookById(anyLong())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            inFlight.decrementAndGet();
+            return book(invocation.getArgument(0));
+        });
+
+        BookRefreshResultDTO result = service(4, 10_000).refresh(ids(40));
+
+        assertEquals(40, result.getRefreshed());
+        assertTrue(maxInFlight.get() <= 4, "Hubo " + maxInFlight.get() + " consultas simultáneas");
+    }
+
+    @Test
+    void concurrentRequestsShareTheThreadCap() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(externalBookService.fetchBookById(anyLong())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            inFlight.decrementAndGet();
+            return book(invocation.getArgument(0));
+        });
+        BookRefreshService service = service(8, 6, 10_000);
+
+        List<CompletableFuture<BookRefreshResultDTO>> requests = IntStream.range(0, 4)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> service.refresh(ids(40))))
+                .toList();
+
+        for (CompletableFuture<BookRefreshResultDTO> request : requests) {
+            assertEquals(40, request.get().getRefreshed());
+        }
+        assertTrue(maxInFlight.get() <= 6, "Hubo " + maxInFlight.get() + " consultas simultáneas");
+    }
+
+    @Test
+    void isolatesFailuresPerBook() {
+        when(externalBookService.fetchBookById(anyLong())).thenAnswer(invocation -> {
+            long id = invocation.getArgument(0);
+            if (id == 2L) {
+                throw new RuntimeException("Error al obtener el libro de la API externa: 404");
+            }
+            return id == 3L ? null : book(id);
+        });
+
+        BookRefreshResultDTO result = service(8, 10_000).refresh(ids(4));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ExternalBookDTO>> upserted = ArgumentCaptor.forClass(List.class);
+        verify(bookService).upsertExternalBooks(upserted.capture());
+        assertEquals(List.of(1L, 4L), upserted.getValue().stream().map(ExternalBookDTO::getId).toList());
+        assertEquals(2, result.getRefreshed());
+        assertEquals(2, result.getFailed());
+        assertEquals(0, result.getTimedOut());
+        assertEquals(List.of(2L, 3L), result.getErrors().stream().map(error -> error.getExternalId()).toList());
+    }
+
+    @Test
+    void reportsBooksWithoutResponseWithinDeadline() {
+        when(externalBookService.fetchBookById(anyLong())).thenAnswer(invocation -> {
+            long id = invocation.getArgument(0);
+            if (id == 1L) {
+                Thread.sleep(5_000);
+            }
+            return book(id);
+        });
+
+        BookRefreshResultDTO result = service(8, 300).refresh(ids(3));
+
+        assertTrue(result.getElapsedMillis() < 2_000, "Demoró " + result.getElapsedMillis() + " ms");
+        assertEquals(2, result.getRefreshed());
+        assertEquals(1, result.getTimedOut());
+        assertEquals(1L, result.getErrors().get(0).getExternalId());
+    }
+
+    @Test
+    void deduplicatesIdsAndRejectsOversizedBatches() {
+        when(externalBookService.fetchBookById(anyLong())).thenAnswer(invocation -> book(invocation.getArgument(0)));
+
+        BookRefreshResultDTO result = service(8, 10_000).refresh(List.of(7L, 7L, 8L));
+
+        assertEquals(2, result.getRequested());
+        verify(externalBookService, times(2)).fetchBookById(anyLong());
+        BookRefreshService limited = new BookRefreshService(externalBookService, bookService,
+                new SimpleAsyncTaskExecutorBuilder(), 8, 64, 10_000, 10, false);
+        assertThrows(RuntimeException.class, () -> limited.refresh(ids(11)));
+        verify(bookService, times(1)).upsertExternalBooks(any());
+    }
+
+    private BookRefreshService service(int parallelism, long deadlineMillis) {
+        return service(parallelism, 64, deadlineMillis);
+    }
+
+    private BookRefreshService service(int parallelism, int maxThreads, long deadlineMillis) {
+        return new BookRefreshService(externalBookService, bookService, new SimpleAsyncTaskExecutorBuilder(),
+                parallelism, maxThreads, deadlineMillis, 1000, false);
+    }
+
+    private static List<Long> ids(int count) {
+        return LongStream.rangeClosed(1, count).boxed().collect(Collectors.toList());
+    }
+
+    private static ExternalBookDTO book(long id) {
+        ExternalBookDTO book = new ExternalBookDTO();
+        book.setId(id);
+        book.setTitle("Libro " + id);
+        return book;
+    }
+}
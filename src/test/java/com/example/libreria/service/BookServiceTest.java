@@ -2,6 +2,8 @@ package com.example.libreria.service;
 
 import com.example.libreria.dto.BookResponseDTO;
 import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.exception.BusinessRuleException;
+import com.example.libreria.instrumentation.LibreriaMetrics;
 import com.example.libreria.model.Book;
 import com.example.libreria.repository.BookRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,6 +12,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
@@ -18,6 +21,7 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,6 +33,15 @@ public class BookServiceTest {
     @Mock
     private ExternalBookService externalBookService;
     
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private LibreriaMetrics metrics;
+
+    @Mock
+    private AvailabilityCalendarService availabilityCalendar;
+    
     @InjectMocks
     private BookService bookService;
     
@@ -59,6 +72,7 @@ public class BookServiceTest {
         bookService.syncBooksFromExternalApi();
         
         verify(bookRepository, times(1)).save(any(Book.class));
+        verify(metrics).recordSync(any(), eq(1));
     }
     
     @Test
@@ -72,6 +86,21 @@ public class BookServiceTest {
         verify(bookRepository, times(1)).save(any(Book.class));
     }
     
+    @Test
+    void testUpsertExternalBooks_CountsCreated() {
+        ExternalBookDTO newBook = new ExternalBookDTO();
+        newBook.setId(999L);
+        newBook.setTitle("Nuevo");
+        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.findByExternalId(999L)).thenReturn(Optional.empty());
+        
+        int created = bookService.upsertExternalBooks(List.of(externalBookDTO, newBook));
+        
+        assertEquals(1, created);
+        verify(bookRepository, times(2)).save(any(Book.class));
+        verify(eventPublisher, times(2)).publishEvent(any(Object.class));
+    }
+    
     @Test
     void testGetAllBooks() {
         Book book2 = new Book();
@@ -108,12 +137,14 @@ public class BookServiceTest {
     
     @Test
     void testUpdateStock_Success() {
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.findForUpdateByExternalId(258027L)).thenReturn(Optional.of(testBook));
         when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        when(availabilityCalendar.reserved(258027L)).thenReturn(5);
         
         BookResponseDTO result = bookService.updateStock(258027L, 20);
         
         assertNotNull(result);
+        assertEquals(15, result.getAvailableQuantity());
         verify(bookRepository, times(1)).save(any(Book.class));
     }
     
@@ -122,9 +153,10 @@ public class BookServiceTest {
         testBook.setStockQuantity(10);
         testBook.setAvailableQuantity(5); // 5 reservados
         
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.findForUpdateByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(availabilityCalendar.reserved(258027L)).thenReturn(5);
         
-        assertThrows(RuntimeException.class, () -> {
+        assertThrows(BusinessRuleException.class, () -> {
             bookService.updateStock(258027L, 3); // Menos que los reservados
         });
     }
@@ -0,0 +1,87 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.EmailFilterStatsDTO;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailFilterServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private EmailFilterService emailFilterService;
+
+    @BeforeEach
+    void setUp() {
+        emailFilterService = new EmailFilterService(userRepository, 1000, 0.01);
+    }
+
+    @Test
+    void emailExists_BeforeRebuildQueriesDatabase() {
+        when(userRepository.existsByEmail("juan@example.com")).thenReturn(true);
+
+        assertTrue(emailFilterService.emailExists("juan@example.com"));
+        verify(userRepository).existsByEmail("juan@example.com");
+    }
+
+    @Test
+    void emailExists_DefiniteMissSkipsQuery() {
+        rebuildWith("juan@example.com", "maria@example.com");
+
+        assertFalse(emailFilterService.emailExists("nuevo@example.com"));
+        verify(userRepository, never()).existsByEmail(anyString());
+        assertEquals(1, emailFilterService.getStats().getDefiniteMisses());
+    }
+
+    @Test
+    void emailExists_PossibleHitConfirmsWithDatabase() {
+        rebuildWith("juan@example.com");
+        when(userRepository.existsByEmail("juan@example.com")).thenReturn(true);
+
+        assertTrue(emailFilterService.emailExists("juan@example.com"));
+
+        EmailFilterStatsDTO stats = emailFilterService.getStats();
+        assertEquals(1, stats.getDatabaseChecks());
+        assertEquals(0, stats.getFalsePositives());
+    }
+
+    @Test
+    void register_AddsEmailToFilter() {
+        rebuildWith();
+        emailFilterService.register("ana@example.com");
+        when(userRepository.existsByEmail("ana@example.com")).thenReturn(true);
+
+        assertTrue(emailFilterService.emailExists("ana@example.com"));
+        assertEquals(1, emailFilterService.getStats().getInsertions());
+    }
+
+    @Test
+    void getStats_CountsFalsePositives() {
+        rebuildWith("juan@example.com");
+        // Tras un cambio de email el valor anterior sigue en el filtro: la base de datos lo desmiente
+        when(userRepository.existsByEmail("juan@example.com")).thenReturn(false);
+
+        assertFalse(emailFilterService.emailExists("juan@example.com"));
+
+        EmailFilterStatsDTO stats = emailFilterService.getStats();
+        assertEquals(1, stats.getFalsePositives());
+        assertEquals(1.0, stats.getObservedFalsePositiveRate());
+    }
+
+    private void rebuildWith(String... emails) {
+        when(userRepository.count()).thenReturn((long) emails.length);
+        when(userRepository.streamAllEmails()).thenReturn(Stream.of(emails));
+        emailFilterService.rebuild();
+    }
+}
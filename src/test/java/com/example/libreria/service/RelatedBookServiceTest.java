@@ -0,0 +1,153 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.RelatedBookDTO;
+import com.example.libreria.event.UserDeletedEvent;
+import com.example.libreria.exception.NotFoundException;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.ArchivedReservationRepository;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RelatedBookServiceTest {
+
+    private static final long LOTR = 258027L;
+    private static final long HOBBIT = 140081L;
+    private static final long DUNE = 90150L;
+    private static final long EMMA = 1001L;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private ArchivedReservationRepository archivedReservationRepository;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private RelatedBookService relatedBookService;
+
+    @BeforeEach
+    void setUp() {
+        relatedBookService = new RelatedBookService(reservationRepository, archivedReservationRepository, bookRepository, 10);
+    }
+
+    @Test
+    void getRelatedBooks_BuildsFromHistoryOnFirstRead() {
+        // Usuarios 1 y 2 reservaron LOTR y El Hobbit; el 2 además Dune (archivada)
+        when(reservationRepository.findUserBookPairs())
+                .thenReturn(rows(pair(1L, LOTR), pair(1L, HOBBIT), pair(2L, LOTR), pair(3L, EMMA)));
+        when(archivedReservationRepository.findUserBookPairs())
+                .thenReturn(rows(pair(2L, HOBBIT), pair(2L, DUNE)));
+        when(bookRepository.existsByExternalId(LOTR)).thenReturn(true);
+        when(bookRepository.findAllById(anyList())).thenReturn(Arrays.asList(book(HOBBIT), book(DUNE)));
+
+        List<RelatedBookDTO> related = relatedBookService.getRelatedBooks(LOTR, 5);
+
+        assertEquals(2, related.size());
+        assertEquals(HOBBIT, related.get(0).getExternalId());
+        assertEquals(2L, related.get(0).getSharedUsers());
+        assertEquals(DUNE, related.get(1).getExternalId());
+        assertEquals(1L, related.get(1).getSharedUsers());
+    }
+
+    @Test
+    void recordReservation_UpdatesBothBooksIncrementally() {
+        rebuild(rows(pair(7L, DUNE)), rows(pair(7L, EMMA)));
+
+        relatedBookService.recordReservation(7L, LOTR);
+
+        assertEquals(List.of(EMMA, DUNE), relatedIds(LOTR));
+        assertEquals(List.of(EMMA, LOTR), relatedIds(DUNE));
+        // Los libros del usuario quedaron en memoria al reconstruir
+        verify(reservationRepository).findUserBookPairs();
+        verifyNoMoreInteractions(reservationRepository, archivedReservationRepository);
+    }
+
+    @Test
+    void recordReservation_IgnoresBookTheUserAlreadyReserved() {
+        rebuild(rows(pair(7L, LOTR), pair(7L, DUNE)), rows());
+
+        relatedBookService.recordReservation(7L, LOTR);
+
+        assertEquals(List.of(DUNE), relatedIds(LOTR));
+        assertEquals(1L, relatedBookService.getRelatedBooks(LOTR, 5).get(0).getSharedUsers());
+    }
+
+    @Test
+    void recordReservation_SkipsUntilFirstBuild() {
+        relatedBookService.recordReservation(7L, LOTR);
+
+        verifyNoInteractions(reservationRepository, archivedReservationRepository);
+    }
+
+    @Test
+    void onUserDeleted_SubtractsItsPairsWithoutRebuilding() {
+        rebuild(rows(pair(1L, LOTR), pair(1L, HOBBIT), pair(2L, LOTR), pair(2L, DUNE)),
+                rows(pair(2L, HOBBIT)));
+
+        relatedBookService.onUserDeleted(new UserDeletedEvent(2L, Set.of()));
+
+        assertEquals(List.of(HOBBIT), relatedIds(LOTR));
+        assertEquals(1L, relatedBookService.getRelatedBooks(LOTR, 5).get(0).getSharedUsers());
+        assertEquals(List.of(), relatedIds(DUNE));
+        verify(reservationRepository, times(1)).findUserBookPairs();
+    }
+
+    @Test
+    void getRelatedBooks_UnknownBook() {
+        when(bookRepository.existsByExternalId(LOTR)).thenReturn(false);
+
+        assertThrows(NotFoundException.class, () -> relatedBookService.getRelatedBooks(LOTR, 5));
+    }
+
+    private void rebuild(List<Object[]> reservations, List<Object[]> archived) {
+        when(reservationRepository.findUserBookPairs()).thenReturn(reservations);
+        when(archivedReservationRepository.findUserBookPairs()).thenReturn(archived);
+        relatedBookService.rebuild();
+    }
+
+    private List<Long> relatedIds(long bookExternalId) {
+        when(bookRepository.existsByExternalId(bookExternalId)).thenReturn(true);
+        when(bookRepository.findAllById(anyList())).thenAnswer(invocation -> {
+            List<Book> books = new ArrayList<>();
+            for (Object id : (List<?>) invocation.getArgument(0)) {
+                books.add(book((Long) id));
+            }
+            return books;
+        });
+        return relatedBookService.getRelatedBooks(bookExternalId, 5).stream()
+                .map(RelatedBookDTO::getExternalId)
+                .sorted()
+                .toList();
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+
+    private static Object[] pair(long first, long second) {
+        return new Object[]{first, second};
+    }
+
+    private static Book book(long externalId) {
+        Book book = new Book();
+        book.setExternalId(externalId);
+        book.setTitle("Libro " + externalId);
+        return book;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.libreria.service;
+
+import com.example.libreria.repository.ArchivedReservationRepository;
+import com.example.libreria.repository.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationArchiveServiceTest {
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private ArchivedReservationRepository archivedReservationRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ReservationArchiveService reservationArchiveService;
+
+    @BeforeEach
+    void setUp() {
+        reservationArchiveService = new ReservationArchiveService(reservationRepository,
+                archivedReservationRepository, transactionManager, 90, 2);
+    }
+
+    @Test
+    void archiveReturnedReservations_MovesInBatches() {
+        LocalDate cutoff = LocalDate.now().minusDays(90);
+        when(reservationRepository.lockReturnedIdsBefore(cutoff, 2))
+                .thenReturn(Arrays.asList(1L, 2L))
+                .thenReturn(Arrays.asList(3L))
+                .thenReturn(Collections.emptyList());
+        when(reservationRepository.deleteByIdIn(Arrays.asList(1L, 2L))).thenReturn(2);
+        when(reservationRepository.deleteByIdIn(Arrays.asList(3L))).thenReturn(1);
+
+        int archived = reservationArchiveService.archiveReturnedReservations();
+
+        assertEquals(3, archived);
+        verify(archivedReservationRepository).copyFromReservations(eq(Arrays.asList(1L, 2L)), any(LocalDateTime.class));
+        verify(archivedReservationRepository).copyFromReservations(eq(Arrays.asList(3L)), any(LocalDateTime.class));
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void archiveReturnedReservations_NothingToArchive() {
+        when(reservationRepository.lockReturnedIdsBefore(any(LocalDate.class), anyInt()))
+                .thenReturn(Collections.emptyList());
+
+        int archived = reservationArchiveService.archiveReturnedReservations();
+
+        assertEquals(0, archived);
+        verify(archivedReservationRepository, never()).copyFromReservations(any(), any());
+        verify(reservationRepository, never()).deleteByIdIn(any());
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Base propia: el archivado recorre todas las reservas devueltas
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reservation_archive",
+        "reservations.archive.batch-size=3"})
+class ReservationArchiveServiceTests {
+
+    private static final Long BOOK_ID = 990401L;
+    private static final int RESERVATIONS = 30;
+
+    @Autowired
+    private ReservationArchiveService reservationArchiveService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentRuns_ArchiveEachReservationOnce() throws Exception {
+        bookRepository.save(book());
+        for (int i = 0; i < RESERVATIONS; i++) {
+            Long userId = userService.createUser(new UserRequestDTO("Usuario Archivo",
+                    "archivo" + i + "@example.com", null)).getId();
+            ReservationRequestDTO request = new ReservationRequestDTO();
+            request.setUserId(userId);
+            request.setBookExternalId(BOOK_ID);
+            request.setRentalDays(7);
+            request.setStartDate(LocalDate.now());
+            Long reservationId = reservationService.createReservation(request).getId();
+            ReturnBookRequestDTO returnRequest = new ReturnBookRequestDTO();
+            returnRequest.setReturnDate(LocalDate.now().plusDays(7));
+            reservationService.returnBook(reservationId, returnRequest);
+        }
+        jdbcTemplate.update("UPDATE reservations SET actual_return_date = ?", LocalDate.now().minusDays(365));
+
+        // Dos instancias con el mismo cron: las corridas se solapan sobre las mismas filas
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> runs = List.of(
+                    executor.submit(() -> {
+                        start.await();
+                        return reservationArchiveService.archiveReturnedReservations();
+                    }),
+                    executor.submit(() -> {
+                        start.await();
+                        return reservationArchiveService.archiveReturnedReservations();
+                    }));
+            start.countDown();
+            int archived = 0;
+            for (Future<Integer> run : runs) {
+                archived += run.get();
+            }
+
+            assertEquals(RESERVATIONS, archived);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservations", Integer.class));
+        assertEquals(RESERVATIONS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservations_archive", Integer.class));
+    }
+
+    private static Book book() {
+        Book book = new Book();
+        book.setExternalId(BOOK_ID);
+        book.setTitle("Archivo");
+        book.setAuthorName(List.of("Autor"));
+        book.setPrice(new BigDecimal("10.00"));
+        book.setStockQuantity(1);
+        book.setAvailableQuantity(1);
+        return book;
+    }
+}
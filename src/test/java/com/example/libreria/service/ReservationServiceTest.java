@@ -4,9 +4,15 @@ import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.event.ReservationCreatedEvent;
+import com.example.libreria.exception.ConflictException;
+import com.example.libreria.exception.NotFoundException;
+import com.example.libreria.model.ArchivedReservation;
+import com.example.libreria.instrumentation.LibreriaMetrics;
 import com.example.libreria.model.Book;
 import com.example.libreria.model.Reservation;
 import com.example.libreria.model.User;
+import com.example.libreria.repository.ArchivedReservationRepository;
 import com.example.libreria.repository.BookRepository;
 import com.example.libreria.repository.ReservationRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,6 +21,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -23,6 +30,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -36,12 +44,24 @@ class ReservationServiceTest {
     @Mock
     private ReservationRepository reservationRepository;
 
+    @Mock
+    private ArchivedReservationRepository archivedReservationRepository;
+
     @Mock
     private BookRepository bookRepository;
 
     @Mock
     private UserService userService;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private LibreriaMetrics metrics;
+
+    @Mock
+    private AvailabilityCalendarService availabilityCalendar;
+
     @InjectMocks
     private ReservationService reservationService;
 
@@ -94,8 +114,9 @@ class ReservationServiceTest {
     @Test
     void createReservation_Success() {
         when(userService.getUserById(1L)).thenReturn(userResponseDTO);
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.findForUpdateByExternalId(258027L)).thenReturn(Optional.of(testBook));
         when(reservationRepository.existsByUserIdAndBookExternalIdAndActualReturnDateIsNull(1L, 258027L)).thenReturn(false);
+        when(availabilityCalendar.reserve(258027L, 10, LocalDate.now(), LocalDate.now().plusDays(7))).thenReturn(OptionalInt.of(5));
         when(userService.getUserEntityById(1L)).thenReturn(testUser);
         when(reservationRepository.save(any(Reservation.class))).thenReturn(testReservation);
         when(bookRepository.save(any(Book.class))).thenReturn(testBook);
@@ -110,7 +131,8 @@ class ReservationServiceTest {
 
         verify(bookRepository).save(any(Book.class));
         verify(reservationRepository).save(any(Reservation.class));
-        verify(bookRepository).findByExternalId(258027L);
+        verify(bookRepository).findForUpdateByExternalId(258027L);
+        verify(eventPublisher).publishEvent(any(ReservationCreatedEvent.class));
     }
 
     @Test
@@ -118,7 +140,7 @@ class ReservationServiceTest {
 
         when(userService.getUserById(1L)).thenReturn(null);
 
-        RuntimeException exception = assertThrows(RuntimeException.class,
+        NotFoundException exception = assertThrows(NotFoundException.class,
                 () -> reservationService.createReservation(reservationRequestDTO));
 
         assertEquals("Usuario no encontrado con ID: 1", exception.getMessage());
@@ -128,39 +150,42 @@ class ReservationServiceTest {
     @Test
     void createReservation_BookNotFound() {
         when(userService.getUserById(1L)).thenReturn(userResponseDTO);
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.empty());
+        when(bookRepository.findForUpdateByExternalId(258027L)).thenReturn(Optional.empty());
 
-        RuntimeException exception = assertThrows(RuntimeException.class,
+        NotFoundException exception = assertThrows(NotFoundException.class,
                 () -> reservationService.createReservation(reservationRequestDTO));
 
         assertEquals("Libro no encontrado con ID externo: 258027", exception.getMessage());
         verify(reservationRepository, never()).save(any(Reservation.class));
+        verify(metrics).reservationRejected("book_not_found");
     }
 
     @Test
     void createReservation_BookNotAvailable() {
 
-        testBook.setAvailableQuantity(0);
+        LocalDate start = LocalDate.now().plusMonths(1);
+        reservationRequestDTO.setStartDate(start);
         when(userService.getUserById(1L)).thenReturn(userResponseDTO);
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.findForUpdateByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(availabilityCalendar.reserve(258027L, 10, start, start.plusDays(7))).thenReturn(OptionalInt.empty());
 
-
-        RuntimeException exception = assertThrows(RuntimeException.class,
+        ConflictException exception = assertThrows(ConflictException.class,
                 () -> reservationService.createReservation(reservationRequestDTO));
 
-        assertEquals("Libro no disponible. Stock actual: 0", exception.getMessage());
+        assertEquals("Libro no disponible entre " + start + " y " + start.plusDays(7), exception.getMessage());
         verify(reservationRepository, never()).save(any(Reservation.class));
+        verify(metrics).reservationRejected("not_available");
     }
 
     @Test
     void createReservation_UserHasActiveReservation() {
 
         when(userService.getUserById(1L)).thenReturn(userResponseDTO);
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.findForUpdateByExternalId(258027L)).thenReturn(Optional.of(testBook));
         when(reservationRepository.existsByUserIdAndBookExternalIdAndActualReturnDateIsNull(1L, 258027L)).thenReturn(true);
 
 
-        RuntimeException exception = assertThrows(RuntimeException.class,
+        ConflictException exception = assertThrows(ConflictException.class,
                 () -> reservationService.createReservation(reservationRequestDTO));
 
         assertEquals("El usuario ya tiene una reserva activa para este libro", exception.getMessage());
@@ -173,6 +198,7 @@ class ReservationServiceTest {
         returnRequest.setReturnDate(LocalDate.now().plusDays(7)); // Devuelve a tiempo
 
         when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
+        when(bookRepository.findForUpdateByExternalId(258027L)).thenReturn(Optional.of(testBook));
         when(reservationRepository.save(any(Reservation.class))).thenReturn(testReservation);
         when(bookRepository.save(any(Book.class))).thenReturn(testBook);
 
@@ -184,6 +210,7 @@ class ReservationServiceTest {
 
         verify(reservationRepository).save(any(Reservation.class));
         verify(bookRepository).save(any(Book.class));
+        verify(availabilityCalendar).release(258027L, LocalDate.now(), LocalDate.now().plusDays(7));
     }
 
     @Test
@@ -192,6 +219,7 @@ class ReservationServiceTest {
         returnRequest.setReturnDate(LocalDate.now().plusDays(10)); // 3 días tarde
 
         when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
+        when(bookRepository.findForUpdateByExternalId(258027L)).thenReturn(Optional.of(testBook));
         when(reservationRepository.save(any(Reservation.class))).thenReturn(testReservation);
         when(bookRepository.save(any(Book.class))).thenReturn(testBook);
 
@@ -214,7 +242,7 @@ class ReservationServiceTest {
 
         when(reservationRepository.findById(1L)).thenReturn(Optional.empty());
 
-        RuntimeException exception = assertThrows(RuntimeException.class,
+        NotFoundException exception = assertThrows(NotFoundException.class,
                 () -> reservationService.returnBook(1L, returnRequest));
 
         assertEquals("Reserva no encontrada con ID: 1", exception.getMessage());
@@ -229,7 +257,7 @@ class ReservationServiceTest {
 
         when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
 
-        RuntimeException exception = assertThrows(RuntimeException.class,
+        ConflictException exception = assertThrows(ConflictException.class,
                 () -> reservationService.returnBook(1L, returnRequest));
 
         assertEquals("La reserva ya fue devuelta", exception.getMessage());
@@ -252,7 +280,7 @@ class ReservationServiceTest {
     void getReservationById_NotFound() {
         when(reservationRepository.findById(1L)).thenReturn(Optional.empty());
 
-        RuntimeException exception = assertThrows(RuntimeException.class,
+        NotFoundException exception = assertThrows(NotFoundException.class,
                 () -> reservationService.getReservationById(1L));
 
         assertEquals("Reserva no encontrada con ID: 1", exception.getMessage());
@@ -282,6 +310,43 @@ class ReservationServiceTest {
         assertEquals(1L, result.get(0).getUserId());
     }
 
+    @Test
+    void getReservationsByUserId_MergesArchivedHistory() {
+        ArchivedReservation archived = archivedReservation(0L);
+        when(reservationRepository.findByUserId(1L)).thenReturn(Arrays.asList(testReservation));
+        when(archivedReservationRepository.findByUserId(1L)).thenReturn(Arrays.asList(archived));
+
+        List<ReservationResponseDTO> result = reservationService.getReservationsByUserId(1L);
+
+        assertEquals(2, result.size());
+        assertEquals(0L, result.get(0).getId());
+        assertEquals(Reservation.ReservationStatus.RETURNED, result.get(0).getStatus());
+        assertEquals(new BigDecimal("116.93"), result.get(0).getTotalFee());
+        assertEquals(1L, result.get(1).getId());
+    }
+
+    @Test
+    void getReservationById_FallsBackToArchive() {
+        when(reservationRepository.findById(5L)).thenReturn(Optional.empty());
+        when(archivedReservationRepository.findById(5L)).thenReturn(Optional.of(archivedReservation(5L)));
+
+        ReservationResponseDTO result = reservationService.getReservationById(5L);
+
+        assertEquals(5L, result.getId());
+        assertEquals(258027L, result.getBookExternalId());
+    }
+
+    @Test
+    void getUserPendingLateFees_IncludesArchived() {
+        testReservation.setLateFee(new BigDecimal("15.00"));
+        when(reservationRepository.findByUserId(1L)).thenReturn(Arrays.asList(testReservation));
+        when(archivedReservationRepository.sumLateFeesByUserId(1L)).thenReturn(new BigDecimal("5.00"));
+
+        BigDecimal result = reservationService.getUserPendingLateFees(1L);
+
+        assertEquals(new BigDecimal("20.00"), result);
+    }
+
     @Test
     void getActiveReservations_Success() {
         List<Reservation> reservations = Arrays.asList(testReservation);
@@ -308,14 +373,14 @@ class ReservationServiceTest {
 
     @Test
     void calculateTotalFee_Success() {
-        BigDecimal result = reservationService.calculateTotalFee(new BigDecimal("10.00"), 5);
+        BigDecimal result = ReservationService.calculateTotalFee(new BigDecimal("10.00"), 5);
 
         assertEquals(new BigDecimal("50.00"), result);
     }
 
     @Test
     void calculateLateFee_Success() {
-        BigDecimal result = reservationService.calculateLateFee(new BigDecimal("20.00"), 3);
+        BigDecimal result = ReservationService.calculateLateFee(new BigDecimal("20.00"), 3);
         // 20.00 * 0.15 * 3 = 9.00
         assertEquals(new BigDecimal("9.00"), result);
     }
@@ -390,4 +455,22 @@ class ReservationServiceTest {
         // Then
         assertEquals(new BigDecimal("100.00"), result);
     }
-}
\ No newline at end of file
+
+    private ArchivedReservation archivedReservation(Long id) {
+        ArchivedReservation archived = new ArchivedReservation();
+        archived.setId(id);
+        archived.setUser(testUser);
+        archived.setBook(testBook);
+        archived.setRentalDays(7);
+        archived.setStartDate(LocalDate.now().minusDays(200));
+        archived.setExpectedReturnDate(LocalDate.now().minusDays(193));
+        archived.setActualReturnDate(LocalDate.now().minusDays(191));
+        archived.setDailyRate(testBook.getPrice());
+        archived.setTotalFee(new BigDecimal("111.93"));
+        archived.setLateFee(new BigDecimal("5.00"));
+        archived.setStatus(Reservation.ReservationStatus.RETURNED);
+        archived.setCreatedAt(LocalDateTime.now().minusDays(200));
+        archived.setArchivedAt(LocalDateTime.now());
+        return archived;
+    }
+}
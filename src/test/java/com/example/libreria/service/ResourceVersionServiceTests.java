@@ -0,0 +1,157 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Base propia: el ETag del catálogo depende de todos los libros
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:resource_versions")
+class ResourceVersionServiceTests {
+
+    private static final AtomicInteger USERS = new AtomicInteger();
+    private static final AtomicLong BOOKS = new AtomicLong(990300L);
+
+    @Autowired
+    private ResourceVersionService versions;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void booksETag_ChangesOnCatalogWrites() {
+        Long bookId = newBook();
+        String initial = versions.booksETag();
+        assertEquals(initial, versions.booksETag());
+
+        bookService.updateStock(bookId, 8);
+        String afterUpdate = versions.booksETag();
+        assertNotEquals(initial, afterUpdate);
+
+        // Las escrituras por JDBC también incrementan la versión
+        jdbcTemplate.update("UPDATE books SET available_quantity = 1, version = version + 1 WHERE external_id = ?", bookId);
+        assertNotEquals(afterUpdate, versions.booksETag());
+    }
+
+    @Test
+    void userReservationsETag_ChangesOnlyForAffectedUser() {
+        Long bookId = newBook();
+        UserResponseDTO user = newUser();
+        UserResponseDTO other = newUser();
+        String userETag = versions.userReservationsETag(user.getId());
+        String otherETag = versions.userReservationsETag(other.getId());
+        String books = versions.booksETag();
+
+        reserve(user, bookId);
+
+        assertNotEquals(userETag, versions.userReservationsETag(user.getId()));
+        assertEquals(otherETag, versions.userReservationsETag(other.getId()));
+        assertNotEquals(books, versions.booksETag());
+    }
+
+    @Test
+    void userReservationsETag_ChangesOnReturn() {
+        UserResponseDTO user = newUser();
+        Long reservationId = reserve(user, newBook());
+        String initial = versions.userReservationsETag(user.getId());
+
+        ReturnBookRequestDTO returnRequest = new ReturnBookRequestDTO();
+        returnRequest.setReturnDate(LocalDate.now().plusDays(7));
+        reservationService.returnBook(reservationId, returnRequest);
+
+        assertNotEquals(initial, versions.userReservationsETag(user.getId()));
+    }
+
+    @Test
+    void userReservationsETag_ChangesWhenUserOrBookTitleChanges() {
+        UserResponseDTO user = newUser();
+        Long bookId = newBook();
+        reserve(user, bookId);
+        String initial = versions.userReservationsETag(user.getId());
+
+        userService.updateUser(user.getId(), new UserRequestDTO("Otro Nombre", user.getEmail(), null));
+        String afterUserUpdate = versions.userReservationsETag(user.getId());
+        assertNotEquals(initial, afterUserUpdate);
+
+        Book book = bookRepository.findById(bookId).orElseThrow();
+        book.setTitle("Título nuevo");
+        bookRepository.save(book);
+        assertNotEquals(afterUserUpdate, versions.userReservationsETag(user.getId()));
+    }
+
+    @Test
+    void etags_AreTheSameOnEveryInstance() {
+        UserResponseDTO user = newUser();
+        reserve(user, newBook());
+        // Otra instancia no vio la reserva pasar: la versión sale de la base
+        ResourceVersionService otherInstance = new ResourceVersionService(bookRepository, reservationRepository);
+
+        assertEquals(versions.booksETag(), otherInstance.booksETag());
+        assertEquals(versions.userReservationsETag(user.getId()), otherInstance.userReservationsETag(user.getId()));
+    }
+
+    @Test
+    void etags_AreStrongAndDifferBetweenResources() {
+        String books = versions.booksETag();
+        String reservations = versions.userReservationsETag(1L);
+
+        assertTrue(books.startsWith("\"") && books.endsWith("\""));
+        assertTrue(reservations.startsWith("\"") && reservations.endsWith("\""));
+        assertNotEquals(books, reservations);
+    }
+
+    private UserResponseDTO newUser() {
+        return userService.createUser(new UserRequestDTO("Usuario Versiones",
+                "versiones" + USERS.incrementAndGet() + "@example.com", null));
+    }
+
+    private Long newBook() {
+        Book book = new Book();
+        book.setExternalId(BOOKS.incrementAndGet());
+        book.setTitle("Versiones " + book.getExternalId());
+        book.setAuthorName(List.of("Autor"));
+        book.setPrice(new BigDecimal("10.00"));
+        book.setStockQuantity(5);
+        book.setAvailableQuantity(5);
+        return bookRepository.save(book).getExternalId();
+    }
+
+    private Long reserve(UserResponseDTO user, Long bookExternalId) {
+        ReservationRequestDTO request = new ReservationRequestDTO();
+        request.setUserId(user.getId());
+        request.setBookExternalId(bookExternalId);
+        request.setRentalDays(7);
+        request.setStartDate(LocalDate.now());
+        return reservationService.createReservation(request).getId();
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.AvailabilityDiscrepancyDTO;
+import com.example.libreria.dto.InventoryAdjustmentDTO;
+import com.example.libreria.dto.InventoryAdjustmentItemDTO;
+import com.example.libreria.dto.InventoryAdjustmentResultDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.dto.StockReconciliationResultDTO;
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Base propia: la conciliación recorre todo el catálogo
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stock_reconciliation",
+        "reconciliation.partitions=4",
+        "reconciliation.max-reported=1"})
+class StockReconciliationServiceTests {
+
+    private static final Long CONSISTENT_ID = 990201L;
+    private static final Long RESERVED_ID = 990202L;
+    private static final Long LOST_ID = 990203L;
+    private static final Long SHARED_ID = 990204L;
+
+    @Autowired
+    private StockReconciliationService stockReconciliationService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookInventoryService bookInventoryService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private static final AtomicInteger USERS = new AtomicInteger();
+
+    private final List<Long> reservations = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        bookRepository.saveAll(List.of(book(CONSISTENT_ID, 5), book(RESERVED_ID, 5), book(LOST_ID, 4)));
+        reserve(newUser(), RESERVED_ID);
+        reserve(newUser(), RESERVED_ID);
+        // 2 reservas activas que availableQuantity no refleja, y 3 ejemplares "reservados" sin reserva
+        jdbcTemplate.update("UPDATE books SET available_quantity = 5 WHERE external_id = ?", RESERVED_ID);
+        jdbcTemplate.update("UPDATE books SET available_quantity = 1 WHERE external_id = ?", LOST_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Devueltas para liberar también el calendario en memoria
+        reservations.forEach(id -> reservationService.returnBook(id, new ReturnBookRequestDTO(LocalDate.now())));
+        jdbcTemplate.update("DELETE FROM reservations");
+        bookRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM users");
+        entityManagerFactory.getCache().unwrap(Cache.class).evictAllRegions();
+    }
+
+    @Test
+    void reconcile_ReportsDiscrepanciesWithoutChangingBooks() {
+        StockReconciliationResultDTO result = stockReconciliationService.reconcile(false);
+
+        assertEquals(3, result.getBooksChecked());
+        assertEquals(3, result.getPartitions());
+        assertEquals(2, result.getDiscrepancyCount());
+        assertEquals(0, result.getFixed());
+        assertFalse(result.isApplied());
+        // max-reported=1: el detalle se recorta pero el total no
+        assertEquals(1, result.getDiscrepancies().size());
+        assertTrue(result.isDiscrepanciesTruncated());
+        assertEquals(5, available(RESERVED_ID));
+        assertEquals(1, available(LOST_ID));
+    }
+
+    @Test
+    void reconcile_Apply_FixesAvailableQuantityAndEvictsCache() {
+        // Queda en la caché de segundo nivel con el valor incorrecto
+        assertEquals(5, bookService.getBookByExternalId(RESERVED_ID).getAvailableQuantity());
+
+        StockReconciliationResultDTO result = stockReconciliationService.reconcile(true);
+
+        assertEquals(2, result.getDiscrepancyCount());
+        assertEquals(2, result.getFixed());
+        assertTrue(result.isApplied());
+        assertEquals(3, available(RESERVED_ID));
+        assertEquals(4, available(LOST_ID));
+        assertEquals(5, available(CONSISTENT_ID));
+        assertEquals(3, bookService.getBookByExternalId(RESERVED_ID).getAvailableQuantity());
+
+        StockReconciliationResultDTO again = stockReconciliationService.reconcile(false);
+        assertEquals(0, again.getDiscrepancyCount());
+        assertFalse(again.isDiscrepanciesTruncated());
+    }
+
+    @Test
+    void reconcile_DiscrepancyCarriesStoredAndExpectedValues() {
+        stockReconciliationService.reconcile(true);
+        jdbcTemplate.update("UPDATE books SET available_quantity = 0 WHERE external_id = ?", RESERVED_ID);
+
+        List<AvailabilityDiscrepancyDTO> discrepancies = stockReconciliationService.reconcile(false).getDiscrepancies();
+
+        assertEquals(1, discrepancies.size());
+        AvailabilityDiscrepancyDTO discrepancy = discrepancies.get(0);
+        assertEquals(RESERVED_ID, discrepancy.getExternalId());
+        assertEquals(5, discrepancy.getStoredStockQuantity());
+        assertEquals(5, discrepancy.getExpectedStockQuantity());
+        assertEquals(0, discrepancy.getStoredAvailableQuantity());
+        assertEquals(3, discrepancy.getExpectedAvailableQuantity());
+    }
+
+    @Test
+    void nonOverlappingReservations_ShareACopyWithoutNegativeAvailability() {
+        bookRepository.save(book(SHARED_ID, 1));
+        Long first = reserve(newUser(), SHARED_ID, LocalDate.now());
+        reserve(newUser(), SHARED_ID, LocalDate.now().plusDays(14));
+
+        // Un solo ejemplar cubre las dos reservas: el pico de ocupación es 1
+        assertEquals(0, available(SHARED_ID));
+        assertEquals(0, bookService.updateStock(SHARED_ID, 1).getAvailableQuantity());
+        InventoryAdjustmentResultDTO priceOnly = bookInventoryService.adjust(List.of(
+                new InventoryAdjustmentDTO(SHARED_ID, null, null, new BigDecimal("11.00"))));
+        assertEquals(InventoryAdjustmentItemDTO.Status.UPDATED, priceOnly.getResults().get(0).getStatus());
+        assertEquals(0, bookService.getBookByExternalId(SHARED_ID).getAvailableQuantity());
+        // La conciliación calcula lo mismo: solo siguen los dos libros desajustados en setUp
+        assertEquals(2, stockReconciliationService.reconcile(false).getDiscrepancyCount());
+
+        // La reserva futura sigue ocupando el ejemplar
+        reservationService.returnBook(first, new ReturnBookRequestDTO(LocalDate.now()));
+        reservations.remove(first);
+        assertEquals(0, available(SHARED_ID));
+        assertEquals(2, stockReconciliationService.reconcile(false).getDiscrepancyCount());
+    }
+
+    private UserResponseDTO newUser() {
+        return userService.createUser(new UserRequestDTO("Usuario Conciliación",
+                "conciliacion" + USERS.incrementAndGet() + "@example.com", null));
+    }
+
+    private void reserve(UserResponseDTO user, Long bookExternalId) {
+        reserve(user, bookExternalId, LocalDate.now());
+    }
+
+    private Long reserve(UserResponseDTO user, Long bookExternalId, LocalDate startDate) {
+        ReservationRequestDTO request = new ReservationRequestDTO();
+        request.setUserId(user.getId());
+        request.setBookExternalId(bookExternalId);
+        request.setRentalDays(7);
+        request.setStartDate(startDate);
+        Long id = reservationService.createReservation(request).getId();
+        reservations.add(id);
+        return id;
+    }
+
+    private int available(Long externalId) {
+        return jdbcTemplate.queryForObject("SELECT available_quantity FROM books WHERE external_id = ?",
+                Integer.class, externalId);
+    }
+
+    private static Book book(Long externalId, int stockQuantity) {
+        Book book = new Book();
+        book.setExternalId(externalId);
+        book.setTitle("Conciliación " + externalId);
+        book.setAuthorName(List.of("Autor"));
+        book.setPrice(new BigDecimal("10.00"));
+        book.setStockQuantity(stockQuantity);
+        book.setAvailableQuantity(stockQuantity);
+        return book;
+    }
+}
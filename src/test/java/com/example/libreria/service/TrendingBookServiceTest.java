@@ -0,0 +1,127 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.TrendingBookDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TrendingBookServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private MutableClock clock;
+    private TrendingBookService trendingBookService;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2024-01-15T10:00:00Z"));
+        // Ventana de 60 minutos en 6 buckets de 10 minutos, 3 contadores por bucket
+        trendingBookService = new TrendingBookService(bookRepository, clock, 60, 6, 3);
+    }
+
+    @Test
+    void getTrendingBooks_OrdersByReservations() {
+        record(258027L, 5);
+        record(140081L, 2);
+        record(90150L, 3);
+        when(bookRepository.findAllById(anyList()))
+                .thenReturn(Arrays.asList(book(258027L, "The Lord of the Rings"), book(90150L, "One Hundred Years of Solitude")));
+
+        List<TrendingBookDTO> result = trendingBookService.getTrendingBooks(2);
+
+        assertEquals(2, result.size());
+        assertEquals(258027L, result.get(0).getExternalId());
+        assertEquals(5L, result.get(0).getReservations());
+        assertEquals(90150L, result.get(1).getExternalId());
+        assertEquals(3L, result.get(1).getReservations());
+    }
+
+    @Test
+    void getTrendingBooks_ExpiresOldBuckets() {
+        record(258027L, 5);
+        clock.advance(Duration.ofMinutes(30));
+        record(140081L, 2);
+        clock.advance(Duration.ofMinutes(35));
+        when(bookRepository.findAllById(anyList()))
+                .thenReturn(Collections.singletonList(book(140081L, "The Hitchhiker's Guide to the Galaxy")));
+
+        List<TrendingBookDTO> result = trendingBookService.getTrendingBooks(10);
+
+        assertEquals(1, result.size());
+        assertEquals(140081L, result.get(0).getExternalId());
+    }
+
+    @Test
+    void recordReservation_KeepsHeavyHittersWithinCapacity() {
+        // 200 de 500 reservas supera N / capacidad, así que debe sobrevivir a la rotación
+        record(258027L, 200);
+        for (long id = 1; id <= 300; id++) {
+            trendingBookService.recordReservation(id);
+        }
+        when(bookRepository.findAllById(anyList()))
+                .thenReturn(Collections.singletonList(book(258027L, "The Lord of the Rings")));
+
+        List<TrendingBookDTO> result = trendingBookService.getTrendingBooks(1);
+
+        assertEquals(258027L, result.get(0).getExternalId());
+        assertTrue(result.get(0).getReservations() >= 200);
+    }
+
+    private void record(Long bookExternalId, int times) {
+        for (int i = 0; i < times; i++) {
+            trendingBookService.recordReservation(bookExternalId);
+        }
+    }
+
+    private Book book(Long externalId, String title) {
+        Book book = new Book();
+        book.setExternalId(externalId);
+        book.setTitle(title);
+        return book;
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.UserImportResultDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserImportServiceTest {
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private EmailFilterService emailFilterService;
+
+    private UserImportService userImportService;
+
+    @BeforeEach
+    void setUp() {
+        userImportService = new UserImportService(jdbcTemplate, transactionManager,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(),
+                emailFilterService, 2, 10);
+    }
+
+    @Test
+    void importUsers_CsvInsertsInBatches() {
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(String.class)))
+                .thenReturn(Collections.emptyList());
+
+        UserImportResultDTO result = userImportService.importUsers(stream(
+                "name,email,phoneNumber\n" +
+                "Juan Pérez,juan@example.com,123456789\n" +
+                "\"García, María\",maria@example.com,\n" +
+                "Carlos Rodríguez,carlos@example.com,555123456\n"), UserImportService.Format.CSV);
+
+        assertEquals(3, result.getTotalRows());
+        assertEquals(3, result.getImported());
+        assertEquals(0, result.getRejected());
+        ArgumentCaptor<SqlParameterSource[]> batch = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), batch.capture());
+        assertEquals(2, batch.getAllValues().get(0).length);
+        assertEquals("García, María", batch.getAllValues().get(0)[1].getValue("name"));
+        verify(emailFilterService, times(3)).register(anyString());
+    }
+
+    @Test
+    void importUsers_ReportsInvalidAndDuplicateRows() {
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(String.class)))
+                .thenReturn(List.of("juan@example.com"))
+                .thenReturn(List.of("maria@example.com"));
+
+        UserImportResultDTO result = userImportService.importUsers(stream(
+                "{\"name\":\"Juan Pérez\",\"email\":\"juan@example.com\"}\n" +
+                "{\"name\":\"María García\",\"email\":\"maria@example.com\"}\n" +
+                "{\"name\":\"\",\"email\":\"no-es-email\"}\n" +
+                "{\"name\":\"María Bis\",\"email\":\"maria@example.com\"}\n" +
+                "{ roto\n"), UserImportService.Format.NDJSON);
+
+        assertEquals(5, result.getTotalRows());
+        assertEquals(1, result.getImported());
+        assertEquals(4, result.getRejected());
+        assertEquals(1, result.getErrors().get(0).getLine());
+        assertTrue(result.getErrors().get(0).getMessage().startsWith("Ya existe un usuario"));
+        assertEquals(3, result.getErrors().get(1).getLine());
+        // El repetido entre bloques lo detecta la consulta contra la base de datos
+        assertEquals(4, result.getErrors().get(2).getLine());
+        assertTrue(result.getErrors().get(2).getMessage().startsWith("Ya existe un usuario"));
+        assertEquals(5, result.getErrors().get(3).getLine());
+        assertTrue(result.getErrors().get(3).getMessage().startsWith("JSON inválido"));
+        assertFalse(result.isErrorsTruncated());
+    }
+
+    @Test
+    void importUsers_FallsBackToSingleInsertsOnConstraintViolation() {
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(String.class)))
+                .thenReturn(Collections.emptyList());
+        when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                .thenThrow(new DuplicateKeyException("unique"));
+        when(jdbcTemplate.update(anyString(), any(MapSqlParameterSource.class)))
+                .thenReturn(1)
+                .thenThrow(new DuplicateKeyException("unique"));
+
+        UserImportResultDTO result = userImportService.importUsers(stream(
+                "Juan Pérez,juan@example.com\n" +
+                "María García,maria@example.com\n"), UserImportService.Format.CSV);
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals("maria@example.com", result.getErrors().get(0).getEmail());
+    }
+
+    @Test
+    void importUsers_TruncatesErrorReport() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 25; i++) {
+            body.append("sin email\n");
+        }
+
+        UserImportResultDTO result = userImportService.importUsers(stream(body.toString()), UserImportService.Format.CSV);
+
+        assertEquals(25, result.getRejected());
+        assertEquals(10, result.getErrors().size());
+        assertTrue(result.isErrorsTruncated());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
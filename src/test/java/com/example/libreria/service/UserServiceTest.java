@@ -2,7 +2,11 @@ package com.example.libreria.service;
 
 import com.example.libreria.dto.UserRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.event.UserDeletedEvent;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
 import com.example.libreria.model.User;
+import com.example.libreria.repository.ArchivedReservationRepository;
 import com.example.libreria.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,11 +14,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.sql.SQLException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -27,6 +37,15 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
     
+    @Mock
+    private EmailFilterService emailFilterService;
+    
+    @Mock
+    private ArchivedReservationRepository archivedReservationRepository;
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
     @InjectMocks
     private UserService userService;
     
@@ -50,7 +69,7 @@ class UserServiceTest {
     
     @Test
     void testCreateUser_Success() {
-        when(userRepository.existsByEmail(anyString())).thenReturn(false);
+        when(emailFilterService.emailExists(anyString())).thenReturn(false);
         when(userRepository.save(any(User.class))).thenReturn(testUser);
         
         UserResponseDTO result = userService.createUser(userRequestDTO);
@@ -60,11 +79,12 @@ class UserServiceTest {
         assertEquals(testUser.getName(), result.getName());
         assertEquals(testUser.getEmail(), result.getEmail());
         verify(userRepository, times(1)).save(any(User.class));
+        verify(emailFilterService).register("juan@example.com");
     }
     
     @Test
     void testCreateUser_EmailAlreadyExists() {
-        when(userRepository.existsByEmail(anyString())).thenReturn(true);
+        when(emailFilterService.emailExists(anyString())).thenReturn(true);
         
         assertThrows(RuntimeException.class, () -> {
             userService.createUser(userRequestDTO);
@@ -73,6 +93,31 @@ class UserServiceTest {
         verify(userRepository, never()).save(any(User.class));
     }
     
+    @Test
+    void testCreateUser_UniqueConstraintViolation() {
+        when(emailFilterService.emailExists(anyString())).thenReturn(false);
+        when(userRepository.save(any(User.class))).thenThrow(new DataIntegrityViolationException("unique",
+                new SQLException("Unique index or primary key violation: \"PUBLIC.UK_USERS_EMAIL_INDEX_4 ON PUBLIC.USERS(EMAIL)\"", "23505")));
+        
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            userService.createUser(userRequestDTO);
+        });
+        
+        assertEquals("Ya existe un usuario con el email: juan@example.com", exception.getMessage());
+        verify(emailFilterService, never()).register(anyString());
+    }
+    
+    @Test
+    void testCreateUser_OtherConstraintViolationIsNotReportedAsDuplicate() {
+        when(emailFilterService.emailExists(anyString())).thenReturn(false);
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("not null",
+                new SQLException("NULL not allowed for column \"NAME\"", "23502"));
+        when(userRepository.save(any(User.class))).thenThrow(violation);
+        
+        assertSame(violation, assertThrows(DataIntegrityViolationException.class, () -> userService.createUser(userRequestDTO)));
+        verify(emailFilterService, never()).register(anyString());
+    }
+    
     @Test
     void testGetUserById_Success() {
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
@@ -117,26 +162,51 @@ class UserServiceTest {
         
         assertNotNull(result);
         verify(userRepository, times(1)).save(any(User.class));
+        verify(emailFilterService, never()).emailExists(anyString());
+    }
+    
+    @Test
+    void testUpdateUser_EmailAlreadyExists() {
+        userRequestDTO.setEmail("maria@example.com");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(emailFilterService.emailExists("maria@example.com")).thenReturn(true);
+        
+        assertThrows(RuntimeException.class, () -> {
+            userService.updateUser(1L, userRequestDTO);
+        });
+        
+        verify(userRepository, never()).save(any(User.class));
     }
     
     @Test
     void testDeleteUser_Success() {
-        when(userRepository.existsById(1L)).thenReturn(true);
+        Book book = new Book();
+        book.setExternalId(258027L);
+        Reservation active = new Reservation();
+        active.setBook(book);
+        Reservation returned = new Reservation();
+        returned.setBook(new Book());
+        returned.getBook().setExternalId(100L);
+        returned.setActualReturnDate(LocalDate.now());
+        testUser.setReservations(new ArrayList<>(List.of(active, returned)));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
         
         userService.deleteUser(1L);
         
-        verify(userRepository, times(1)).deleteById(1L);
+        verify(archivedReservationRepository).deleteByUserId(1L);
+        verify(userRepository, times(1)).delete(testUser);
+        verify(eventPublisher).publishEvent(new UserDeletedEvent(1L, Set.of(258027L)));
     }
     
     @Test
     void testDeleteUser_NotFound() {
-        when(userRepository.existsById(1L)).thenReturn(false);
+        when(userRepository.findById(1L)).thenReturn(Optional.empty());
         
         assertThrows(RuntimeException.class, () -> {
             userService.deleteUser(1L);
         });
         
-        verify(userRepository, never()).deleteById(anyLong());
+        verify(userRepository, never()).delete(any(User.class));
     }
 }
 
@@ -0,0 +1,39 @@
+package com.example.libreria.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void mightContain_NoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("usuario" + i + "@example.com");
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("usuario" + i + "@example.com"));
+        }
+    }
+
+    @Test
+    void mightContain_BulkRegistrationFalsePositiveRate() {
+        int registrations = 200_000;
+        BloomFilter filter = new BloomFilter(registrations, 0.01);
+        for (int i = 0; i < registrations; i++) {
+            filter.put("alumno" + i + "@escuela.edu");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < registrations; i++) {
+            if (filter.mightContain("nuevo" + i + "@escuela.edu")) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / registrations;
+
+        assertTrue(rate < 0.02, "Tasa de falsos positivos demasiado alta: " + rate);
+    }
+}
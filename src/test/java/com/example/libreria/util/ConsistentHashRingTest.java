@@ -0,0 +1,69 @@
+package com.example.libreria.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 100_000;
+
+    @Test
+    void owner_SpreadsConsecutiveIdsEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c"), 128);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (long id = 0; id < KEYS; id++) {
+            counts.merge(ring.owner(id), 1, Integer::sum);
+        }
+
+        for (int count : counts.values()) {
+            double share = (double) count / KEYS;
+            assertTrue(share > 0.25 && share < 0.42, "Participación desbalanceada: " + counts);
+        }
+        assertEquals(1.0, ring.ownershipShares().values().stream().mapToDouble(Double::doubleValue).sum(), 1e-9);
+    }
+
+    @Test
+    void owner_AddingNodeOnlyMovesKeysToTheNewNode() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("a", "b", "c", "d"), 128);
+
+        int moved = 0;
+        for (long id = 0; id < KEYS; id++) {
+            String previous = before.owner(id);
+            String current = after.owner(id);
+            if (!previous.equals(current)) {
+                assertEquals("d", current);
+                moved++;
+            }
+        }
+
+        // Idealmente se mueve 1/4 de las claves
+        double movedShare = (double) moved / KEYS;
+        assertTrue(movedShare > 0.15 && movedShare < 0.35, "Se movió " + movedShare);
+    }
+
+    @Test
+    void owner_IsIndependentOfMembershipOrder() {
+        ConsistentHashRing one = new ConsistentHashRing(List.of("a", "b", "c"), 64);
+        ConsistentHashRing other = new ConsistentHashRing(List.of("c", "a", "b"), 64);
+
+        for (long id = 0; id < 1_000; id++) {
+            assertEquals(one.owner(id), other.owner(id));
+        }
+    }
+
+    @Test
+    void owner_SingleNodeOwnsEverything() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("solo"), 1);
+
+        assertEquals("solo", ring.owner(Long.MIN_VALUE));
+        assertEquals("solo", ring.owner(42L));
+        assertEquals(1.0, ring.ownershipShares().get("solo"), 1e-9);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.libreria.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeMaxSegmentTreeTest {
+
+    @Test
+    void max_ReturnsPeakOfOverlappingRanges() {
+        RangeMaxSegmentTree tree = new RangeMaxSegmentTree(100);
+        tree.add(10, 20, 1);
+        tree.add(15, 30, 1);
+        tree.add(40, 50, 1);
+
+        assertEquals(2, tree.max(0, 100));
+        assertEquals(1, tree.max(0, 15));
+        assertEquals(2, tree.max(19, 20));
+        assertEquals(1, tree.max(20, 45));
+        // El fin del rango es exclusivo
+        assertEquals(0, tree.max(30, 40));
+        assertEquals(0, tree.max(5, 5));
+    }
+
+    @Test
+    void add_NegativeDeltaRemovesRange() {
+        RangeMaxSegmentTree tree = new RangeMaxSegmentTree(1 << 17);
+        tree.add(19_000, 19_030, 1);
+        tree.add(19_010, 19_040, 1);
+
+        tree.add(19_000, 19_030, -1);
+
+        assertEquals(1, tree.max(19_000, 19_040));
+        assertEquals(0, tree.max(19_000, 19_010));
+    }
+
+    @Test
+    void max_MatchesBruteForce() {
+        int size = 300;
+        RangeMaxSegmentTree tree = new RangeMaxSegmentTree(size);
+        int[] expected = new int[size];
+        Random random = new Random(42);
+
+        for (int i = 0; i < 2_000; i++) {
+            int from = random.nextInt(size);
+            int to = from + random.nextInt(size - from + 1);
+            if (random.nextBoolean()) {
+                int delta = random.nextInt(5) - 2;
+                tree.add(from, to, delta);
+                for (int p = from; p < to; p++) {
+                    expected[p] += delta;
+                }
+            } else if (from < to) {
+                int max = Integer.MIN_VALUE;
+                for (int p = from; p < to; p++) {
+                    max = Math.max(max, expected[p]);
+                }
+                assertEquals(max, tree.max(from, to), "max(" + from + ", " + to + ")");
+            }
+        }
+    }
+
+    @Test
+    void rejectsRangesOutsideTheTree() {
+        RangeMaxSegmentTree tree = new RangeMaxSegmentTree(10);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.add(5, 11, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.max(-1, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.max(4, 3));
+        assertThrows(IllegalArgumentException.class, () -> new RangeMaxSegmentTree(0));
+    }
+}
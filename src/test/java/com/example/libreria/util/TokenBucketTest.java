@@ -0,0 +1,51 @@
+package com.example.libreria.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void tryAcquire_AllowsBurstThenReportsWait() {
+        TokenBucket bucket = new TokenBucket(2, 3, 0);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryAcquire(0));
+        }
+        // Sin fichas: a 2 por segundo la próxima llega en medio segundo
+        assertEquals(SECOND / 2, bucket.tryAcquire(0));
+    }
+
+    @Test
+    void tryAcquire_RefillsAtConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(2, 1, 0);
+        assertEquals(0, bucket.tryAcquire(0));
+
+        long wait = bucket.tryAcquire(SECOND / 4);
+        assertEquals(SECOND / 4, wait);
+        assertEquals(0, bucket.tryAcquire(SECOND / 2));
+    }
+
+    @Test
+    void tryAcquire_NeverAccumulatesMoreThanCapacity() {
+        TokenBucket bucket = new TokenBucket(100, 5, 0);
+
+        int granted = 0;
+        while (bucket.tryAcquire(10 * SECOND) == 0) {
+            granted++;
+        }
+
+        assertEquals(5, granted);
+    }
+
+    @Test
+    void constructor_RejectsNonPositiveRateOrCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+}
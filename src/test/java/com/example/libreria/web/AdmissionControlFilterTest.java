@@ -0,0 +1,159 @@
+package com.example.libreria.web;
+
+import com.example.libreria.repository.ReservationRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class AdmissionControlFilterTest {
+
+    private final ReservationRepository reservationRepository = mock(ReservationRepository.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void userOverItsBucketIsShedWhileOthersPass() throws Exception {
+        AdmissionControlFilter filter = filter(2, 1000, 10, 100);
+
+        assertEquals(201, reserve(filter, 1L).getStatus());
+        assertEquals(201, reserve(filter, 1L).getStatus());
+        MockHttpServletResponse shed = reserve(filter, 1L);
+        assertEquals(201, reserve(filter, 2L).getStatus());
+
+        assertEquals(429, shed.getStatus());
+        // A 0,001 fichas por segundo la próxima llega en 1000 s
+        assertEquals("1000", shed.getHeader("Retry-After"));
+        assertTrue(shed.getContentAsString(StandardCharsets.UTF_8).contains("usuario 1"));
+        assertEquals(1.0, registry.counter("libreria.admission.shed", "reason", "user_rate").count());
+        assertEquals(3.0, registry.counter("libreria.admission.admitted").count());
+    }
+
+    @Test
+    void globalBucketCapsTotalRate() throws Exception {
+        AdmissionControlFilter filter = filter(10, 2, 10, 100);
+
+        assertEquals(201, reserve(filter, 1L).getStatus());
+        assertEquals(201, reserve(filter, 2L).getStatus());
+
+        assertEquals(429, reserve(filter, 3L).getStatus());
+        assertEquals(1.0, registry.counter("libreria.admission.shed", "reason", "global_rate").count());
+    }
+
+    @Test
+    void writesBeyondConcurrencyLimitAreShedAfterBoundedWait() throws Exception {
+        AdmissionControlFilter filter = filter(10, 1000, 1, 50);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> {
+            try {
+                filter.doFilter(reservationRequest(1L), new MockHttpServletResponse(), (req, res) -> {
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        assertEquals(1.0, registry.get("libreria.admission.in.flight").gauge().value());
+
+        long start = System.nanoTime();
+        MockHttpServletResponse shed = reserve(filter, 2L);
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(429, shed.getStatus());
+        assertEquals("1", shed.getHeader("Retry-After"));
+        assertTrue(waitedMillis >= 40 && waitedMillis < 2000, "Esperó " + waitedMillis + " ms");
+        assertEquals(1.0, registry.counter("libreria.admission.shed", "reason", "concurrency").count());
+
+        release.countDown();
+        slow.get(5, TimeUnit.SECONDS);
+        assertEquals(0.0, registry.get("libreria.admission.in.flight").gauge().value());
+        assertEquals(201, reserve(filter, 2L).getStatus());
+    }
+
+    @Test
+    void returnsAreLimitedByReservationOwnerAndBodyIsStillReadable() throws Exception {
+        when(reservationRepository.findUserIdById(7L)).thenReturn(Optional.of(1L));
+        AdmissionControlFilter filter = filter(1, 1000, 10, 100);
+        String body = "{\"returnDate\":\"2025-01-10\"}";
+        AtomicReference<String> seen = new AtomicReference<>();
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(request("/api/reservations/7/return", body), first, (req, res) -> {
+            seen.set(new String(req.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+            ((HttpServletResponse) res).setStatus(200);
+        });
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        filter.doFilter(request("/api/reservations/7/return", body), second, ok());
+
+        assertEquals(200, first.getStatus());
+        assertEquals(body, seen.get());
+        assertEquals(429, second.getStatus());
+        // Las lecturas no pasan por el control de admisión
+        MockHttpServletRequest get = new MockHttpServletRequest("GET", "/api/reservations/7");
+        MockHttpServletResponse read = new MockHttpServletResponse();
+        filter.doFilter(get, read, ok());
+        assertEquals(201, read.getStatus());
+    }
+
+    @Test
+    void returnOwnerIsLookedUpOnlyAfterGlobalBudgetAndConcurrency() throws Exception {
+        AdmissionControlFilter filter = filter(10, 1, 10, 100);
+        assertEquals(201, reserve(filter, 1L).getStatus());
+
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        filter.doFilter(request("/api/reservations/7/return", "{}"), shed, ok());
+
+        assertEquals(429, shed.getStatus());
+        assertEquals(1.0, registry.counter("libreria.admission.shed", "reason", "global_rate").count());
+        verify(reservationRepository, never()).findUserIdById(anyLong());
+    }
+
+    private AdmissionControlFilter filter(int userBurst, int globalBurst, int maxConcurrent, long maxQueueWaitMillis) {
+        // Tasas bajas para que las cubetas no se repongan durante la prueba
+        return new AdmissionControlFilter(reservationRepository, new ObjectMapper(), registry,
+                0.001, userBurst, 0.001, globalBurst, maxConcurrent, maxQueueWaitMillis, 10);
+    }
+
+    private static MockHttpServletResponse reserve(AdmissionControlFilter filter, long userId) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(reservationRequest(userId), response, ok());
+        return response;
+    }
+
+    private static MockHttpServletRequest reservationRequest(long userId) {
+        return request("/api/reservations",
+                "{\"userId\":" + userId + ",\"bookExternalId\":258027,\"rentalDays\":7,\"startDate\":\"2025-01-01\"}");
+    }
+
+    private static MockHttpServletRequest request(String path, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private static FilterChain ok() {
+        return (req, res) -> ((HttpServletResponse) res).setStatus(201);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.libreria.web;
+
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.ExternalBookService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Sin caché de segundo nivel: es de la JVM y la compartiría con los contextos de otras clases de test
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:content_negotiation",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+@AutoConfigureMockMvc
+class BinaryContentNegotiationTests {
+
+    private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private final ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+    private final ObjectMapper smileMapper = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    @MockitoBean
+    private ExternalBookService externalBookService;
+
+    @BeforeEach
+    void setUp() {
+        when(externalBookService.fetchAllBooks()).thenAnswer(invocation -> List.of(
+                externalBook(930001L, "The Lord of the Rings"),
+                externalBook(930002L, "The Hitchhiker's Guide to the Galaxy")));
+        bookService.syncBooksFromExternalApi();
+    }
+
+    @Test
+    void getAllBooks_InCborAndSmile() throws Exception {
+        MvcResult json = mockMvc.perform(get("/api/books").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn();
+        MvcResult cbor = mockMvc.perform(get("/api/books").accept(CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(CBOR))
+                .andReturn();
+        MvcResult smile = mockMvc.perform(get("/api/books").accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SMILE))
+                .andReturn();
+
+        List<BookResponseDTO> fromCbor = cborMapper.readValue(cbor.getResponse().getContentAsByteArray(), new TypeReference<>() {
+        });
+        List<BookResponseDTO> fromSmile = smileMapper.readValue(smile.getResponse().getContentAsByteArray(), new TypeReference<>() {
+        });
+        assertEquals(2, fromCbor.size());
+        assertEquals(fromCbor, fromSmile);
+        assertTrue(cbor.getResponse().getContentAsByteArray().length < json.getResponse().getContentAsByteArray().length);
+
+        // Cada formato tiene su propio ETag
+        String jsonETag = json.getResponse().getHeader("ETag");
+        assertNotEquals(jsonETag, cbor.getResponse().getHeader("ETag"));
+        assertNotEquals(jsonETag, smile.getResponse().getHeader("ETag"));
+        mockMvc.perform(get("/api/books").accept(CBOR).header("If-None-Match", jsonETag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/books").accept(CBOR).header("If-None-Match", cbor.getResponse().getHeader("ETag")))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getAllBooks_DefaultsToJson() throws Exception {
+        mockMvc.perform(get("/api/books"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+        mockMvc.perform(get("/api/books").accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void createUser_AcceptsCborBody() throws Exception {
+        byte[] body = cborMapper.writeValueAsBytes(new UserRequestDTO("Usuario Binario", "binario@example.com", null));
+
+        MvcResult result = mockMvc.perform(post("/api/users").contentType(CBOR).content(body).accept(CBOR))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(CBOR))
+                .andReturn();
+
+        UserResponseDTO user = cborMapper.readValue(result.getResponse().getContentAsByteArray(), UserResponseDTO.class);
+        assertEquals("binario@example.com", user.getEmail());
+    }
+
+    // El sufijo sale del convertidor que eligió Spring y la respuesta varía según Accept
+    @Test
+    void getAllBooks_ETagFollowsSelectedConverter() throws Exception {
+        MvcResult preferred = mockMvc.perform(get("/api/books").header("Accept", "application/json;q=0.5, application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(CBOR))
+                .andReturn();
+        String etag = preferred.getResponse().getHeader("ETag");
+        assertTrue(etag.endsWith("-cbor\""), etag);
+        assertTrue(preferred.getResponse().getHeaders("Vary").contains("Accept"));
+
+        mockMvc.perform(get("/api/books").accept(MediaType.APPLICATION_JSON).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+        mockMvc.perform(get("/api/books").accept(CBOR).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+    }
+
+    private static ExternalBookDTO externalBook(Long id, String title) {
+        return new ExternalBookDTO(id, true, 10, title, new ArrayList<>(List.of("Autor")), 1950, new BigDecimal("15.99"));
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.libreria.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ETagCompressionFilterTest {
+
+    private static final String ETAG = "\"books-abc-3\"";
+    private static final String BODY = "[" + "{\"title\":\"The Lord of the Rings\"},".repeat(100) + "{}]";
+
+    private final ETagCompressionFilter filter = new ETagCompressionFilter(DataSize.ofBytes(256));
+
+    @Test
+    void compressesJsonWithStrongETagAndSuffixesTheETag() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(gzipRequest(), response, respondWith(ETAG, BODY));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("\"books-abc-3-gzip\"", response.getHeader("ETag"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        byte[] compressed = response.getContentAsByteArray();
+        assertTrue(compressed.length < BODY.length());
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertEquals(BODY, new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void stripsSuffixFromIfNoneMatchAndKeepsItOnNotModified() throws Exception {
+        MockHttpServletRequest request = gzipRequest();
+        request.addHeader("If-None-Match", "\"books-abc-3-gzip\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> seen = new AtomicReference<>();
+
+        filter.doFilter(request, response, (req, res) -> {
+            seen.set(((HttpServletRequest) req).getHeader("If-None-Match"));
+            ((HttpServletResponse) res).setHeader("ETag", ETAG);
+            ((HttpServletResponse) res).setStatus(304);
+        });
+
+        assertEquals(ETAG, seen.get());
+        assertEquals(304, response.getStatus());
+        assertEquals("\"books-abc-3-gzip\"", response.getHeader("ETag"));
+    }
+
+    @Test
+    void notModifiedKeepsThePlainETagTheClientSent() throws Exception {
+        MockHttpServletRequest request = gzipRequest();
+        request.addHeader("If-None-Match", ETAG);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> {
+            ((HttpServletResponse) res).setHeader("ETag", ETAG);
+            ((HttpServletResponse) res).setStatus(304);
+        });
+
+        assertEquals(304, response.getStatus());
+        assertEquals(ETAG, response.getHeader("ETag"));
+    }
+
+    @Test
+    void leavesSmallOrWeakResponsesUntouched() throws Exception {
+        MockHttpServletResponse small = new MockHttpServletResponse();
+        filter.doFilter(gzipRequest(), small, respondWith(ETAG, "[]"));
+        assertNull(small.getHeader("Content-Encoding"));
+        assertEquals(ETAG, small.getHeader("ETag"));
+        assertEquals("[]", small.getContentAsString());
+
+        MockHttpServletResponse weak = new MockHttpServletResponse();
+        filter.doFilter(gzipRequest(), weak, respondWith("W/" + ETAG, BODY));
+        assertNull(weak.getHeader("Content-Encoding"));
+        assertEquals(BODY, weak.getContentAsString());
+    }
+
+    @Test
+    void skipsClientsThatDoNotAcceptGzip() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books");
+        request.addHeader("Accept-Encoding", "gzip;q=0, identity");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, respondWith(ETAG, BODY));
+
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(ETAG, response.getHeader("ETag"));
+    }
+
+    private static MockHttpServletRequest gzipRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books");
+        request.addHeader("Accept-Encoding", "gzip, deflate, br");
+        return request;
+    }
+
+    private static FilterChain respondWith(String etag, String body) {
+        return (request, response) -> {
+            HttpServletResponse http = (HttpServletResponse) response;
+            http.setHeader("ETag", etag);
+            http.setContentType("application/json");
+            http.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.libreria.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyFilterTest {
+
+    private static final String BODY = "{\"userId\":1,\"bookExternalId\":258027,\"rentalDays\":7,\"startDate\":\"2025-01-01\"}";
+
+    private final IdempotencyFilter filter = new IdempotencyFilter(new ObjectMapper(), 60, 1000, 2000);
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void retryWithSameKeyReplaysStoredResponseWithoutExecuting() throws Exception {
+        MockHttpServletResponse first = send("clave-1", BODY, created());
+        MockHttpServletResponse retry = send("clave-1", BODY, created());
+
+        assertEquals(1, executions.get());
+        assertEquals(201, retry.getStatus());
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertEquals("/api/reservations/1", retry.getHeader("Location"));
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void clientErrorsAreReplayedButServerErrorsAreRetried() throws Exception {
+        FilterChain rejected = respond(409, "{\"message\":\"El usuario ya tiene una reserva activa\"}");
+        send("clave-409", BODY, rejected);
+        assertEquals(409, send("clave-409", BODY, rejected).getStatus());
+        assertEquals(1, executions.get());
+
+        send("clave-500", BODY, respond(500, "{}"));
+        assertEquals(201, send("clave-500", BODY, created()).getStatus());
+        assertEquals(3, executions.get());
+    }
+
+    @Test
+    void reusingKeyWithDifferentBodyIsRejected() throws Exception {
+        send("clave-2", BODY, created());
+
+        MockHttpServletResponse reused = send("clave-2", BODY.replace("258027", "1"), created());
+
+        assertEquals(422, reused.getStatus());
+        assertTrue(reused.getContentAsString(StandardCharsets.UTF_8).contains("clave-2"));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForFirstExecution() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain slow = (req, res) -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            created().doFilter(req, res);
+        };
+
+        CompletableFuture<MockHttpServletResponse> first = CompletableFuture.supplyAsync(() -> sendUnchecked(slow));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<MockHttpServletResponse> duplicate = CompletableFuture.supplyAsync(() -> sendUnchecked(slow));
+        Thread.sleep(100);
+        assertFalse(duplicate.isDone());
+
+        release.countDown();
+
+        assertEquals(201, first.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(201, duplicate.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals("true", duplicate.get().getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void requestsWithoutKeyAlwaysExecute() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request(null, BODY), response, created());
+            assertEquals(201, response.getStatus());
+        }
+
+        assertEquals(2, executions.get());
+    }
+
+    private MockHttpServletResponse send(String key, String body, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(key, body), response, chain);
+        return response;
+    }
+
+    private MockHttpServletResponse sendUnchecked(FilterChain chain) {
+        try {
+            return send("clave-concurrente", BODY, chain);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MockHttpServletRequest request(String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/reservations");
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        if (key != null) {
+            request.addHeader(IdempotencyFilter.KEY_HEADER, key);
+        }
+        return request;
+    }
+
+    private FilterChain created() {
+        return (req, res) -> {
+            int id = executions.incrementAndGet();
+            HttpServletResponse response = (HttpServletResponse) res;
+            response.setStatus(201);
+            response.setHeader("Location", "/api/reservations/" + id);
+            response.setContentType("application/json");
+            response.getOutputStream().write(("{\"id\":" + id + "}").getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private FilterChain respond(int status, String body) {
+        return (req, res) -> {
+            executions.incrementAndGet();
+            HttpServletResponse response = (HttpServletResponse) res;
+            response.setStatus(status);
+            response.setContentType("application/json");
+            response.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+}
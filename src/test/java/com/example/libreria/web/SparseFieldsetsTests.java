@@ -0,0 +1,197 @@
+package com.example.libreria.web;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.instrumentation.QueryBudget;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.ExternalBookService;
+import com.example.libreria.service.ReservationService;
+import com.example.libreria.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Sin caché de segundo nivel: es de la JVM y la compartiría con los contextos de otras clases de test
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sparse_fieldsets",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+@AutoConfigureMockMvc
+@ActiveProfiles("debug")
+class SparseFieldsetsTests {
+
+    private static final AtomicInteger USERS = new AtomicInteger();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private ExternalBookService externalBookService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        when(externalBookService.fetchAllBooks()).thenAnswer(invocation -> List.of(
+                externalBook(940001L, "The Lord of the Rings", "J. R. R. Tolkien"),
+                externalBook(940002L, "Good Omens", "Terry Pratchett", "Neil Gaiman")));
+        bookService.syncBooksFromExternalApi();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void getAllBooks_OnlyRequestedColumns() throws Exception {
+        statistics.clear();
+
+        mockMvc.perform(get("/api/books").param("fields", "externalId,title,availableQuantity"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].*", hasSize(3)))
+                .andExpect(jsonPath("$[0].externalId").exists())
+                .andExpect(jsonPath("$[0].authorName").doesNotExist())
+                .andExpect(jsonPath("$[0].price").doesNotExist())
+                .andExpect(QueryBudget.atMost(2));
+
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+    }
+
+    @Test
+    void getAllBooks_AuthorNameWithoutExternalId() throws Exception {
+        mockMvc.perform(get("/api/books").param("fields", "authorName,title"))
+                .andExpect(status().isOk())
+                // Orden del DTO, no el del pedido
+                .andExpect(jsonPath("$[?(@.title == 'Good Omens')].authorName[*]",
+                        containsInAnyOrder("Terry Pratchett", "Neil Gaiman")))
+                .andExpect(jsonPath("$[0].externalId").doesNotExist())
+                .andExpect(QueryBudget.atMost(3));
+    }
+
+    @Test
+    void getBookByExternalId_WithFields() throws Exception {
+        mockMvc.perform(get("/api/books/940001").param("fields", "title"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.*", hasSize(1)))
+                .andExpect(jsonPath("$.title").value("The Lord of the Rings"));
+    }
+
+    @Test
+    void getReservationsByUserId_DoesNotLoadUserOrBook() throws Exception {
+        UserResponseDTO user = newUser();
+        ReservationResponseDTO reservation = newReservation(user);
+        statistics.clear();
+
+        mockMvc.perform(get("/api/reservations/user/" + user.getId()).param("fields", "status,totalFee,bookExternalId"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].*", hasSize(3)))
+                .andExpect(jsonPath("$[0].bookExternalId").value(940001))
+                .andExpect(jsonPath("$[0].status").value("ACTIVE"))
+                .andExpect(jsonPath("$[0].totalFee").value(reservation.getTotalFee().doubleValue()))
+                .andExpect(jsonPath("$[0].id").doesNotExist())
+                .andExpect(jsonPath("$[0].userName").doesNotExist())
+                .andExpect(QueryBudget.atMost(3));
+
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void getReservationById_UserNameByJoin() throws Exception {
+        UserResponseDTO user = newUser();
+        ReservationResponseDTO reservation = newReservation(user);
+        statistics.clear();
+
+        mockMvc.perform(get("/api/reservations/" + reservation.getId()).param("fields", "id,userName"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(reservation.getId()))
+                .andExpect(jsonPath("$.userName").value(user.getName()))
+                .andExpect(QueryBudget.atMost(1));
+
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void activeReservations_WithFields() throws Exception {
+        newReservation(newUser());
+
+        mockMvc.perform(get("/api/reservations/active").param("fields", "id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].*", hasSize(1)));
+    }
+
+    @Test
+    void unknownField_IsRejected() throws Exception {
+        mockMvc.perform(get("/api/books").param("fields", "title,password"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", containsString("Campo desconocido: password")));
+    }
+
+    @Test
+    void etag_DependsOnFieldSetButNotOnItsOrder() throws Exception {
+        String titles = mockMvc.perform(get("/api/books").param("fields", "title,externalId"))
+                .andReturn().getResponse().getHeader("ETag");
+        String sameFieldsOtherOrder = mockMvc.perform(get("/api/books").param("fields", "externalId, title"))
+                .andReturn().getResponse().getHeader("ETag");
+        String full = mockMvc.perform(get("/api/books")).andReturn().getResponse().getHeader("ETag");
+
+        assertEquals(titles, sameFieldsOtherOrder);
+        assertNotEquals(titles, full);
+        mockMvc.perform(get("/api/books").param("fields", "externalId,title").header("If-None-Match", titles))
+                .andExpect(status().isNotModified())
+                .andExpect(QueryBudget.atMost(1));
+    }
+
+    private UserResponseDTO newUser() {
+        return userService.createUser(new UserRequestDTO("Usuario Campos",
+                "campos" + USERS.incrementAndGet() + "@example.com", null));
+    }
+
+    private ReservationResponseDTO newReservation(UserResponseDTO user) {
+        ReservationRequestDTO request = new ReservationRequestDTO();
+        request.setUserId(user.getId());
+        request.setBookExternalId(940001L);
+        request.setRentalDays(7);
+        request.setStartDate(LocalDate.now());
+        return reservationService.createReservation(request);
+    }
+
+    private static ExternalBookDTO externalBook(Long id, String title, String... authors) {
+        return new ExternalBookDTO(id, true, 10, title, new ArrayList<>(List.of(authors)), 1950, new BigDecimal("15.99"));
+    }
+}